@@ -0,0 +1,85 @@
+package circus.config;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Права текущего пользователя, вычисленные один раз за запрос.
+ * <p>
+ * Шаблоны проверяют готовые флаги ({@code th:if="${can.management}"}) вместо
+ * выражений {@code sec:authorize}, которые заново разбирались бы и вычислялись
+ * для каждой строки таблицы. Группы ролей повторяют правила видимости интерфейса.
+ * </p>
+ */
+public final class Capabilities {
+
+    /**
+     * Права анонимного пользователя: ничего не разрешено.
+     */
+    public static final Capabilities NONE = new Capabilities(false, false, false, false);
+
+    private final boolean staff;
+
+    private final boolean management;
+
+    private final boolean superAdmin;
+
+    private final boolean visitor;
+
+    private Capabilities(boolean staff, boolean management, boolean superAdmin, boolean visitor) {
+        this.staff = staff;
+        this.management = management;
+        this.superAdmin = superAdmin;
+        this.visitor = visitor;
+    }
+
+    /**
+     * Вычисляет права по ролям аутентифицированного пользователя.
+     *
+     * @param authentication текущая аутентификация или {@code null}
+     * @return права пользователя
+     */
+    public static Capabilities of(Authentication authentication) {
+        if (authentication == null || !authentication.isAuthenticated()) {
+            return NONE;
+        }
+        Set<String> roles = authentication.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toSet());
+        boolean superAdmin = roles.contains("ROLE_SUPER_ADMIN");
+        boolean management = superAdmin || roles.contains("ROLE_BOSS");
+        boolean staff = management || roles.contains("ROLE_EMPLOYEE");
+        return new Capabilities(staff, management, superAdmin, roles.contains("ROLE_VISITOR"));
+    }
+
+    /**
+     * Сотрудник цирка: EMPLOYEE, BOSS или SUPER_ADMIN (таблицы номеров, животных, билетов).
+     */
+    public boolean isStaff() {
+        return staff;
+    }
+
+    /**
+     * Руководство: BOSS или SUPER_ADMIN (сотрудники, доходы, изменение данных).
+     */
+    public boolean isManagement() {
+        return management;
+    }
+
+    /**
+     * SUPER_ADMIN (идентификаторы записей, управление пользователями).
+     */
+    public boolean isSuperAdmin() {
+        return superAdmin;
+    }
+
+    /**
+     * Посетитель: видит только предстоящие выступления.
+     */
+    public boolean isVisitor() {
+        return visitor;
+    }
+}
@@ -0,0 +1,19 @@
+package circus.config;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ModelAttribute;
+
+/**
+ * Добавляет в модель каждой страницы права текущего пользователя ({@code can}).
+ *
+ * @see Capabilities
+ */
+@ControllerAdvice
+public class CapabilitiesAdvice {
+
+    @ModelAttribute("can")
+    public Capabilities capabilities(Authentication authentication) {
+        return Capabilities.of(authentication);
+    }
+}
@@ -0,0 +1,114 @@
+package circus.config;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.AbstractEntityManagerFactoryBean;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Перевод первичных ключей со столбцов IDENTITY на последовательности.
+ * <p>
+ * Сущности получают идентификаторы из последовательностей {@code <таблица>_seq}
+ * пачками (оптимизатор pooled, размер пачки — {@code allocationSize} сущности),
+ * поэтому Hibernate может отправлять вставки пакетами JDBC. Последовательности
+ * создаёт {@code ddl-auto=update}; этот компонент сразу после создания фабрики
+ * сущностей и до первого обращения к репозиториям:
+ * </p>
+ * <ul>
+ *   <li>снимает со столбца {@code id} признак IDENTITY или значение по умолчанию
+ *       (serial), оставшиеся от прежней схемы;</li>
+ *   <li>сдвигает последовательность за максимальный существующий {@code id}.</li>
+ * </ul>
+ *
+ * <p>
+ * Оба шага выполняются только при необходимости, поэтому повторные запуски
+ * ничего не меняют. Шаг последовательности в базе должен совпадать с
+ * {@code allocationSize}; чтобы изменить размер пачки, увеличьте шаг
+ * ({@code ALTER SEQUENCE ... INCREMENT BY}) и {@code allocationSize} вместе.
+ * </p>
+ */
+@Component
+public class IdSequenceMigration implements BeanPostProcessor {
+
+    /**
+     * Таблицы сущностей и их последовательности.
+     */
+    private static final Map<String, String> SEQUENCES = Map.of(
+            "performances", "performances_seq",
+            "tickets", "tickets_seq",
+            "human_acts", "human_acts_seq",
+            "animal_acts", "animal_acts_seq",
+            "employees", "employees_seq",
+            "animals", "animals_seq",
+            "users", "users_seq");
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        // фабрика сущностей уже построена и обновила схему, репозитории её ещё не получили
+        if (bean instanceof AbstractEntityManagerFactoryBean factory && factory.getDataSource() != null
+                && isPostgres(factory.getDataSource())) {
+            migrate(new JdbcTemplate(factory.getDataSource()));
+        }
+        return bean;
+    }
+
+    private void migrate(JdbcTemplate jdbc) {
+        SEQUENCES.forEach((table, sequence) -> {
+            Boolean exists = jdbc.queryForObject(
+                    "SELECT to_regclass(?) IS NOT NULL AND to_regclass(?) IS NOT NULL",
+                    Boolean.class, table, sequence);
+            if (!Boolean.TRUE.equals(exists)) {
+                return;
+            }
+            dropIdentity(jdbc, table);
+            alignSequence(jdbc, table, sequence);
+        });
+    }
+
+    private void dropIdentity(JdbcTemplate jdbc, String table) {
+        List<Map<String, Object>> columns = jdbc.queryForList(
+                "SELECT is_identity, column_default FROM information_schema.columns "
+                        + "WHERE table_schema = current_schema() AND table_name = ? AND column_name = 'id'",
+                table);
+        if (columns.isEmpty()) {
+            return;
+        }
+        Map<String, Object> column = columns.get(0);
+        if ("YES".equals(column.get("is_identity"))) {
+            jdbc.execute("ALTER TABLE " + table + " ALTER COLUMN id DROP IDENTITY IF EXISTS");
+            System.out.println("Снят признак IDENTITY: " + table + ".id");
+        } else if (column.get("column_default") != null) {
+            jdbc.execute("ALTER TABLE " + table + " ALTER COLUMN id DROP DEFAULT");
+            System.out.println("Снято значение по умолчанию: " + table + ".id");
+        }
+    }
+
+    /**
+     * Pooled-оптимизатор выдаёт идентификаторы до текущего значения последовательности
+     * включительно, а у ещё не использованной — начиная с её начального значения.
+     */
+    private void alignSequence(JdbcTemplate jdbc, String table, String sequence) {
+        Long maxId = jdbc.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        Map<String, Object> state = jdbc.queryForMap("SELECT last_value, is_called FROM " + sequence);
+        long lastValue = ((Number) state.get("last_value")).longValue();
+        boolean called = Boolean.TRUE.equals(state.get("is_called"));
+        if (maxId != null && (called ? maxId > lastValue : maxId >= lastValue)) {
+            jdbc.queryForObject("SELECT setval(?::regclass, ?)", Long.class, sequence, maxId);
+            System.out.println("Последовательность " + sequence + " сдвинута за id " + maxId);
+        }
+    }
+
+    private static boolean isPostgres(DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection()) {
+            return "PostgreSQL".equals(connection.getMetaData().getDatabaseProductName());
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось определить СУБД", e);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package circus.config;
+
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Конфигурационный класс фоновых задач.
+ * <p>
+ * Включает поддержку {@link org.springframework.scheduling.annotation.Scheduled}
+ * и общий {@link org.springframework.scheduling.TaskScheduler} (размер пула —
+ * {@code spring.task.scheduling.pool.size}), который используется, например,
+ * для смены статусов прошедших выступлений.
+ * </p>
+ *
+ * <p>
+ * Истечение удержаний мест и запись заказов горячей продажи выполняются каждую
+ * секунду в собственных потоках: задачи, ждущие соединения с базой при её сбое,
+ * не задерживают освобождение удержанных мест.
+ * </p>
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+    /**
+     * Общий планировщик; задачи {@code @Scheduled} без указания планировщика выполняются в нём.
+     */
+    @Bean
+    @Primary
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    /**
+     * Планировщик колеса удержаний мест ({@link circus.service.SeatHoldService}).
+     */
+    @Bean
+    public ThreadPoolTaskScheduler seatHoldScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.poolSize(1).threadNamePrefix("seat-hold-").build();
+    }
+
+    /**
+     * Планировщик записи заказов горячей продажи ({@link circus.service.HotSaleService}).
+     */
+    @Bean
+    public ThreadPoolTaskScheduler hotSaleScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.poolSize(1).threadNamePrefix("hot-sale-").build();
+    }
+}
@@ -70,9 +70,15 @@ public class SecurityConfig {
                         // Страницы логина/регистрации доступны всем
                         .requestMatchers("/login", "/register", "/api/auth/**", "/tickets/save", "/pattern.png", "/tent.png").permitAll()
 
+                        // Очередь покупки – перед /tickets/save, поэтому тоже всем
+                        .requestMatchers("/tickets/queue", "/tickets/queue/status").permitAll()
+
                         // Страница управления пользователями – только SUPER_ADMIN
                         .requestMatchers("/users/**").hasRole("SUPER_ADMIN")
 
+                        // Удержание и подбор мест перед покупкой – любому вошедшему пользователю
+                        .requestMatchers("/tickets/hold", "/tickets/best-seats").authenticated()
+
                         // Все таблицы, кроме performances, доступны всем ролям, КРОМЕ VISITOR.
                         // Предположим, что HTML для этих таблиц:
                         // /employees, /animals, /students, /tickets и т.п.
@@ -84,6 +90,22 @@ public class SecurityConfig {
                         .requestMatchers("/employees/**")
                         .hasAnyRole("BOSS", "SUPER_ADMIN")
 
+                        // Горячая продажа и схема зала – только руководство
+                        .requestMatchers("/performances/hot-sale/**", "/performances/seat-map/**")
+                        .hasAnyRole("BOSS", "SUPER_ADMIN")
+
+                        // Импорт продаж внешних касс – только руководство
+                        .requestMatchers("/api/tickets/import")
+                        .hasAnyRole("BOSS", "SUPER_ADMIN")
+
+                        // Выгрузка для финансовой сверки и отчёты о выручке – только руководство
+                        .requestMatchers("/api/export/**", "/api/analytics/**")
+                        .hasAnyRole("BOSS", "SUPER_ADMIN")
+
+                        // Автоматическое составление расписания – только руководство
+                        .requestMatchers("/api/schedule/**")
+                        .hasAnyRole("BOSS", "SUPER_ADMIN")
+
                         // Остальное – просто требуем логин
                         .anyRequest().authenticated()
                 )
@@ -0,0 +1,138 @@
+package circus.controller;
+
+import circus.repository.DailySalesRepository.MonthSales;
+import circus.repository.SalesAnalyticsRepository.ArtistSales;
+import circus.repository.SalesAnalyticsRepository.PeriodSales;
+import circus.repository.SalesAnalyticsRepository.RankedPerformance;
+import circus.service.DailySalesRollup;
+import circus.service.ProfitReportService;
+import circus.service.SalesAnalyticsService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Отчёты о выручке и зрителях.
+ * <p>
+ * Диапазон задаётся датами выступлений {@code from} и {@code to} (включительно,
+ * формат {@code yyyy-MM-dd}); по умолчанию — последние 12 месяцев. Отчёты
+ * по месяцам и сезонам считаются по датам продажи из сводки продаж по дням.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+
+    private final SalesAnalyticsService salesAnalyticsService;
+
+    private final DailySalesRollup dailySalesRollup;
+
+    private final ProfitReportService profitReportService;
+
+    public AnalyticsController(SalesAnalyticsService salesAnalyticsService, DailySalesRollup dailySalesRollup,
+                               ProfitReportService profitReportService) {
+        this.salesAnalyticsService = salesAnalyticsService;
+        this.dailySalesRollup = dailySalesRollup;
+        this.profitReportService = profitReportService;
+    }
+
+    /**
+     * Выручка и зрители по дням, неделям или месяцам с накопленными итогами.
+     */
+    @GetMapping("/revenue")
+    public List<PeriodSales> revenue(@RequestParam(defaultValue = "month") String period,
+                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                     LocalDate from,
+                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                     LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        return salesAnalyticsService.salesByPeriod(SalesAnalyticsService.Period.of(period),
+                from != null ? from : defaultFrom(end), end);
+    }
+
+    /**
+     * Выручка и зрители по главным артистам выступлений.
+     */
+    @GetMapping("/artists")
+    public List<ArtistSales> artists(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                     LocalDate from,
+                                     @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                     LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        return salesAnalyticsService.salesByArtist(from != null ? from : defaultFrom(end), end);
+    }
+
+    /**
+     * Лучшие выступления каждого месяца по выручке.
+     */
+    @GetMapping("/top-performances")
+    public List<RankedPerformance> topPerformances(@RequestParam(defaultValue = "5") int limit,
+                                                   @RequestParam(required = false)
+                                                   @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                   @RequestParam(required = false)
+                                                   @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        return salesAnalyticsService.topPerformances(from != null ? from : defaultFrom(end), end, limit);
+    }
+
+    /**
+     * Билеты, зрители и выручка по месяцам продажи.
+     */
+    @GetMapping("/months")
+    public List<MonthSales> months(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                   LocalDate from,
+                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+                                   LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        return salesAnalyticsService.monthlySales(from != null ? from : defaultFrom(end), end);
+    }
+
+    /**
+     * Продажи сезона с итогами; по умолчанию — текущего.
+     */
+    @GetMapping("/season")
+    public SalesAnalyticsService.Season season(@RequestParam(required = false) Integer year) {
+        return salesAnalyticsService.season(year != null ? year : salesAnalyticsService.seasonOf(LocalDate.now()));
+    }
+
+    /**
+     * Прибыль по выступлениям и месяцам: выручка минус зарплаты занятых сотрудников.
+     * Диапазон по умолчанию — сезон {@code year} (текущий, если год не указан).
+     */
+    @GetMapping("/profit")
+    public ProfitReportService.Report profit(@RequestParam(required = false) Integer year,
+                                             @RequestParam(required = false)
+                                             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                             @RequestParam(required = false)
+                                             @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        int season = year != null ? year : salesAnalyticsService.seasonOf(LocalDate.now());
+        return profitReportService.report(from != null ? from : salesAnalyticsService.seasonStart(season),
+                to != null ? to : salesAnalyticsService.seasonStart(season + 1).minusDays(1));
+    }
+
+    /**
+     * Сверяет сводку продаж по дням с билетами и пересчитывает разошедшиеся дни.
+     */
+    @PostMapping("/daily-sales/rebuild")
+    public Map<String, Integer> rebuildDailySales(@RequestParam(required = false)
+                                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                  @RequestParam(required = false)
+                                                  @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        return Map.of("repaired", dailySalesRollup.rebuild(from != null ? from : defaultFrom(end), end));
+    }
+
+    private static LocalDate defaultFrom(LocalDate to) {
+        return to.minusYears(1).plusDays(1);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", String.valueOf(ex.getMessage())));
+    }
+}
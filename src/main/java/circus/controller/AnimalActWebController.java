@@ -4,9 +4,8 @@ import circus.model.Animal;
 import circus.model.AnimalAct;
 import circus.model.Employee;
 import circus.service.AnimalActService;
-import circus.service.AnimalService;
-import circus.service.EmployeeService;
-import circus.service.PerformanceService;
+import circus.service.KeysetPage;
+import circus.service.ReferenceDataCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -35,44 +34,48 @@ public class AnimalActWebController {
     @Autowired
     private AnimalActService animalActService;
 
+    /**
+     * Кэш справочных списков для выпадающих меню.
+     */
     @Autowired
-    private EmployeeService employeeService;
-
-    @Autowired
-    private PerformanceService performanceService;
-
-    @Autowired
-    private AnimalService animalService;// ← добавить это поле
+    private ReferenceDataCache referenceDataCache;
 
     @GetMapping("/add")
     public String showAddForm(Model model) {
         model.addAttribute("animalAct", new AnimalAct());
-        model.addAttribute("employees", employeeService.findAll()); // чтобы был список тренеров
+        model.addAttribute("employees", referenceDataCache.employees()); // чтобы был список тренеров
         return "animalAct_form";
     }
 
     @GetMapping("/edit/{id}")
     public String editAnimalAct(@PathVariable Long id, Model model) {
-        model.addAttribute("animalActs", animalActService.findAll());
+        // страница, начинающаяся с редактируемого номера
+        KeysetPage<AnimalAct> page = animalActService.findPage(String.valueOf(id - 1), null, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("animalActs", page.getItems());
+        model.addAttribute("page", page);
         model.addAttribute("animalAct", animalActService.findById(id)); // не new AnimalAct()
         model.addAttribute("editingId", id);
-        model.addAttribute("employees", employeeService.findAll());
-        model.addAttribute("animals", animalService.findAll());
-        model.addAttribute("performances", performanceService.findAll());
+        model.addAttribute("employees", referenceDataCache.employees());
+        model.addAttribute("animals", referenceDataCache.animals());
+        model.addAttribute("performances", referenceDataCache.performances());
         return "animalActs";
     }
 
 
     @GetMapping
     public String listAnimalActs(Model model,
-                                 @RequestParam(required = false) String msg) {
-        model.addAttribute("animalActs", animalActService.findAll());
+                                 @RequestParam(required = false) String msg,
+                                 @RequestParam(required = false) String after,
+                                 @RequestParam(required = false) String before) {
+        KeysetPage<AnimalAct> page = animalActService.findPage(after, before, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("animalActs", page.getItems());
+        model.addAttribute("page", page);
         model.addAttribute("animalAct", new AnimalAct());
         model.addAttribute("editingId", null);
         model.addAttribute("message", msg);
-        model.addAttribute("employees", employeeService.findAll());
-        model.addAttribute("performances", performanceService.findAll());
-        model.addAttribute("animals", animalService.findAll());// уже есть
+        model.addAttribute("employees", referenceDataCache.employees());
+        model.addAttribute("performances", referenceDataCache.performances());
+        model.addAttribute("animals", referenceDataCache.animals());// уже есть
         return "animalActs";
     }
 
@@ -2,12 +2,11 @@ package circus.controller;
 
 import circus.model.Animal;
 import circus.service.AnimalService;
+import circus.service.KeysetPage;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @Controller
 @RequestMapping("/animals")
 public class AnimalWebController {
@@ -20,9 +19,12 @@ public class AnimalWebController {
 
     // Показать список животных
     @GetMapping
-    public String listAnimals(Model model) {
-        List<Animal> animals = animalService.findAll();
-        model.addAttribute("animals", animals);
+    public String listAnimals(Model model,
+                              @RequestParam(required = false) String after,
+                              @RequestParam(required = false) String before) {
+        KeysetPage<Animal> page = animalService.findPage(after, before, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("animals", page.getItems());
+        model.addAttribute("page", page);
         model.addAttribute("animal", new Animal()); // для формы добавления
         return "animals"; // animals.html
     }
@@ -38,7 +40,10 @@ public class AnimalWebController {
     @GetMapping("/edit/{id}")
     public String editAnimal(@PathVariable Long id, Model model) {
         Animal animal = animalService.findById(id);
-        model.addAttribute("animals", animalService.findAll());
+        // страница, начинающаяся с редактируемого животного
+        KeysetPage<Animal> page = animalService.findPage(String.valueOf(id - 1), null, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("animals", page.getItems());
+        model.addAttribute("page", page);
         model.addAttribute("animal", animal);
         model.addAttribute("editingId", id); // если понадобиться выделять строку
         return "animals";
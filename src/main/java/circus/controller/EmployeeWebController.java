@@ -1,12 +1,18 @@
 package circus.controller;
 
 import circus.model.Employee;
+import circus.repository.EmployeeInvolvementRepository.Involvement;
+import circus.repository.EmployeeInvolvementRepository.Workload;
 import circus.service.EmployeeService;
+import circus.service.KeysetPage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * Веб-контроллер для работы с сущностями выступлений.
  * <p>
@@ -66,7 +72,11 @@ public class EmployeeWebController {
      */
     @GetMapping("/edit/{id}")
     public String editEmployee(@PathVariable Long id, Model model) {
-        model.addAttribute("employees", employeeService.findAll());
+        // страница, начинающаяся с редактируемого сотрудника
+        KeysetPage<Employee> page = employeeService.findPage(String.valueOf(id - 1), null, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("employees", page.getItems());
+        model.addAttribute("page", page);
+        model.addAttribute("workload", workload(page));
         model.addAttribute("employee", employeeService.findById(id));
         model.addAttribute("editingId", id);
         return "employees";
@@ -83,12 +93,34 @@ public class EmployeeWebController {
 
     @GetMapping
     public String listEmployees(Model model,
-                                @RequestParam(required = false) String msg) {
-        model.addAttribute("employees", employeeService.findAll());
+                                @RequestParam(required = false) String msg,
+                                @RequestParam(required = false) String after,
+                                @RequestParam(required = false) String before) {
+        KeysetPage<Employee> page = employeeService.findPage(after, before, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("employees", page.getItems());
+        model.addAttribute("page", page);
+        model.addAttribute("workload", workload(page));
         model.addAttribute("employee", new Employee()); // для модального окна "Add"
         model.addAttribute("editingId", null);
         model.addAttribute("message", msg);
         return "employees"; // employees.html
     }
 
+    /**
+     * Все роли сотрудника в выступлениях (главный артист, исполнитель номера,
+     * дрессировщик) в порядке даты — для карточки сотрудника.
+     */
+    @GetMapping("/{id}/involvements")
+    @ResponseBody
+    public List<Involvement> involvements(@PathVariable Long id) {
+        return employeeService.findInvolvements(id);
+    }
+
+    /**
+     * Загрузка сотрудников страницы одним запросом.
+     */
+    private Map<Long, Workload> workload(KeysetPage<Employee> page) {
+        return employeeService.findWorkload(page.getItems().stream().map(Employee::getId).toList());
+    }
+
 }
@@ -0,0 +1,58 @@
+package circus.controller;
+
+import circus.service.DataExportService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Выгрузка данных для финансовой сверки.
+ * <p>
+ * {@code GET /api/export/tickets?format=csv|ndjson} и {@code /api/export/performances}
+ * пишут строки прямо в ответ по мере чтения из базы, без сборки всего списка в памяти.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/export")
+public class ExportController {
+
+    private final DataExportService dataExportService;
+
+    public ExportController(DataExportService dataExportService) {
+        this.dataExportService = dataExportService;
+    }
+
+    @GetMapping("/tickets")
+    public void exportTickets(@RequestParam(defaultValue = "csv") String format,
+                              HttpServletResponse response) throws IOException {
+        DataExportService.Format exportFormat = DataExportService.Format.of(format);
+        prepare(response, exportFormat, "tickets");
+        dataExportService.exportTickets(exportFormat, response.getOutputStream());
+    }
+
+    @GetMapping("/performances")
+    public void exportPerformances(@RequestParam(defaultValue = "csv") String format,
+                                   HttpServletResponse response) throws IOException {
+        DataExportService.Format exportFormat = DataExportService.Format.of(format);
+        prepare(response, exportFormat, "performances");
+        dataExportService.exportPerformances(exportFormat, response.getOutputStream());
+    }
+
+    private static void prepare(HttpServletResponse response, DataExportService.Format format, String name) {
+        response.setContentType(format.getContentType());
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"" + name + "." + format.getExtension() + "\"");
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> handleBadRequest(IllegalArgumentException ex) {
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(Map.of("message", String.valueOf(ex.getMessage())));
+    }
+}
@@ -1,16 +1,14 @@
 package circus.controller;
 
 import circus.model.HumanAct;
-import circus.service.EmployeeService;
 import circus.service.HumanActService;
-import circus.service.PerformanceService;
+import circus.service.KeysetPage;
+import circus.service.ReferenceDataCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 /**
  * Веб-контроллер для работы с сущностями выступлений.
  * <p>
@@ -30,11 +28,11 @@ public class HumanActWebController {
     private HumanActService humanActService;
 
 
+    /**
+     * Кэш справочных списков для выпадающих меню.
+     */
     @Autowired
-    private EmployeeService employeeService;
-
-    @Autowired
-    private PerformanceService performanceService;
+    private ReferenceDataCache referenceDataCache;
     /**
      * Отображает список всех выступлений и форму добавления нового выступления.
      *
@@ -76,11 +74,14 @@ public class HumanActWebController {
      */
     @GetMapping("/edit/{id}")
     public String editHumanAct(@PathVariable Long id, Model model) {
-        model.addAttribute("humanActs", humanActService.findAll());
+        // страница, начинающаяся с редактируемого номера
+        KeysetPage<HumanAct> page = humanActService.findPage(String.valueOf(id - 1), null, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("humanActs", page.getItems());
+        model.addAttribute("page", page);
         model.addAttribute("humanAct", humanActService.findById(id));
         model.addAttribute("editingId", id);
-        model.addAttribute("employees", employeeService.findAll());
-        model.addAttribute("performances", performanceService.findAll());
+        model.addAttribute("employees", referenceDataCache.employees());
+        model.addAttribute("performances", referenceDataCache.performances());
         return "humanActs";
     }
 
@@ -97,22 +98,24 @@ public class HumanActWebController {
 
     @GetMapping
     public String listHumanActs(Model model,
-                                @RequestParam(required = false) Long performerId) {
-        List<HumanAct> humanActs = humanActService.findAll();
-
+                                @RequestParam(required = false) Long performerId,
+                                @RequestParam(required = false) String after,
+                                @RequestParam(required = false) String before) {
         if (performerId != null) {
-            humanActs = humanActService.findByMainPerformer(performerId);
+            // номера одного артиста выводятся целиком, без разбиения на страницы
+            model.addAttribute("humanActs", humanActService.findByMainPerformer(performerId));
+            model.addAttribute("page", null);
         } else {
-            humanActs = humanActService.findAll();
+            KeysetPage<HumanAct> page = humanActService.findPage(after, before, KeysetPage.DEFAULT_SIZE);
+            model.addAttribute("humanActs", page.getItems());
+            model.addAttribute("page", page);
         }
 
-
-        model.addAttribute("humanActs", humanActs);
         model.addAttribute("humanAct", new HumanAct());
         model.addAttribute("editingId", null);
         model.addAttribute("message", null);
-        model.addAttribute("employees", employeeService.findAll());
-        model.addAttribute("performances", performanceService.findAll());
+        model.addAttribute("employees", referenceDataCache.employees());
+        model.addAttribute("performances", referenceDataCache.performances());
         model.addAttribute("performerId", performerId);
         return "humanActs";
     }
@@ -1,16 +1,24 @@
 package circus.controller;
 
+import circus.config.Capabilities;
 import circus.model.Performance;
 import circus.model.Ticket;
-import circus.service.EmployeeService;
+import circus.service.HotSaleService;
+import circus.service.KeysetPage;
 import circus.service.PerformanceService;
+import circus.service.ReferenceDataCache;
+import circus.service.SeatMapService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.security.core.Authentication;
 
-import java.util.List;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * Веб-контроллер для работы с сущностями выступлений.
@@ -30,8 +38,23 @@ public class PerformanceWebController {
     @Autowired
     private PerformanceService performanceService;
 
+    /**
+     * Кэш справочных списков для выпадающих меню.
+     */
+    @Autowired
+    private ReferenceDataCache referenceDataCache;
+
+    /**
+     * Кэш отрисованных строк афиши.
+     */
+    @Autowired
+    private RowRenderCache rowRenderCache;
+
     @Autowired
-    private EmployeeService employeeService;
+    private HotSaleService hotSaleService;
+
+    @Autowired
+    private SeatMapService seatMapService;
 
     /**
      * Отображает список всех выступлений и форму добавления нового выступления.
@@ -42,86 +65,28 @@ public class PerformanceWebController {
 
     @GetMapping
     public String listPerformances(Model model,
-                                   Authentication authentication,
+                                   @ModelAttribute("can") Capabilities can,
+                                   HttpServletRequest request,
+                                   HttpServletResponse response,
                                    @RequestParam(required = false) String fromDate,
                                    @RequestParam(required = false) String toDate,
 //                                   @RequestParam(required = false) String byDate,
-                                   @RequestParam(required = false) String sortBy) {
-        boolean isUserOnly = authentication.getAuthorities().stream()
-                .anyMatch(a -> a.getAuthority().equals("ROLE_VISITOR"));
-
-        performanceService.updateStatusesForPastPerformances();
-        List<Performance> performances;
-
-        // Парсим даты, если они переданы
-        java.time.LocalDateTime from = null;
-        java.time.LocalDateTime to = null;
-        try {
-            if (fromDate != null && !fromDate.isEmpty()) {
-                from = java.time.LocalDateTime.parse(fromDate);
-            }
-            if (toDate != null && !toDate.isEmpty()) {
-                to = java.time.LocalDateTime.parse(toDate);
-            }
-        } catch (Exception e) {
-            // Если ошибка парсинга, показываем все
-        }
+                                   @RequestParam(required = false) String sortBy,
+                                   @RequestParam(required = false) String after,
+                                   @RequestParam(required = false) String before) {
+        boolean isUserOnly = can.isVisitor();
 
-        // Копируем в final переменные для использования в lambda
-        final java.time.LocalDateTime fromFinal = from;
-        final java.time.LocalDateTime toFinal = to;
-
-        // Выбираем данные в зависимости от параметров
-        if (from != null || to != null) {
-            if (isUserOnly) {
-                performances = performanceService.findAllUpcomingSorted();
-            } else {
-                performances = performanceService.findAllSorted();
-            }
-
-            // Фильтруем вручную
-            if (fromFinal != null && toFinal != null) {
-                performances = performances.stream()
-                        .filter(p -> !p.getDateTime().isBefore(fromFinal) && !p.getDateTime().isAfter(toFinal))
-                        .toList();
-            } else if (fromFinal != null) {
-                performances = performances.stream()
-                        .filter(p -> !p.getDateTime().isBefore(fromFinal))
-                        .toList();
-            } else if (toFinal != null) {
-                performances = performances.stream()
-                        .filter(p -> !p.getDateTime().isAfter(toFinal))
-                        .toList();
-            }
-        } else {
-            performances = isUserOnly
-                    ? performanceService.findAllUpcomingSorted()
-                    : performanceService.findAllSorted();
-        }
+        // Статусы прошедших выступлений обновляет фоновый планировщик,
+        // а посетителям предстоящие выступления отбираются по дате прямо в запросе
 
-//        if (byDate != null ) {
-//            java.time.LocalDateTime date = java.time.LocalDateTime.parse(byDate);
-//            System.out.println(date);
-//            performances = performances.stream()
-//                    .filter(p -> p.getDateTime().equals(date))
-//                    .toList();
-//        }
-
-        // Сортировка по Revenue
-        if ("revenue_asc".equals(sortBy)) {
-            performances = performances.stream()
-                    .sorted(java.util.Comparator.comparing(Performance::getRevenue))
-                    .toList();
-        } else if ("revenue_desc".equals(sortBy)) {
-            performances = performances.stream()
-                    .sorted(java.util.Comparator.comparing(Performance::getRevenue).reversed())
-                    .toList();
-        }
+        // Фильтрация, сортировка и выбор страницы выполняются одним запросом в БД
+        KeysetPage<Performance> page = performanceService.searchPage(
+                parseDate(fromDate), parseDate(toDate), isUserOnly, sortBy, after, before, KeysetPage.DEFAULT_SIZE);
 
-        model.addAttribute("performances", performances);
-        model.addAttribute("performance", new Performance());
-        model.addAttribute("artists", employeeService.findAll());
-        model.addAttribute("ticket", new Ticket());  // ← добавить
+        // формы редактирования, добавления и покупки билета загружаются отдельно (см. fragments)
+        model.addAttribute("performances", page.getItems());
+        model.addAttribute("page", page);
+        model.addAttribute("renderedRows", renderRows(page, can, request, response));
         model.addAttribute("fromDate", fromDate);
         model.addAttribute("toDate", toDate);
 //        model.addAttribute("byDate", byDate);
@@ -160,16 +125,134 @@ public class PerformanceWebController {
 
     /**
      * Переключает интерфейс в режим редактирования выбранного выступления.
+     * Страница строится с фильтрами и сортировкой списка, из которого пришёл пользователь.
      */
     @GetMapping("/edit/{id}")
-    public String editPerformance(@PathVariable Long id, Model model) {
-        model.addAttribute("performances", performanceService.findAll());
-        model.addAttribute("performance", performanceService.findById(id));
-        model.addAttribute("artists", employeeService.findAll());
+    public String editPerformance(@PathVariable Long id, Model model,
+                                  @ModelAttribute("can") Capabilities can,
+                                  HttpServletRequest request,
+                                  HttpServletResponse response,
+                                  @RequestParam(required = false) String fromDate,
+                                  @RequestParam(required = false) String toDate,
+                                  @RequestParam(required = false) String sortBy) {
+        Performance performance = performanceService.findById(id);
+        if (performance == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            model.addAttribute("message", "Выступление не найдено: " + id);
+            return "error";
+        }
+        KeysetPage<Performance> page = performanceService.pageStartingAt(performance, parseDate(fromDate),
+                parseDate(toDate), can.isVisitor(), sortBy, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("performances", page.getItems());
+        model.addAttribute("page", page);
+        model.addAttribute("renderedRows", renderRows(page, can, request, response));
         model.addAttribute("editingId", id);
+        model.addAttribute("fromDate", fromDate);
+        model.addAttribute("toDate", toDate);
+        model.addAttribute("sortBy", sortBy);
         return "performances";
     }
 
+    /**
+     * Разбирает дату фильтра; пустая или ошибочная дата — без ограничения.
+     */
+    private static LocalDateTime parseDate(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Строки афиши из кэша отрисовки. Статус, доход и число зрителей меняются без увеличения версии,
+     * а имя артиста — при изменении справочника сотрудников, поэтому они входят в ключ.
+     */
+    private Map<Long, String> renderRows(KeysetPage<Performance> page, Capabilities can,
+                                         HttpServletRequest request, HttpServletResponse response) {
+        return rowRenderCache.render("performanceRow", "performance", page.getItems(), Performance::getId,
+                p -> p.getVersion() + ":" + p.getStatus() + ":" + p.getRevenue() + ":" + p.getViewersCount()
+                        + ":" + referenceDataCache.getVersion(),
+                can, request, response);
+    }
+
+    /**
+     * Форма редактирования выступления для вставки в строку таблицы.
+     */
+    @GetMapping("/fragments/edit/{id}")
+    public String editFormFragment(@PathVariable Long id, Model model, HttpServletResponse response) {
+        Performance performance = performanceService.findById(id);
+        if (performance == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            model.addAttribute("message", "Выступление не найдено: " + id);
+            return "error";
+        }
+        model.addAttribute("performance", performance);
+        model.addAttribute("artists", referenceDataCache.employees());
+        model.addAttribute("hotSaleRemaining", hotSaleService.remaining(id));
+        return "performance_fragments :: editForm";
+    }
+
+    /**
+     * Содержимое модального окна добавления выступления.
+     */
+    @GetMapping("/fragments/new")
+    public String createFormFragment(Model model) {
+        model.addAttribute("performance", new Performance());
+        model.addAttribute("artists", referenceDataCache.employees());
+        return "performance_fragments :: createForm";
+    }
+
+    /**
+     * Содержимое модального окна покупки билета: выбор только из предстоящих выступлений.
+     */
+    @GetMapping("/fragments/ticket")
+    public String ticketFormFragment(Model model) {
+        Ticket ticket = new Ticket();
+        ticket.setIdempotencyKey(UUID.randomUUID().toString());
+        model.addAttribute("ticket", ticket);
+        model.addAttribute("performances", performanceService.findUpcomingOptions());
+        return "performance_fragments :: ticketForm";
+    }
+
+
+    /**
+     * Включает режим горячей продажи выступления (остаток мест в памяти узла).
+     */
+    @GetMapping("/hot-sale/{id}/start")
+    public String startHotSale(@PathVariable Long id) {
+        hotSaleService.start(id);
+        return "redirect:/performances";
+    }
+
+    /**
+     * Выключает режим горячей продажи и сохраняет накопленные заказы.
+     */
+    @GetMapping("/hot-sale/{id}/stop")
+    public String stopHotSale(@PathVariable Long id) {
+        hotSaleService.stop(id);
+        return "redirect:/performances";
+    }
+
+    /**
+     * Задаёт схему зала выступления (ряды, места в ряду и ценовые зоны);
+     * уже заданная схема заменяется только с {@code reset}.
+     */
+    @PostMapping("/seat-map/{id}")
+    public String configureSeatMap(@PathVariable Long id,
+                                   @RequestParam int rows,
+                                   @RequestParam int seatsPerRow,
+                                   @RequestParam(required = false) String priceZones,
+                                   @RequestParam(defaultValue = "false") boolean reset) {
+        if (hotSaleService.isActive(id)) {
+            throw new IllegalStateException("Во время горячей продажи схему зала задать нельзя");
+        }
+        seatMapService.configure(id, rows, seatsPerRow, priceZones, reset);
+        return "redirect:/performances";
+    }
 
     /**
      * Обрабатывает сохранение изменений выступления (создание или обновление).
@@ -0,0 +1,108 @@
+package circus.controller;
+
+import circus.config.Capabilities;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.stereotype.Component;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Кэш отрисованных строк таблиц.
+ * <p>
+ * Строка отрисовывается фрагментом из {@code table_rows.html} и сохраняется в виде
+ * готового HTML. Ключ включает идентификатор и версию записи (вместе с полями,
+ * которые меняются в обход версии), а также права пользователя, от которых зависит
+ * набор колонок. Неизменившиеся строки при следующих запросах не отрисовываются заново.
+ * </p>
+ *
+ * <p>
+ * Включается свойством {@code circus.row-cache.enabled} (профиль {@code prod}).
+ * Если кэш выключен, {@link #render} возвращает {@code null} и страница
+ * отрисовывает строки сама, поэтому правки шаблонов в разработке видны сразу.
+ * </p>
+ */
+@Component
+public class RowRenderCache {
+
+    /**
+     * Шаблон с фрагментами строк.
+     */
+    static final String TEMPLATE = "table_rows";
+
+    private final ITemplateEngine templateEngine;
+
+    private final boolean enabled;
+
+    private final Cache<String, String> rows;
+
+    public RowRenderCache(ITemplateEngine templateEngine,
+                          @Value("${circus.row-cache.enabled:false}") boolean enabled,
+                          @Value("${circus.row-cache.max-size:10000}") long maxSize,
+                          @Value("${circus.row-cache.ttl:PT10M}") Duration ttl) {
+        this.templateEngine = templateEngine;
+        this.enabled = enabled;
+        this.rows = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * Возвращает HTML ячеек для каждой строки, отрисовывая только отсутствующие в кэше.
+     *
+     * @param fragment  имя фрагмента в {@code table_rows.html}
+     * @param variable  имя переменной строки, которую ожидает фрагмент
+     * @param items     записи текущей страницы
+     * @param idOf      функция получения идентификатора записи
+     * @param versionOf функция получения версии записи (всё, от чего зависит разметка строки)
+     * @param can       права текущего пользователя
+     * @param request   текущий запрос (нужен для построения ссылок)
+     * @param response  текущий ответ
+     * @return разметка строк по идентификатору или {@code null}, если кэш выключен
+     */
+    public <T> Map<Long, String> render(String fragment, String variable, List<T> items,
+                                        Function<T, Long> idOf, Function<T, ?> versionOf,
+                                        Capabilities can,
+                                        HttpServletRequest request, HttpServletResponse response) {
+        if (!enabled) {
+            return null;
+        }
+        Map<Long, String> rendered = new HashMap<>();
+        WebContext context = null;
+        for (T item : items) {
+            Long id = idOf.apply(item);
+            String key = fragment + '|' + id + '|' + versionOf.apply(item) + '|' + rightsKey(can);
+            String html = rows.getIfPresent(key);
+            if (html == null) {
+                if (context == null) {
+                    context = new WebContext(JakartaServletWebApplication
+                            .buildApplication(request.getServletContext())
+                            .buildExchange(request, response), LocaleContextHolder.getLocale());
+                    context.setVariable("can", can);
+                }
+                context.setVariable(variable, item);
+                html = templateEngine.process(TEMPLATE, Set.of(fragment), context);
+                rows.put(key, html);
+            }
+            rendered.put(id, html);
+        }
+        return rendered;
+    }
+
+    private static String rightsKey(Capabilities can) {
+        return (can.isStaff() ? "s" : "-") + (can.isManagement() ? "m" : "-") + (can.isSuperAdmin() ? "a" : "-");
+    }
+}
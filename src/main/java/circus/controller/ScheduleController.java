@@ -0,0 +1,46 @@
+package circus.controller;
+
+import circus.service.ScheduleConflictException;
+import circus.service.SeasonScheduleGenerator;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Автоматическое составление расписания сезона.
+ */
+@RestController
+@RequestMapping("/api/schedule")
+public class ScheduleController {
+
+    private final SeasonScheduleGenerator seasonScheduleGenerator;
+
+    public ScheduleController(SeasonScheduleGenerator seasonScheduleGenerator) {
+        this.seasonScheduleGenerator = seasonScheduleGenerator;
+    }
+
+    /**
+     * Составляет расписание по шаблонам выступлений; с {@code "persist": true}
+     * сохраняет его, иначе только возвращает для просмотра.
+     */
+    @PostMapping("/generate")
+    public SeasonScheduleGenerator.Result generate(@RequestBody SeasonScheduleGenerator.Request request) {
+        return seasonScheduleGenerator.generate(request);
+    }
+
+    @ExceptionHandler(ScheduleConflictException.class)
+    public ResponseEntity<Map<String, String>> handleConflict(ScheduleConflictException ex) {
+        return error(HttpStatus.CONFLICT, ex);
+    }
+
+    @ExceptionHandler({IllegalArgumentException.class, IllegalStateException.class})
+    public ResponseEntity<Map<String, String>> handleBadRequest(RuntimeException ex) {
+        return error(HttpStatus.BAD_REQUEST, ex);
+    }
+
+    private static ResponseEntity<Map<String, String>> error(HttpStatus status, RuntimeException ex) {
+        return ResponseEntity.status(status).body(Map.of("message", String.valueOf(ex.getMessage())));
+    }
+}
@@ -0,0 +1,158 @@
+package circus.controller;
+
+import circus.model.Performance;
+import circus.model.Ticket;
+import circus.service.AdmissionRequiredException;
+import circus.service.IdempotencyKeyReusedException;
+import circus.service.PerformanceService;
+import circus.service.SoldOutException;
+import circus.service.TicketImportService;
+import circus.service.TicketService;
+import circus.service.WaitingRoom;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * API покупки билетов для внешних клиентов (киоски, партнёры).
+ * <p>
+ * Покупка, как и на сайте, проходит через очередь {@link WaitingRoom}:
+ * клиент получает токен в {@code POST /api/tickets/queue}, дожидается допуска
+ * и передаёт токен в заголовке {@code X-Admission-Token}.
+ * </p>
+ */
+@RestController
+@RequestMapping("/api/tickets")
+public class TicketApiController {
+
+    /**
+     * Заказ билета.
+     */
+    public record PurchaseRequest(Long performanceId, String customerName, Integer viewersCount,
+                                  Long totalPrice, String holdToken) {
+    }
+
+    /**
+     * Оформленный билет; {@code ticketId} пуст, если билет принят горячей продажей
+     * и будет сохранён в базе позже.
+     */
+    public record PurchaseResult(Long ticketId, Long performanceId, Integer viewersCount,
+                                 Integer seatRow, Integer firstSeat) {
+    }
+
+    private final TicketService ticketService;
+    private final PerformanceService performanceService;
+    private final WaitingRoom waitingRoom;
+    private final TicketImportService ticketImportService;
+
+    public TicketApiController(TicketService ticketService,
+                               PerformanceService performanceService,
+                               WaitingRoom waitingRoom,
+                               TicketImportService ticketImportService) {
+        this.ticketService = ticketService;
+        this.performanceService = performanceService;
+        this.waitingRoom = waitingRoom;
+        this.ticketImportService = ticketImportService;
+    }
+
+    @PostMapping("/queue")
+    public WaitingRoom.Admission enqueue(@RequestParam Long performanceId) {
+        return waitingRoom.enqueue(performanceId);
+    }
+
+    @GetMapping("/queue/status")
+    public WaitingRoom.Admission queueStatus(@RequestParam String token) {
+        return waitingRoom.status(token);
+    }
+
+    /**
+     * Оформляет билет. С заголовком {@code Idempotency-Key} повтор запроса
+     * возвращает ранее оформленный билет (200) без очереди и без новой вставки;
+     * слишком длинный ключ отклоняется (400), повтор ключа с другим заказом — 422.
+     */
+    @PostMapping
+    public ResponseEntity<PurchaseResult> purchase(@RequestHeader(name = "X-Admission-Token", required = false)
+                                                   String admissionToken,
+                                                   @RequestHeader(name = "Idempotency-Key", required = false)
+                                                   String idempotencyKey,
+                                                   @RequestBody PurchaseRequest request) {
+        // заказ собирается до очереди: по нему сверяется повтор с тем же ключом
+        Performance requested = new Performance();
+        requested.setId(request.performanceId());
+        Ticket ticket = new Ticket();
+        ticket.setPerformance(requested);
+        ticket.setCustomerName(request.customerName());
+        ticket.setViewersCount(request.viewersCount());
+        ticket.setTotalPrice(request.totalPrice());
+        ticket.setHoldToken(request.holdToken());
+        ticket.setIdempotencyKey(idempotencyKey);
+        Ticket original = ticketService.findRepeatedPurchase(ticket);
+        if (original != null) {
+            return ResponseEntity.ok(result(original));
+        }
+        waitingRoom.admit(admissionToken, request.performanceId());
+        try {
+            Performance performance = performanceService.findById(request.performanceId());
+            if (performance == null) {
+                throw new IllegalArgumentException("Выступление не найдено: " + request.performanceId());
+            }
+            ticket.setPerformance(performance);
+            Ticket saved = ticketService.save(ticket);
+            return ResponseEntity.status(HttpStatus.CREATED).body(result(saved));
+        } catch (RuntimeException e) {
+            waitingRoom.restore(admissionToken);
+            throw e;
+        }
+    }
+
+    /**
+     * Импорт продаж внешних касс: CSV в теле запроса читается потоком
+     * (по умолчанию в UTF-8), ответ — количество билетов и ошибки по строкам.
+     */
+    @PostMapping(value = "/import", consumes = {"text/csv", "text/plain"})
+    public TicketImportService.Report importSales(HttpServletRequest request) throws IOException {
+        Charset charset = request.getCharacterEncoding() != null
+                ? Charset.forName(request.getCharacterEncoding())
+                : StandardCharsets.UTF_8;
+        try (Reader csv = new InputStreamReader(request.getInputStream(), charset)) {
+            return ticketImportService.importCsv(csv);
+        }
+    }
+
+    private static PurchaseResult result(Ticket ticket) {
+        return new PurchaseResult(ticket.getId(), ticket.getPerformance().getId(), ticket.getViewersCount(),
+                ticket.getSeatRow(), ticket.getFirstSeat());
+    }
+
+    @ExceptionHandler(AdmissionRequiredException.class)
+    public ResponseEntity<Map<String, String>> handleAdmission(AdmissionRequiredException ex) {
+        return error(HttpStatus.TOO_MANY_REQUESTS, ex);
+    }
+
+    @ExceptionHandler(SoldOutException.class)
+    public ResponseEntity<Map<String, String>> handleSoldOut(SoldOutException ex) {
+        return error(HttpStatus.CONFLICT, ex);
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    public ResponseEntity<Map<String, String>> handleKeyReused(IdempotencyKeyReusedException ex) {
+        return error(HttpStatus.UNPROCESSABLE_ENTITY, ex);
+    }
+
+    @ExceptionHandler({IllegalArgumentException.class, IllegalStateException.class})
+    public ResponseEntity<Map<String, String>> handleBadRequest(RuntimeException ex) {
+        return error(HttpStatus.BAD_REQUEST, ex);
+    }
+
+    private static ResponseEntity<Map<String, String>> error(HttpStatus status, RuntimeException ex) {
+        return ResponseEntity.status(status).body(Map.of("message", String.valueOf(ex.getMessage())));
+    }
+}
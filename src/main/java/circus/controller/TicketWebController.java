@@ -1,48 +1,129 @@
 package circus.controller;
 
+import circus.config.Capabilities;
 import circus.model.Performance;
+import circus.model.PurchaseKey;
 import circus.model.Ticket;
+import circus.service.AdmissionRequiredException;
+import circus.service.IdempotencyKeyReusedException;
+import circus.service.KeysetPage;
 import circus.service.PerformanceService;
+import circus.service.ReferenceDataCache;
+import circus.service.SeatBlock;
+import circus.service.SeatHoldService;
 import circus.service.TicketService;
+import circus.service.WaitingRoom;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Map;
+import java.util.UUID;
+
 @Controller
 @RequestMapping("/tickets")
 public class TicketWebController {
 
     private final TicketService ticketService;
     private final PerformanceService performanceService;
+    private final ReferenceDataCache referenceDataCache;
+    private final RowRenderCache rowRenderCache;
+    private final WaitingRoom waitingRoom;
 
     public TicketWebController(TicketService ticketService,
-                               PerformanceService performanceService) {
+                               PerformanceService performanceService,
+                               ReferenceDataCache referenceDataCache,
+                               RowRenderCache rowRenderCache,
+                               WaitingRoom waitingRoom) {
         this.ticketService = ticketService;
         this.performanceService = performanceService;
+        this.referenceDataCache = referenceDataCache;
+        this.rowRenderCache = rowRenderCache;
+        this.waitingRoom = waitingRoom;
     }
 
     @GetMapping
-    public String listTickets(Model model) {
-        model.addAttribute("tickets", ticketService.findAll());
-        model.addAttribute("ticket", new Ticket());
-        model.addAttribute("performances", performanceService.findAll());
+    public String listTickets(Model model,
+                              @ModelAttribute("can") Capabilities can,
+                              HttpServletRequest request,
+                              HttpServletResponse response,
+                              @RequestParam(required = false) String after,
+                              @RequestParam(required = false) String before) {
+        KeysetPage<Ticket> page = ticketService.findPage(after, before, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("tickets", page.getItems());
+        model.addAttribute("page", page);
+        model.addAttribute("renderedRows", renderRows(page, can, request, response));
+        Ticket ticket = new Ticket();
+        ticket.setIdempotencyKey(UUID.randomUUID().toString());
+        model.addAttribute("ticket", ticket);
+        model.addAttribute("performances", referenceDataCache.performances());
         return "tickets";
     }
 
+    /**
+     * Сохраняет билет. Новые билеты покупателей оформляются только с допуском
+     * из очереди ({@link WaitingRoom}); сотрудники (касса) оформляют без очереди.
+     * Изменять билеты могут только сотрудники: идентификатор из формы покупателя
+     * не учитывается, а существование изменяемого билета проверяется по базе.
+     * Ключ идемпотентности берётся из заголовка {@code Idempotency-Key} или из формы;
+     * повтор уже оформленной покупки не ставится в очередь и не создаёт билет.
+     * Слишком длинный ключ отклоняется с кодом 400.
+     */
     @PostMapping("/save")
     public String saveTicket(@ModelAttribute("ticket") Ticket ticket,
+                             @ModelAttribute("can") Capabilities can,
+                             Model model,
+                             HttpServletResponse response,
+                             @RequestHeader(name = "Idempotency-Key", required = false) String idempotencyKey,
+                             @RequestParam(required = false) String admissionToken,
                              @RequestParam(required = false, defaultValue = "tickets") String returnTo) {
         // загружаем performance по id
         Long perfId = ticket.getPerformance() != null
                 ? ticket.getPerformance().getId()
                 : null;
 
+        // номер журнала горячей продажи присваивает только сервер
+        ticket.setHotSaleSeq(null);
+        if (!can.isStaff()) {
+            ticket.setId(null);
+            ticket.setVersion(null);
+        } else if (ticket.getId() != null && ticketService.findById(ticket.getId()) == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            model.addAttribute("message", "Билет не найден: " + ticket.getId());
+            return "error";
+        }
+
+        if (idempotencyKey != null) {
+            ticket.setIdempotencyKey(idempotencyKey);
+        }
+        if (ticket.getIdempotencyKey() != null && ticket.getIdempotencyKey().length() > PurchaseKey.MAX_KEY_LENGTH) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            model.addAttribute("message", "Ключ идемпотентности длиннее " + PurchaseKey.MAX_KEY_LENGTH + " символов");
+            return "error";
+        }
+        boolean retry = ticket.getId() == null && ticketService.findRepeatedPurchase(ticket) != null;
+        boolean queued = ticket.getId() == null && !can.isStaff() && !retry;
+        if (queued) {
+            waitingRoom.admit(admissionToken, perfId);
+        }
+
         if (perfId != null) {
             Performance performance = performanceService.findById(perfId);
             ticket.setPerformance(performance);
         }
 
-        ticketService.save(ticket);
+        try {
+            ticketService.save(ticket);
+        } catch (RuntimeException e) {
+            if (queued) {
+                waitingRoom.restore(admissionToken);
+            }
+            throw e;
+        }
 
         // Редирект в зависимости от параметра
         if ("performances".equals(returnTo)) {
@@ -53,6 +134,60 @@ public class TicketWebController {
     }
 
 
+    /**
+     * Ставит покупателя в очередь на выступление: позиция, время ожидания и токен.
+     * Отказ очереди возвращается в JSON (429 — очередь переполнена, 400 — выступление
+     * недоступно), чтобы страница показала сообщение покупателю.
+     */
+    @PostMapping("/queue")
+    @ResponseBody
+    public ResponseEntity<?> enqueue(@RequestParam Long performanceId) {
+        try {
+            return ResponseEntity.ok(waitingRoom.enqueue(performanceId));
+        } catch (AdmissionRequiredException e) {
+            return queueError(HttpStatus.TOO_MANY_REQUESTS, e);
+        } catch (IllegalArgumentException e) {
+            return queueError(HttpStatus.BAD_REQUEST, e);
+        }
+    }
+
+    /**
+     * Текущая позиция в очереди по токену.
+     */
+    @GetMapping("/queue/status")
+    @ResponseBody
+    public ResponseEntity<?> queueStatus(@RequestParam String token) {
+        try {
+            return ResponseEntity.ok(waitingRoom.status(token));
+        } catch (AdmissionRequiredException e) {
+            return queueError(HttpStatus.TOO_MANY_REQUESTS, e);
+        } catch (IllegalArgumentException e) {
+            return queueError(HttpStatus.BAD_REQUEST, e);
+        }
+    }
+
+    private static ResponseEntity<Map<String, String>> queueError(HttpStatus status, RuntimeException e) {
+        return ResponseEntity.status(status).body(Map.of("message", String.valueOf(e.getMessage())));
+    }
+
+    /**
+     * Удерживает места до оплаты; токен удержания отправляется вместе с формой покупки.
+     */
+    @PostMapping("/hold")
+    @ResponseBody
+    public SeatHoldService.Hold holdSeats(@RequestParam Long performanceId, @RequestParam int seats) {
+        return ticketService.hold(performanceId, seats);
+    }
+
+    /**
+     * Лучший свободный блок мест подряд по схеме зала (пустой ответ, если блока нет).
+     */
+    @GetMapping("/best-seats")
+    @ResponseBody
+    public SeatBlock bestSeats(@RequestParam Long performanceId, @RequestParam int seats) {
+        return ticketService.findBestSeats(performanceId, seats);
+    }
+
     @GetMapping("/delete/{id}")
     public String deleteTicket(@PathVariable Long id) {
         ticketService.deleteById(id);
@@ -60,12 +195,42 @@ public class TicketWebController {
     }
 
     @GetMapping("/edit/{id}")
-    public String editTicket(@PathVariable Long id, Model model) {
+    public String editTicket(@PathVariable Long id, Model model,
+                             @ModelAttribute("can") Capabilities can,
+                             HttpServletRequest request,
+                             HttpServletResponse response) {
         Ticket ticket = ticketService.findById(id);
-        model.addAttribute("tickets", ticketService.findAll());
+        if (ticket == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            model.addAttribute("message", "Билет не найден: " + id);
+            return "error";
+        }
+        // страница, начинающаяся с редактируемого билета
+        KeysetPage<Ticket> page = ticketService.findPage(String.valueOf(id - 1), null, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("tickets", page.getItems());
+        model.addAttribute("page", page);
+        model.addAttribute("renderedRows", renderRows(page, can, request, response));
         model.addAttribute("ticket", ticket);
         model.addAttribute("editingId", id);
-        model.addAttribute("performances", performanceService.findAll());
+        model.addAttribute("performances", referenceDataCache.performances());
         return "tickets";
     }
+
+    /**
+     * Повтор ключа идемпотентности с другим заказом.
+     */
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    public String handleKeyReused(IdempotencyKeyReusedException ex, Model model) {
+        model.addAttribute("message", ex.getMessage());
+        return "error";
+    }
+
+    // строка зависит от названия выступления, поэтому в ключ входит и его версия
+    private Map<Long, String> renderRows(KeysetPage<Ticket> page, Capabilities can,
+                                         HttpServletRequest request, HttpServletResponse response) {
+        return rowRenderCache.render("ticketRow", "ticketItem", page.getItems(), Ticket::getId,
+                t -> t.getVersion() + ":" + t.getPerformance().getVersion(),
+                can, request, response);
+    }
 }
@@ -3,6 +3,7 @@ package circus.controller;
 import circus.model.Role;
 import circus.model.User;
 import circus.repository.UserRepository;
+import circus.service.KeysetPage;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -24,8 +25,12 @@ public class UserWebController {
 
     @GetMapping
     public String userPage(Model model,
-                           @RequestParam(required = false) String msg) {
-        model.addAttribute("users", userRepository.findAll());
+                           @RequestParam(required = false) String msg,
+                           @RequestParam(required = false) String after,
+                           @RequestParam(required = false) String before) {
+        KeysetPage<User> page = KeysetPage.byId(userRepository, User::getId, after, before, KeysetPage.DEFAULT_SIZE);
+        model.addAttribute("users", page.getItems());
+        model.addAttribute("page", page);
         model.addAttribute("message", msg);
         return "users";
     }
@@ -3,11 +3,22 @@ package circus.model;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "animal_acts")
+@Table(name = "animal_acts",
+        indexes = {
+                @Index(name = "idx_animal_acts_artist_id", columnList = "artist_id"),
+                @Index(name = "idx_animal_acts_animal_id", columnList = "animal_id"),
+                @Index(name = "idx_animal_acts_performance_id", columnList = "performance_id")
+        })
+@NamedEntityGraph(name = "AnimalAct.list", attributeNodes = {
+        @NamedAttributeNode("performance"),
+        @NamedAttributeNode("animal"),
+        @NamedAttributeNode("animalTrainer")
+})
 public class AnimalAct {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "animal_acts_seq")
+    @SequenceGenerator(name = "animal_acts_seq", sequenceName = "animal_acts_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -0,0 +1,95 @@
+package circus.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serial;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Продажи выступления за день: количество билетов, зрителей и выручка.
+ * <p>
+ * Сводная таблица для отчётов по месяцам и сезонам, чтобы не суммировать
+ * {@code tickets}. Поддерживается инкрементально при каждой записи билета;
+ * день — дата продажи билета ({@link Ticket#getSoldAt()}).
+ * </p>
+ */
+@Entity
+@Table(name = "daily_sales", indexes = @Index(name = "idx_daily_sales_sale_date", columnList = "sale_date"))
+@IdClass(DailySales.Key.class)
+public class DailySales {
+
+    /**
+     * Составной ключ: выступление и день продажи.
+     */
+    public static class Key implements Serializable {
+
+        @Serial
+        private static final long serialVersionUID = 1L;
+
+        private Long performanceId;
+
+        private LocalDate saleDate;
+
+        public Key() {
+        }
+
+        public Key(Long performanceId, LocalDate saleDate) {
+            this.performanceId = performanceId;
+            this.saleDate = saleDate;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key
+                    && Objects.equals(performanceId, key.performanceId)
+                    && Objects.equals(saleDate, key.saleDate);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(performanceId, saleDate);
+        }
+    }
+
+    @Id
+    @Column(name = "performance_id")
+    private Long performanceId;
+
+    @Id
+    @Column(name = "sale_date")
+    private LocalDate saleDate;
+
+    @Column(name = "tickets", nullable = false)
+    private Long tickets;
+
+    @Column(name = "viewers", nullable = false)
+    private Long viewers;
+
+    @Column(name = "revenue", nullable = false)
+    private Long revenue;
+
+    public DailySales() {
+    }
+
+    public Long getPerformanceId() {
+        return performanceId;
+    }
+
+    public LocalDate getSaleDate() {
+        return saleDate;
+    }
+
+    public Long getTickets() {
+        return tickets;
+    }
+
+    public Long getViewers() {
+        return viewers;
+    }
+
+    public Long getRevenue() {
+        return revenue;
+    }
+}
@@ -3,11 +3,20 @@ package circus.model;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "human_acts")
+@Table(name = "human_acts",
+        indexes = {
+                @Index(name = "idx_human_acts_artist_id", columnList = "artist_id"),
+                @Index(name = "idx_human_acts_performance_id", columnList = "performance_id")
+        })
+@NamedEntityGraph(name = "HumanAct.list", attributeNodes = {
+        @NamedAttributeNode("performance"),
+        @NamedAttributeNode("mainPerformer")
+})
 public class HumanAct {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "human_acts_seq")
+    @SequenceGenerator(name = "human_acts_seq", sequenceName = "human_acts_seq", allocationSize = 50)
     private Long id;
 
     /**
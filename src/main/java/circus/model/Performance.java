@@ -6,14 +6,19 @@ import java.lang.annotation.ElementType;
 import java.time.LocalDateTime;
 import java.util.List;
 
-import org.hibernate.annotations.Formula;
+import org.hibernate.annotations.ColumnDefault;
 import org.springframework.format.annotation.DateTimeFormat;
 
 /**
  * Выступление в цирке.
  */
 @Entity
-@Table(name = "performances")
+@Table(name = "performances",
+        indexes = {
+                @Index(name = "idx_performances_date_time_id", columnList = "date_time, id"),
+                @Index(name = "idx_performances_revenue_id", columnList = "revenue, id"),
+                @Index(name = "idx_performances_main_artist_id", columnList = "main_artist_id")
+        })
 public class Performance {
 
     /**
@@ -36,7 +41,8 @@ public class Performance {
     private List<AnimalAct> animalActs;
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "performances_seq")
+    @SequenceGenerator(name = "performances_seq", sequenceName = "performances_seq", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -71,20 +77,61 @@ public class Performance {
     @Column(name = "status", nullable = false)
     private boolean status;
 
-    @Formula("(SELECT COALESCE(SUM(t.total_price), 0) " +
-            "FROM tickets t " +
-            "WHERE t.performance_id = id)")
-    private Long revenue;
+    /**
+     * Суммарная выручка по проданным билетам.
+     * <p>
+     * Хранится как агрегат и изменяется только атомарными UPDATE при сохранении
+     * и удалении билетов (см. {@code TicketServiceImpl}), поэтому в обычные
+     * INSERT/UPDATE выступления не попадает.
+     * </p>
+     */
+    @Column(name = "revenue", nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private Long revenue = 0L;
+
+    /**
+     * Общее количество зрителей по проданным билетам (агрегат, как и {@link #revenue}).
+     */
+    @Column(name = "viewers_count", nullable = false, insertable = false, updatable = false)
+    @ColumnDefault("0")
+    private Long viewersCount = 0L;
+
+    /**
+     * Вместимость (количество мест); {@code null} — без ограничения.
+     * <p>
+     * Продажа билета проверяет её одним условным UPDATE вместе с увеличением
+     * {@link #viewersCount}, поэтому мест не может быть продано больше, чем есть.
+     * </p>
+     */
+    @Column(name = "capacity")
+    private Integer capacity;
 
     @Column(name = "description",
             nullable = false,
             columnDefinition = "TEXT")
     private String description;
 
+    /**
+     * Версия записи для оптимистической блокировки.
+     * <p>
+     * Увеличивается при каждом сохранении выступления и входит в ключ кэша
+     * отрисованных строк афиши. Агрегаты продаж и статус меняются массовыми
+     * UPDATE без изменения версии.
+     * </p>
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    @ColumnDefault("0")
+    private Long version;
+
     public Long getRevenue() {
         return revenue;
     }
 
+    public Long getViewersCount() {
+        return viewersCount;
+    }
+
     // Конструктор без аргументов обязателен для JPA
     public Performance() {
     }
@@ -146,4 +193,27 @@ public class Performance {
     public String getDescription() {
         return description;
     }
+
+    public Integer getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(Integer capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Количество свободных мест или {@code null}, если вместимость не ограничена.
+     */
+    public Long getRemainingSeats() {
+        return capacity == null ? null : Math.max(0, capacity - viewersCount);
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,73 @@
+package circus.model;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ключ идемпотентности покупки: повторный запрос с тем же ключом возвращает
+ * уже оформленный билет вместо нового.
+ */
+@Entity
+@Table(name = "purchase_keys", indexes = @Index(name = "idx_purchase_keys_created_at", columnList = "created_at"))
+public class PurchaseKey {
+
+    /**
+     * Наибольшая длина ключа; более длинные ключи отклоняются до обращения к базе.
+     */
+    public static final int MAX_KEY_LENGTH = 100;
+
+    @Id
+    @Column(name = "idempotency_key", length = MAX_KEY_LENGTH)
+    private String key;
+
+    /**
+     * Отпечаток заказа (SHA-256): повтор с тем же ключом, но другим заказом отклоняется.
+     */
+    @Column(name = "request_hash", length = 64)
+    private String requestHash;
+
+    /**
+     * Оформленный билет (заполняется в той же транзакции, что и покупка).
+     */
+    @Column(name = "ticket_id")
+    private Long ticketId;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    public PurchaseKey() {
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getRequestHash() {
+        return requestHash;
+    }
+
+    public void setRequestHash(String requestHash) {
+        this.requestHash = requestHash;
+    }
+
+    public Long getTicketId() {
+        return ticketId;
+    }
+
+    public void setTicketId(Long ticketId) {
+        this.ticketId = ticketId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,87 @@
+package circus.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Схема зала выступления и занятость мест.
+ * <p>
+ * Хранится отдельно от {@link Performance}, чтобы списки выступлений не читали
+ * битовую карту. Занятость — {@code bytea}, по биту на место (8 байт на ряд);
+ * отдельные места занимаются и освобождаются в базе через {@code set_bit}.
+ * </p>
+ */
+@Entity
+@Table(name = "seat_maps")
+public class SeatMap {
+
+    /**
+     * Идентификатор выступления.
+     */
+    @Id
+    @Column(name = "performance_id")
+    private Long performanceId;
+
+    /**
+     * Количество рядов (ряд 1 — ближайший к манежу).
+     */
+    @Column(name = "seat_rows", nullable = false)
+    private Integer rows;
+
+    @Column(name = "seats_per_row", nullable = false)
+    private Integer seatsPerRow;
+
+    /**
+     * Ценовые зоны по рядам, например {@code 1-3:1500;4-10:900}.
+     */
+    @Column(name = "price_zones", nullable = false)
+    private String priceZones;
+
+    /**
+     * Битовая карта занятых мест.
+     */
+    @Column(name = "occupancy", nullable = false)
+    private byte[] occupancy;
+
+    public SeatMap() {
+    }
+
+    public Long getPerformanceId() {
+        return performanceId;
+    }
+
+    public void setPerformanceId(Long performanceId) {
+        this.performanceId = performanceId;
+    }
+
+    public Integer getRows() {
+        return rows;
+    }
+
+    public void setRows(Integer rows) {
+        this.rows = rows;
+    }
+
+    public Integer getSeatsPerRow() {
+        return seatsPerRow;
+    }
+
+    public void setSeatsPerRow(Integer seatsPerRow) {
+        this.seatsPerRow = seatsPerRow;
+    }
+
+    public String getPriceZones() {
+        return priceZones;
+    }
+
+    public void setPriceZones(String priceZones) {
+        this.priceZones = priceZones;
+    }
+
+    public byte[] getOccupancy() {
+        return occupancy;
+    }
+
+    public void setOccupancy(byte[] occupancy) {
+        this.occupancy = occupancy;
+    }
+}
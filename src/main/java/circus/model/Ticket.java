@@ -1,13 +1,22 @@
 package circus.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
+
+import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "tickets")
+@Table(name = "tickets",
+        indexes = {
+                @Index(name = "idx_tickets_sold_at", columnList = "sold_at"),
+                @Index(name = "idx_tickets_performance_id", columnList = "performance_id")
+        })
+@NamedEntityGraph(name = "Ticket.list", attributeNodes = @NamedAttributeNode("performance"))
 public class Ticket {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tickets_seq")
+    @SequenceGenerator(name = "tickets_seq", sequenceName = "tickets_seq", allocationSize = 100)
     private Long id;
 
     /**
@@ -35,6 +44,51 @@ public class Ticket {
     @Column(name = "total_price", nullable = false)
     private Long totalPrice;
 
+    /**
+     * Ряд (с единицы), если у выступления есть схема зала; места заказа идут подряд.
+     */
+    @Column(name = "seat_row")
+    private Integer seatRow;
+
+    /**
+     * Первое место заказа в ряду (с единицы).
+     */
+    @Column(name = "first_seat")
+    private Integer firstSeat;
+
+    /**
+     * Версия записи для оптимистической блокировки и кэша отрисованных строк.
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    @ColumnDefault("0")
+    private Long version;
+
+    /**
+     * Номер заказа в журнале горячей продажи ({@code null} для обычной продажи).
+     * Уникален, чтобы заказ не сохранился дважды при восстановлении после сбоя.
+     */
+    @Column(name = "hot_sale_seq", unique = true, updatable = false)
+    private Long hotSaleSeq;
+
+    /**
+     * Момент продажи; задаётся при оформлении и не меняется при правке билета.
+     */
+    @Column(name = "sold_at", updatable = false)
+    private LocalDateTime soldAt;
+
+    /**
+     * Удержание мест, с которым оформляется покупка (не хранится в БД).
+     */
+    @Transient
+    private String holdToken;
+
+    /**
+     * Ключ идемпотентности покупки (не хранится в билете, см. {@code purchase_keys}).
+     */
+    @Transient
+    private String idempotencyKey;
+
     public Ticket() {
     }
 
@@ -81,4 +135,60 @@ public class Ticket {
     public void setTotalPrice(Long totalPrice) {
         this.totalPrice = totalPrice;
     }
+
+    public Integer getSeatRow() {
+        return seatRow;
+    }
+
+    public void setSeatRow(Integer seatRow) {
+        this.seatRow = seatRow;
+    }
+
+    public Integer getFirstSeat() {
+        return firstSeat;
+    }
+
+    public void setFirstSeat(Integer firstSeat) {
+        this.firstSeat = firstSeat;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public Long getHotSaleSeq() {
+        return hotSaleSeq;
+    }
+
+    public void setHotSaleSeq(Long hotSaleSeq) {
+        this.hotSaleSeq = hotSaleSeq;
+    }
+
+    public LocalDateTime getSoldAt() {
+        return soldAt;
+    }
+
+    public void setSoldAt(LocalDateTime soldAt) {
+        this.soldAt = soldAt;
+    }
+
+    public String getHoldToken() {
+        return holdToken;
+    }
+
+    public void setHoldToken(String holdToken) {
+        this.holdToken = holdToken;
+    }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
+
+    public void setIdempotencyKey(String idempotencyKey) {
+        this.idempotencyKey = idempotencyKey;
+    }
 }
@@ -17,7 +17,8 @@ public class User {
      * Уникальный идентификатор пользователя (первичный ключ).
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 20)
     private Long id;
 
     /**
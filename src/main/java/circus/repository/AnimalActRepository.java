@@ -3,11 +3,30 @@ package circus.repository;
 import circus.model.Animal;
 import circus.model.AnimalAct;
 import circus.model.HumanAct;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
-public interface AnimalActRepository extends JpaRepository<AnimalAct, Long> {
+public interface AnimalActRepository extends JpaRepository<AnimalAct, Long>, KeysetRepository<AnimalAct> {
     // при необходимости можно добавить методы, например:
     // List<Animal> findBySpecies(String species);
-}
\ No newline at end of file
+
+    // Методы выборки по ключу переопределены, чтобы страница списка загружалась
+    // вместе со связанными сущностями одним запросом (граф "AnimalAct.list")
+
+    @Override
+    @EntityGraph("AnimalAct.list")
+    List<AnimalAct> findAllByOrderByIdAsc(Limit limit);
+
+    @Override
+    @EntityGraph("AnimalAct.list")
+    List<AnimalAct> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @Override
+    @EntityGraph("AnimalAct.list")
+    List<AnimalAct> findByIdLessThanOrderByIdDesc(Long id, Limit limit);
+}
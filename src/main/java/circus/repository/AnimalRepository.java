@@ -1,11 +1,39 @@
 package circus.repository;
 
 import circus.model.Animal;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
-public interface AnimalRepository extends JpaRepository<Animal, Long> {
+public interface AnimalRepository extends JpaRepository<Animal, Long>, KeysetRepository<Animal> {
     // при необходимости можно добавить методы, например:
     // List<Animal> findBySpecies(String species);
+
+    /**
+     * Идентификаторы и названия для выпадающих списков (без загрузки сущностей).
+     */
+    @Query("SELECT new circus.repository.ReferenceOption(a.id, a.name) FROM Animal a ORDER BY a.id")
+    List<ReferenceOption> findOptions();
+
+    // Страницы списка кэшируются в регионе запросов второго уровня; Hibernate
+    // сбрасывает их при любом изменении таблицы
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Animal> findAllByOrderByIdAsc(Limit limit);
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Animal> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Animal> findByIdLessThanOrderByIdDesc(Long id, Limit limit);
 }
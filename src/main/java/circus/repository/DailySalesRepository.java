@@ -0,0 +1,136 @@
+package circus.repository;
+
+import circus.model.DailySales;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Репозиторий сводной таблицы продаж по дням {@link DailySales}.
+ * <p>
+ * Изменения применяются нативным UPSERT с приращением, поэтому параллельные
+ * продажи одного дня не теряют друг друга и не требуют чтения строки.
+ * </p>
+ */
+public interface DailySalesRepository extends JpaRepository<DailySales, DailySales.Key> {
+
+    /**
+     * Продажи за месяц.
+     */
+    interface MonthSales {
+        LocalDate getMonth();
+
+        Long getTickets();
+
+        Long getViewers();
+
+        Long getRevenue();
+    }
+
+    /**
+     * Выступление и день, сводка за который разошлась с таблицей билетов.
+     */
+    interface SalesDay {
+        Long getPerformanceId();
+
+        LocalDate getSaleDate();
+    }
+
+    /**
+     * Прибавляет продажи к строке дня (отрицательные значения — при удалении и изменении билетов).
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "daily_sales"))
+    @Query(value = """
+            INSERT INTO daily_sales (performance_id, sale_date, tickets, viewers, revenue)
+            VALUES (:performanceId, :saleDate, :tickets, :viewers, :revenue)
+            ON CONFLICT (performance_id, sale_date) DO UPDATE SET
+                tickets = daily_sales.tickets + EXCLUDED.tickets,
+                viewers = daily_sales.viewers + EXCLUDED.viewers,
+                revenue = daily_sales.revenue + EXCLUDED.revenue
+            """, nativeQuery = true)
+    int addSales(@Param("performanceId") Long performanceId, @Param("saleDate") LocalDate saleDate,
+                 @Param("tickets") long tickets, @Param("viewers") long viewers, @Param("revenue") long revenue);
+
+    /**
+     * Продажи по месяцам диапазона дней (включительно).
+     */
+    @Query(value = """
+            SELECT CAST(date_trunc('month', sale_date) AS date) AS "month",
+                   CAST(SUM(tickets) AS bigint) AS "tickets",
+                   CAST(SUM(viewers) AS bigint) AS "viewers",
+                   CAST(SUM(revenue) AS bigint) AS "revenue"
+            FROM daily_sales
+            WHERE sale_date >= :from AND sale_date <= :to
+            GROUP BY 1
+            ORDER BY 1
+            """, nativeQuery = true)
+    List<MonthSales> findMonthSales(@Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    /**
+     * Дни диапазона, у которых сводка не совпадает с суммой по {@code tickets}
+     * (в том числе отсутствующие и лишние строки).
+     *
+     * @param from      первый день
+     * @param to        последний день (включительно)
+     * @param fromStart начало первого дня
+     * @param toEnd     начало дня, следующего за последним
+     */
+    @Query(value = """
+            SELECT COALESCE(d.performance_id, t.performance_id) AS "performanceId",
+                   COALESCE(d.sale_date, t.sale_date) AS "saleDate"
+            FROM (SELECT * FROM daily_sales WHERE sale_date >= :from AND sale_date <= :to) d
+            FULL JOIN (SELECT performance_id, CAST(sold_at AS date) AS sale_date, COUNT(*) AS tickets,
+                              SUM(viewers_count) AS viewers, SUM(total_price) AS revenue
+                       FROM tickets
+                       WHERE sold_at >= :fromStart AND sold_at < :toEnd
+                       GROUP BY performance_id, CAST(sold_at AS date)) t
+              ON t.performance_id = d.performance_id AND t.sale_date = d.sale_date
+            WHERE d.tickets IS DISTINCT FROM t.tickets
+               OR d.viewers IS DISTINCT FROM t.viewers
+               OR d.revenue IS DISTINCT FROM t.revenue
+            """, nativeQuery = true)
+    List<SalesDay> findDrift(@Param("from") LocalDate from, @Param("to") LocalDate to,
+                             @Param("fromStart") LocalDateTime fromStart, @Param("toEnd") LocalDateTime toEnd);
+
+    /**
+     * Пересчитывает строку дня по таблице билетов.
+     * <p>Вызывается после блокировки строки выступления в той же транзакции.</p>
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "daily_sales"))
+    @Query(value = """
+            INSERT INTO daily_sales (performance_id, sale_date, tickets, viewers, revenue)
+            SELECT :performanceId, :saleDate, COUNT(*), COALESCE(SUM(viewers_count), 0), COALESCE(SUM(total_price), 0)
+            FROM tickets
+            WHERE performance_id = :performanceId AND sold_at >= :dayStart AND sold_at < :dayEnd
+            ON CONFLICT (performance_id, sale_date) DO UPDATE SET
+                tickets = EXCLUDED.tickets,
+                viewers = EXCLUDED.viewers,
+                revenue = EXCLUDED.revenue
+            """, nativeQuery = true)
+    int recalculateDay(@Param("performanceId") Long performanceId, @Param("saleDate") LocalDate saleDate,
+                       @Param("dayStart") LocalDateTime dayStart, @Param("dayEnd") LocalDateTime dayEnd);
+
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "daily_sales"))
+    @Query(value = "DELETE FROM daily_sales WHERE performance_id = :performanceId", nativeQuery = true)
+    int deleteByPerformanceId(@Param("performanceId") Long performanceId);
+
+    /**
+     * Удаляет опустевшие строки дней (после удаления или переноса всех билетов).
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "daily_sales"))
+    @Query(value = "DELETE FROM daily_sales WHERE performance_id = :performanceId AND sale_date = :saleDate " +
+            "AND tickets = 0", nativeQuery = true)
+    int deleteIfEmpty(@Param("performanceId") Long performanceId, @Param("saleDate") LocalDate saleDate);
+}
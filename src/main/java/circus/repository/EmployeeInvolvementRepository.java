@@ -0,0 +1,108 @@
+package circus.repository;
+
+import circus.model.Employee;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Участие сотрудников в выступлениях: главным артистом ({@code performances.main_artist_id}),
+ * исполнителем номера ({@code human_acts.artist_id}) и дрессировщиком
+ * ({@code animal_acts.artist_id}).
+ * <p>
+ * Все три роли объединяются одним запросом {@code UNION ALL}; каждая ветка читает
+ * индекс по столбцу сотрудника, поэтому запрос не просматривает таблицы целиком.
+ * </p>
+ */
+public interface EmployeeInvolvementRepository extends Repository<Employee, Long> {
+
+    /**
+     * Главный артист выступления.
+     */
+    String MAIN_ARTIST = "MAIN_ARTIST";
+
+    /**
+     * Исполнитель номера артистов.
+     */
+    String HUMAN_ACT = "HUMAN_ACT";
+
+    /**
+     * Дрессировщик номера с животными.
+     */
+    String ANIMAL_TRAINER = "ANIMAL_TRAINER";
+
+    /**
+     * Роль сотрудника в выступлении.
+     */
+    interface Involvement {
+        Long getEmployeeId();
+
+        /**
+         * @return {@link #MAIN_ARTIST}, {@link #HUMAN_ACT} или {@link #ANIMAL_TRAINER}
+         */
+        String getRole();
+
+        /**
+         * @return идентификатор номера; {@code null} для главного артиста
+         */
+        Long getActId();
+
+        Long getPerformanceId();
+
+        String getPerformanceName();
+
+        LocalDateTime getDateTime();
+    }
+
+    /**
+     * Загрузка сотрудника.
+     */
+    interface Workload {
+        Long getEmployeeId();
+
+        Long getPerformances();
+
+        Long getRoles();
+    }
+
+    /**
+     * Все роли сотрудника в порядке даты выступления.
+     */
+    @Query(value = """
+            SELECT i.employee_id AS "employeeId", i.role AS "role", i.act_id AS "actId",
+                   p.id AS "performanceId", p.name AS "performanceName", p.date_time AS "dateTime"
+            FROM (SELECT main_artist_id AS employee_id, 'MAIN_ARTIST' AS role,
+                         CAST(NULL AS bigint) AS act_id, id AS performance_id
+                  FROM performances WHERE main_artist_id = :employeeId
+                  UNION ALL
+                  SELECT artist_id, 'HUMAN_ACT', id, performance_id
+                  FROM human_acts WHERE artist_id = :employeeId
+                  UNION ALL
+                  SELECT artist_id, 'ANIMAL_TRAINER', id, performance_id
+                  FROM animal_acts WHERE artist_id = :employeeId) i
+            JOIN performances p ON p.id = i.performance_id
+            ORDER BY p.date_time, p.id, i.role, i.act_id
+            """, nativeQuery = true)
+    List<Involvement> findByEmployeeId(@Param("employeeId") Long employeeId);
+
+    /**
+     * Количество выступлений и ролей у каждого из сотрудников; сотрудники без ролей
+     * в результат не попадают.
+     */
+    @Query(value = """
+            SELECT i.employee_id AS "employeeId", COUNT(DISTINCT i.performance_id) AS "performances",
+                   COUNT(*) AS "roles"
+            FROM (SELECT main_artist_id AS employee_id, id AS performance_id
+                  FROM performances WHERE main_artist_id IN (:employeeIds)
+                  UNION ALL
+                  SELECT artist_id, performance_id FROM human_acts WHERE artist_id IN (:employeeIds)
+                  UNION ALL
+                  SELECT artist_id, performance_id FROM animal_acts WHERE artist_id IN (:employeeIds)) i
+            GROUP BY i.employee_id
+            """, nativeQuery = true)
+    List<Workload> findWorkload(@Param("employeeIds") Collection<Long> employeeIds);
+}
@@ -1,11 +1,39 @@
 package circus.repository;
 
 import circus.model.Employee;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
-public interface EmployeeRepository extends JpaRepository<Employee, Long> {
+public interface EmployeeRepository extends JpaRepository<Employee, Long>, KeysetRepository<Employee> {
     // при необходимости можно добавить методы, например:
     // List<Employee> findBySpecies(String species);
+
+    /**
+     * Идентификаторы и названия для выпадающих списков (без загрузки сущностей).
+     */
+    @Query("SELECT new circus.repository.ReferenceOption(e.id, e.fullName) FROM Employee e ORDER BY e.id")
+    List<ReferenceOption> findOptions();
+
+    // Страницы списка кэшируются в регионе запросов второго уровня; Hibernate
+    // сбрасывает их при любом изменении таблицы
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Employee> findAllByOrderByIdAsc(Limit limit);
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Employee> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @Override
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Employee> findByIdLessThanOrderByIdDesc(Long id, Limit limit);
 }
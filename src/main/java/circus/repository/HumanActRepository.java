@@ -3,13 +3,31 @@ package circus.repository;
 import circus.model.Animal;
 import circus.model.AnimalAct;
 import circus.model.HumanAct;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
 
 @Repository
-public interface HumanActRepository extends JpaRepository<HumanAct, Long> {
+public interface HumanActRepository extends JpaRepository<HumanAct, Long>, KeysetRepository<HumanAct> {
     // при необходимости можно добавить методы, например:
-        List<HumanAct> findByMainPerformer_Id(Long performerId);
+    @EntityGraph("HumanAct.list")
+    List<HumanAct> findByMainPerformer_Id(Long performerId);
+
+    // Методы выборки по ключу переопределены, чтобы страница списка загружалась
+    // вместе со связанными сущностями одним запросом (граф "HumanAct.list")
+
+    @Override
+    @EntityGraph("HumanAct.list")
+    List<HumanAct> findAllByOrderByIdAsc(Limit limit);
+
+    @Override
+    @EntityGraph("HumanAct.list")
+    List<HumanAct> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @Override
+    @EntityGraph("HumanAct.list")
+    List<HumanAct> findByIdLessThanOrderByIdDesc(Long id, Limit limit);
 }
@@ -0,0 +1,36 @@
+package circus.repository;
+
+import org.springframework.data.domain.Limit;
+import org.springframework.data.repository.NoRepositoryBean;
+import org.springframework.data.repository.Repository;
+
+import java.util.List;
+
+/**
+ * Общие методы постраничной выборки по ключу (keyset / seek pagination).
+ * <p>
+ * Страница определяется не смещением (OFFSET), а идентификатором последней
+ * показанной записи, поэтому выборка N-й страницы по первичному ключу
+ * стоит столько же, сколько выборка первой.
+ * </p>
+ *
+ * @param <T> тип сущности с числовым идентификатором {@code id}
+ */
+@NoRepositoryBean
+public interface KeysetRepository<T> extends Repository<T, Long> {
+
+    /**
+     * Первая страница в порядке возрастания идентификатора.
+     */
+    List<T> findAllByOrderByIdAsc(Limit limit);
+
+    /**
+     * Записи после указанного идентификатора (страница «вперёд»).
+     */
+    List<T> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    /**
+     * Записи перед указанным идентификатором в обратном порядке (страница «назад»).
+     */
+    List<T> findByIdLessThanOrderByIdDesc(Long id, Limit limit);
+}
@@ -1,22 +1,29 @@
 package circus.repository;
 
 import circus.model.Performance;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Репозиторий доступа к данным сущности {@link Performance}.
  * <p>
  * Предоставляет базовые CRUD-операции через {@link JpaRepository}.
- * Дополнительные методы выборки можно определить через ключевые слова Spring Data JPA.
+ * Дополнительные методы выборки можно определить через ключевые слова Spring Data JPA,
+ * а составные фильтры — через {@link PerformanceSpecifications}.
  * </p>
  */
-public interface PerformanceRepository extends JpaRepository<Performance, Long> {
+public interface PerformanceRepository extends JpaRepository<Performance, Long>,
+        JpaSpecificationExecutor<Performance> {
     List<Performance> findByStatusFalse();
 
     //    @Query("SELECT p FROM Performance p WHERE " +
@@ -32,6 +39,96 @@ public interface PerformanceRepository extends JpaRepository<Performance, Long>
             "WHERE p.dateTime < CURRENT_TIMESTAMP AND p.status = false")
     int markPastPerformancesAsDone();
 
+    /**
+     * Время ближайшего выступления, которое ещё не отмечено как проведённое.
+     * <p>Именно в этот момент статус выступления должен смениться.</p>
+     *
+     * @return дата и время или {@code null}, если таких выступлений нет
+     */
+    @Query("SELECT MIN(p.dateTime) FROM Performance p WHERE p.status = false")
+    LocalDateTime findNextStatusTransition();
+
+    /**
+     * Пытается взять транзакционную advisory-блокировку PostgreSQL.
+     * <p>
+     * Блокировка снимается автоматически при завершении транзакции.
+     * Используется, чтобы фоновую задачу выполнял только один узел приложения.
+     * </p>
+     *
+     * @param key ключ блокировки
+     * @return {@code true}, если блокировка получена
+     */
+    @Query(value = "SELECT pg_try_advisory_xact_lock(:key)", nativeQuery = true)
+    boolean tryAdvisoryXactLock(@Param("key") long key);
+
+    /**
+     * Атомарно изменяет агрегаты продаж выступления на указанные величины.
+     * <p>Отрицательные значения используются при удалении и изменении билетов.</p>
+     *
+     * @param id      идентификатор выступления
+     * @param revenue изменение выручки
+     * @param viewers изменение количества зрителей
+     * @return количество обновлённых строк
+     */
+    @Modifying
+    @Query("UPDATE Performance p SET p.revenue = p.revenue + :revenue, " +
+            "p.viewersCount = p.viewersCount + :viewers WHERE p.id = :id")
+    int addSales(@Param("id") Long id, @Param("revenue") long revenue, @Param("viewers") long viewers);
+
+    /**
+     * Резервирует места и учитывает выручку одним условным UPDATE.
+     * <p>
+     * Строка обновляется, только если после продажи число зрителей не превысит
+     * вместимость. Проверка и изменение выполняются атомарно под блокировкой
+     * одной строки, поэтому параллельные покупки не могут продать лишние места.
+     * </p>
+     *
+     * @param id      идентификатор выступления
+     * @param revenue выручка по билету
+     * @param viewers количество мест
+     * @param held    места, временно удержанные другими покупателями
+     * @return 1, если места зарезервированы; 0, если свободных мест недостаточно
+     */
+    @Modifying
+    @Query("UPDATE Performance p SET p.revenue = p.revenue + :revenue, " +
+            "p.viewersCount = p.viewersCount + :viewers " +
+            "WHERE p.id = :id AND (p.capacity IS NULL OR p.viewersCount + :viewers + :held <= p.capacity)")
+    int reserveSeats(@Param("id") Long id, @Param("revenue") long revenue, @Param("viewers") long viewers,
+                     @Param("held") long held);
+
+    /**
+     * Идентификаторы выступлений, у которых агрегаты продаж расходятся с таблицей билетов.
+     */
+    @Query(value = """
+            SELECT p.id FROM performances p
+            LEFT JOIN (SELECT performance_id, SUM(total_price) AS revenue, SUM(viewers_count) AS viewers
+                       FROM tickets GROUP BY performance_id) t ON t.performance_id = p.id
+            WHERE p.revenue <> COALESCE(t.revenue, 0) OR p.viewers_count <> COALESCE(t.viewers, 0)
+            """, nativeQuery = true)
+    List<Long> findIdsWithSalesDrift();
+
+    /**
+     * Блокирует строку выступления до конца транзакции ({@code SELECT ... FOR UPDATE}).
+     */
+    @Query(value = "SELECT id FROM performances WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Long lockById(@Param("id") Long id);
+
+    /**
+     * Пересчитывает агрегаты продаж выступления по таблице билетов.
+     * <p>Вызывается после {@link #lockById(Long)} в той же транзакции.
+     * Затрагиваемая таблица указана явно, иначе нативный UPDATE сбросил бы
+     * все регионы второго уровня кэша.</p>
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "performances"))
+    @Query(value = """
+            UPDATE performances SET
+                revenue = (SELECT COALESCE(SUM(total_price), 0) FROM tickets WHERE performance_id = :id),
+                viewers_count = (SELECT COALESCE(SUM(viewers_count), 0) FROM tickets WHERE performance_id = :id)
+            WHERE id = :id
+            """, nativeQuery = true)
+    int recalculateSales(@Param("id") Long id);
+
     @Query("""
             SELECT p FROM Performance p
             WHERE (:fromDate IS NULL OR p.dateTime >= :fromDate)
@@ -51,4 +148,36 @@ public interface PerformanceRepository extends JpaRepository<Performance, Long>
     List<Performance> findAllUpcomingOrderByDateTimeDesc();
 
     List<Performance> findAll();
+
+    @Query("SELECT p.id FROM Performance p")
+    List<Long> findAllIds();
+
+    /**
+     * Все выступления по возрастанию идентификатора для выгрузки.
+     * <p>Строки читаются курсором на стороне сервера порциями по 1000 строк;
+     * вызывать внутри транзакции и закрывать поток, сущности только для чтения.</p>
+     */
+    @Query("SELECT p FROM Performance p ORDER BY p.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Performance> streamAllForExport();
+
+    /**
+     * Идентификаторы и названия выступлений для выпадающих списков.
+     */
+    @Query("SELECT new circus.repository.ReferenceOption(p.id, p.name) FROM Performance p ORDER BY p.id")
+    List<ReferenceOption> findOptions();
+
+    /**
+     * Предстоящие выступления для выбора при покупке билета.
+     */
+    @Query("SELECT new circus.repository.ReferenceOption(p.id, p.name) FROM Performance p " +
+            "WHERE p.dateTime >= CURRENT_TIMESTAMP AND p.status = false ORDER BY p.dateTime")
+    List<ReferenceOption> findUpcomingOptions();
+
+    /**
+     * Есть ли предстоящее (ещё не проведённое) выступление с таким идентификатором.
+     */
+    boolean existsByIdAndStatusFalseAndDateTimeGreaterThanEqual(Long id, LocalDateTime now);
 }
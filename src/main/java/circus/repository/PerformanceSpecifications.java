@@ -0,0 +1,82 @@
+package circus.repository;
+
+import circus.model.Performance;
+import jakarta.persistence.criteria.Path;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.LocalDateTime;
+
+/**
+ * Набор условий выборки для сущности {@link Performance}.
+ * <p>
+ * Условия комбинируются через {@link Specification#and(Specification)} и выполняются
+ * одним SQL-запросом: фильтрация по датам и отбор предстоящих выступлений
+ * происходят на стороне базы данных, а не в памяти приложения.
+ * </p>
+ */
+public final class PerformanceSpecifications {
+
+    private PerformanceSpecifications() {
+    }
+
+    /**
+     * Выступления, начинающиеся не раньше указанной даты.
+     *
+     * @param fromDate нижняя граница (включительно); {@code null} — без ограничения
+     * @return условие выборки
+     */
+    public static Specification<Performance> startsFrom(LocalDateTime fromDate) {
+        return (root, query, cb) -> fromDate == null
+                ? null
+                : cb.greaterThanOrEqualTo(root.get("dateTime"), fromDate);
+    }
+
+    /**
+     * Выступления, начинающиеся не позже указанной даты.
+     *
+     * @param toDate верхняя граница (включительно); {@code null} — без ограничения
+     * @return условие выборки
+     */
+    public static Specification<Performance> startsTo(LocalDateTime toDate) {
+        return (root, query, cb) -> toDate == null
+                ? null
+                : cb.lessThanOrEqualTo(root.get("dateTime"), toDate);
+    }
+
+    /**
+     * Только предстоящие выступления (ещё не начались и не отмечены как проведённые).
+     *
+     * @param upcomingOnly {@code true}, если нужно ограничиться предстоящими
+     * @return условие выборки
+     */
+    public static Specification<Performance> upcoming(boolean upcomingOnly) {
+        return (root, query, cb) -> !upcomingOnly
+                ? null
+                : cb.and(
+                cb.greaterThanOrEqualTo(root.get("dateTime"), cb.localDateTime()),
+                cb.isFalse(root.get("status")));
+    }
+
+    /**
+     * Условие выборки по ключу (keyset): записи, идущие строго после пары
+     * {@code (key, id)} в порядке сортировки по {@code property}, затем по {@code id}.
+     *
+     * @param property  имя поля сортировки ({@code dateTime} или {@code revenue})
+     * @param key       значение поля сортировки в курсоре
+     * @param id        идентификатор записи в курсоре
+     * @param ascending {@code true} — порядок по возрастанию, {@code false} — по убыванию
+     * @return условие выборки
+     */
+    public static <Y extends Comparable<? super Y>> Specification<Performance> seek(
+            String property, Y key, Long id, boolean ascending) {
+        return (root, query, cb) -> {
+            Path<Y> keyPath = root.get(property);
+            Path<Long> idPath = root.get("id");
+            return ascending
+                    ? cb.or(cb.greaterThan(keyPath, key),
+                    cb.and(cb.equal(keyPath, key), cb.greaterThan(idPath, id)))
+                    : cb.or(cb.lessThan(keyPath, key),
+                    cb.and(cb.equal(keyPath, key), cb.lessThan(idPath, id)));
+        };
+    }
+}
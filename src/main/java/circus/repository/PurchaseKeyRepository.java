@@ -0,0 +1,40 @@
+package circus.repository;
+
+import circus.model.PurchaseKey;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+/**
+ * Репозиторий ключей идемпотентности покупок {@link PurchaseKey}.
+ */
+public interface PurchaseKeyRepository extends JpaRepository<PurchaseKey, String> {
+
+    /**
+     * Занимает ключ. Если ключ одновременно занимает другая транзакция,
+     * PostgreSQL дожидается её завершения, поэтому 0 означает, что покупка
+     * с этим ключом уже зафиксирована.
+     *
+     * @return 1, если ключ занят этим вызовом; 0, если он уже существует
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "purchase_keys"))
+    @Query(value = "INSERT INTO purchase_keys (idempotency_key, request_hash, created_at) " +
+            "VALUES (:key, :requestHash, CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (idempotency_key) DO NOTHING", nativeQuery = true)
+    int claim(@Param("key") String key, @Param("requestHash") String requestHash);
+
+    @Modifying
+    @Query("UPDATE PurchaseKey k SET k.ticketId = :ticketId WHERE k.key = :key")
+    int complete(@Param("key") String key, @Param("ticketId") Long ticketId);
+
+    @Modifying
+    @Query("DELETE FROM PurchaseKey k WHERE k.createdAt < :before")
+    int deleteCreatedBefore(@Param("before") LocalDateTime before);
+}
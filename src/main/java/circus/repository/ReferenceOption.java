@@ -0,0 +1,11 @@
+package circus.repository;
+
+/**
+ * Облегчённое представление справочной записи для выпадающих списков:
+ * только идентификатор и отображаемое название.
+ *
+ * @param id    идентификатор сущности
+ * @param label текст пункта списка
+ */
+public record ReferenceOption(Long id, String label) {
+}
@@ -0,0 +1,198 @@
+package circus.repository;
+
+import circus.model.Ticket;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Аналитика продаж: агрегаты по {@code tickets} ⋈ {@code performances},
+ * посчитанные одним группирующим или оконным запросом на стороне базы.
+ * <p>
+ * Период продажи определяется датой выступления. Суммы приводятся к {@code bigint},
+ * так как {@code SUM(bigint)} в PostgreSQL возвращает {@code numeric}.
+ * </p>
+ */
+public interface SalesAnalyticsRepository extends Repository<Ticket, Long> {
+
+    /**
+     * Продажи за период (день, неделя или месяц) с накопленным итогом.
+     */
+    interface PeriodSales {
+        LocalDate getPeriod();
+
+        Long getTickets();
+
+        Long getViewers();
+
+        Long getRevenue();
+
+        Long getRunningRevenue();
+
+        Long getRunningViewers();
+    }
+
+    /**
+     * Продажи выступлений главного артиста.
+     */
+    interface ArtistSales {
+        Long getArtistId();
+
+        String getArtistName();
+
+        Long getPerformances();
+
+        Long getTickets();
+
+        Long getViewers();
+
+        Long getRevenue();
+    }
+
+    /**
+     * Выступление в рейтинге месяца по выручке.
+     */
+    interface RankedPerformance {
+        LocalDate getMonth();
+
+        Integer getPlace();
+
+        Long getPerformanceId();
+
+        String getName();
+
+        Long getViewers();
+
+        Long getRevenue();
+    }
+
+    /**
+     * Выручка выступления по его билетам.
+     */
+    interface PerformanceRevenue {
+        Long getPerformanceId();
+
+        String getName();
+
+        LocalDateTime getDateTime();
+
+        Long getRevenue();
+    }
+
+    /**
+     * Оплата сотрудников, занятых в выступлении.
+     */
+    interface PerformanceWages {
+        Long getPerformanceId();
+
+        Long getWages();
+    }
+
+    /**
+     * Продажи по периодам выступлений и накопленные с начала диапазона итоги.
+     *
+     * @param unit единица периода для {@code date_trunc}: {@code day}, {@code week} или {@code month}
+     * @param from начало диапазона (включительно)
+     * @param to   конец диапазона (не включительно)
+     */
+    @Query(value = """
+            SELECT period AS "period", tickets AS "tickets", viewers AS "viewers", revenue AS "revenue",
+                   CAST(SUM(revenue) OVER (ORDER BY period) AS bigint) AS "runningRevenue",
+                   CAST(SUM(viewers) OVER (ORDER BY period) AS bigint) AS "runningViewers"
+            FROM (SELECT CAST(date_trunc(:unit, p.date_time) AS date) AS period,
+                         COUNT(*) AS tickets,
+                         CAST(SUM(t.viewers_count) AS bigint) AS viewers,
+                         CAST(SUM(t.total_price) AS bigint) AS revenue
+                  FROM tickets t JOIN performances p ON p.id = t.performance_id
+                  WHERE p.date_time >= :from AND p.date_time < :to
+                  GROUP BY 1) s
+            ORDER BY period
+            """, nativeQuery = true)
+    List<PeriodSales> findSalesByPeriod(@Param("unit") String unit,
+                                        @Param("from") LocalDateTime from,
+                                        @Param("to") LocalDateTime to);
+
+    /**
+     * Продажи по главным артистам выступлений, по убыванию выручки.
+     */
+    @Query(value = """
+            SELECT e.id AS "artistId", e.full_name AS "artistName",
+                   COUNT(DISTINCT p.id) AS "performances",
+                   COUNT(*) AS "tickets",
+                   CAST(SUM(t.viewers_count) AS bigint) AS "viewers",
+                   CAST(SUM(t.total_price) AS bigint) AS "revenue"
+            FROM tickets t
+            JOIN performances p ON p.id = t.performance_id
+            JOIN employees e ON e.id = p.main_artist_id
+            WHERE p.date_time >= :from AND p.date_time < :to
+            GROUP BY e.id, e.full_name
+            ORDER BY "revenue" DESC, e.id
+            """, nativeQuery = true)
+    List<ArtistSales> findSalesByArtist(@Param("from") LocalDateTime from,
+                                        @Param("to") LocalDateTime to);
+
+    /**
+     * Первые {@code limit} выступлений каждого месяца по выручке.
+     */
+    @Query(value = """
+            SELECT sale_month AS "month", place AS "place", performance_id AS "performanceId", name AS "name",
+                   viewers AS "viewers", revenue AS "revenue"
+            FROM (SELECT CAST(date_trunc('month', p.date_time) AS date) AS sale_month,
+                         p.id AS performance_id, p.name AS name,
+                         CAST(SUM(t.viewers_count) AS bigint) AS viewers,
+                         CAST(SUM(t.total_price) AS bigint) AS revenue,
+                         CAST(ROW_NUMBER() OVER (PARTITION BY date_trunc('month', p.date_time)
+                                                 ORDER BY SUM(t.total_price) DESC, p.id) AS integer) AS place
+                  FROM tickets t JOIN performances p ON p.id = t.performance_id
+                  WHERE p.date_time >= :from AND p.date_time < :to
+                  GROUP BY p.id, p.name, p.date_time) r
+            WHERE place <= :limit
+            ORDER BY sale_month, place
+            """, nativeQuery = true)
+    List<RankedPerformance> findTopPerformancesByMonth(@Param("from") LocalDateTime from,
+                                                       @Param("to") LocalDateTime to,
+                                                       @Param("limit") int limit);
+
+    /**
+     * Выручка по билетам каждого выступления диапазона (в том числе без продаж),
+     * в порядке даты выступления.
+     */
+    @Query(value = """
+            SELECT p.id AS "performanceId", p.name AS "name", p.date_time AS "dateTime",
+                   CAST(COALESCE(SUM(t.total_price), 0) AS bigint) AS "revenue"
+            FROM performances p LEFT JOIN tickets t ON t.performance_id = p.id
+            WHERE p.date_time >= :from AND p.date_time < :to
+            GROUP BY p.id, p.name, p.date_time
+            ORDER BY p.date_time, p.id
+            """, nativeQuery = true)
+    List<PerformanceRevenue> findPerformanceRevenue(@Param("from") LocalDateTime from,
+                                                    @Param("to") LocalDateTime to);
+
+    /**
+     * Сумма зарплат главного артиста, исполнителей номеров и дрессировщиков
+     * каждого выступления диапазона. Сотрудник учитывается в выступлении один раз,
+     * сколько бы ролей у него ни было.
+     */
+    @Query(value = """
+            SELECT s.performance_id AS "performanceId", CAST(COALESCE(SUM(e.wages), 0) AS bigint) AS "wages"
+            FROM (SELECT p.id AS performance_id, p.main_artist_id AS employee_id
+                  FROM performances p
+                  WHERE p.date_time >= :from AND p.date_time < :to
+                  UNION
+                  SELECT h.performance_id, h.artist_id
+                  FROM human_acts h JOIN performances p ON p.id = h.performance_id
+                  WHERE p.date_time >= :from AND p.date_time < :to
+                  UNION
+                  SELECT a.performance_id, a.artist_id
+                  FROM animal_acts a JOIN performances p ON p.id = a.performance_id
+                  WHERE p.date_time >= :from AND p.date_time < :to) s
+            JOIN employees e ON e.id = s.employee_id
+            GROUP BY s.performance_id
+            """, nativeQuery = true)
+    List<PerformanceWages> findPerformanceWages(@Param("from") LocalDateTime from,
+                                                @Param("to") LocalDateTime to);
+}
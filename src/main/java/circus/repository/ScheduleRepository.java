@@ -0,0 +1,102 @@
+package circus.repository;
+
+import circus.model.Performance;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.Repository;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Расписание без загрузки сущностей: время выступлений и занятые в них
+ * сотрудники и животные. Используется для построения индекса конфликтов расписания.
+ */
+public interface ScheduleRepository extends Repository<Performance, Long> {
+
+    /**
+     * Время и главный артист выступления.
+     */
+    interface Slot {
+        Long getId();
+
+        LocalDateTime getDateTime();
+
+        Integer getDurationMinutes();
+
+        Long getMainArtistId();
+    }
+
+    /**
+     * Сотрудники и животное номера.
+     */
+    interface Assignment {
+        Long getId();
+
+        Long getPerformanceId();
+
+        Long getEmployeeId();
+
+        /**
+         * @return животное номера; {@code null} для номеров артистов
+         */
+        Long getAnimalId();
+    }
+
+    @Query("SELECT p.id AS id, p.dateTime AS dateTime, p.durationMinutes AS durationMinutes, " +
+            "p.mainArtist.id AS mainArtistId FROM Performance p")
+    List<Slot> findAllSlots();
+
+    @Query("SELECT p.id AS id, p.dateTime AS dateTime, p.durationMinutes AS durationMinutes, " +
+            "p.mainArtist.id AS mainArtistId FROM Performance p WHERE p.dateTime >= :from AND p.dateTime < :to")
+    List<Slot> findSlotsBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    @Query("SELECT h.id AS id, h.performance.id AS performanceId, h.mainPerformer.id AS employeeId, " +
+            "CAST(NULL AS Long) AS animalId FROM HumanAct h")
+    List<Assignment> findHumanActAssignments();
+
+    @Query("SELECT a.id AS id, a.performance.id AS performanceId, a.animalTrainer.id AS employeeId, " +
+            "a.animal.id AS animalId FROM AnimalAct a")
+    List<Assignment> findAnimalActAssignments();
+
+    /**
+     * Средняя выручка прошедших выступлений по дню недели (1 — понедельник) и часу начала.
+     */
+    interface SlotRevenue {
+        Integer getDayOfWeek();
+
+        Integer getHour();
+
+        Long getPerformances();
+
+        Long getRevenue();
+    }
+
+    /**
+     * Средняя выручка прошедших выступлений главного артиста.
+     */
+    interface ArtistRevenue {
+        Long getMainArtistId();
+
+        Long getRevenue();
+    }
+
+    @Query(value = """
+            SELECT CAST(EXTRACT(ISODOW FROM date_time) AS integer) AS "dayOfWeek",
+                   CAST(EXTRACT(HOUR FROM date_time) AS integer) AS "hour",
+                   COUNT(*) AS "performances",
+                   CAST(AVG(revenue) AS bigint) AS "revenue"
+            FROM performances
+            WHERE date_time < :before
+            GROUP BY 1, 2
+            """, nativeQuery = true)
+    List<SlotRevenue> findRevenueBySlot(@Param("before") LocalDateTime before);
+
+    @Query(value = """
+            SELECT main_artist_id AS "mainArtistId", CAST(AVG(revenue) AS bigint) AS "revenue"
+            FROM performances
+            WHERE date_time < :before
+            GROUP BY main_artist_id
+            """, nativeQuery = true)
+    List<ArtistRevenue> findRevenueByMainArtist(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,43 @@
+package circus.repository;
+
+import circus.model.SeatMap;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * Репозиторий схем залов {@link SeatMap}.
+ * <p>
+ * Места занимаются и освобождаются по одному биту нативными UPDATE: условие
+ * {@code get_bit(...) = 0} проверяется под блокировкой строки, поэтому два узла
+ * не могут занять одно место, даже если их копии карты в памяти устарели.
+ * </p>
+ */
+public interface SeatMapRepository extends JpaRepository<SeatMap, Long> {
+
+    /**
+     * Занимает место, если оно свободно.
+     *
+     * @param performanceId выступление
+     * @param bit           номер бита места
+     * @return 1, если место занято этим вызовом; 0, если оно уже было занято
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "seat_maps"))
+    @Query(value = "UPDATE seat_maps SET occupancy = set_bit(occupancy, :bit, 1) " +
+            "WHERE performance_id = :performanceId AND get_bit(occupancy, :bit) = 0", nativeQuery = true)
+    int occupySeat(@Param("performanceId") Long performanceId, @Param("bit") int bit);
+
+    /**
+     * Освобождает место.
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "seat_maps"))
+    @Query(value = "UPDATE seat_maps SET occupancy = set_bit(occupancy, :bit, 0) " +
+            "WHERE performance_id = :performanceId", nativeQuery = true)
+    int freeSeat(@Param("performanceId") Long performanceId, @Param("bit") int bit);
+}
@@ -1,11 +1,127 @@
 package circus.repository;
 
 import circus.model.Ticket;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface TicketRepository extends JpaRepository<Ticket, Long> {
+public interface TicketRepository extends JpaRepository<Ticket, Long>, KeysetRepository<Ticket> {
 
     List<Ticket> findByPerformanceId(Long performanceId);
+
+    /**
+     * Данные продажи, влияющие на агрегаты выступления.
+     */
+    interface Sale {
+        Long getPerformanceId();
+
+        Long getTotalPrice();
+
+        Integer getViewersCount();
+
+        Integer getSeatRow();
+
+        Integer getFirstSeat();
+
+        LocalDateTime getSoldAt();
+    }
+
+    /**
+     * Текущие значения продажи билета, прочитанные из БД без загрузки сущности.
+     *
+     * @param id идентификатор билета
+     * @return данные продажи или пустой {@link Optional}, если билета нет
+     */
+    @Query("SELECT t.performance.id AS performanceId, t.totalPrice AS totalPrice, " +
+            "t.viewersCount AS viewersCount, t.seatRow AS seatRow, t.firstSeat AS firstSeat, t.soldAt AS soldAt " +
+            "FROM Ticket t WHERE t.id = :id")
+    Optional<Sale> findSaleById(@Param("id") Long id);
+
+    boolean existsByPerformanceIdAndSeatRowNotNull(Long performanceId);
+
+    /**
+     * Наибольший номер заказа горячей продажи, сохранённого в базе.
+     */
+    @Query("SELECT MAX(t.hotSaleSeq) FROM Ticket t")
+    Long findMaxHotSaleSeq();
+
+    /**
+     * Номера сохранённых заказов горячей продажи, начиная с указанного.
+     */
+    @Query("SELECT t.hotSaleSeq FROM Ticket t WHERE t.hotSaleSeq >= :from")
+    List<Long> findHotSaleSeqsFrom(@Param("from") long from);
+
+    /**
+     * Проставляет дату выступления как дату продажи билетам, проданным до появления
+     * столбца {@code sold_at}.
+     *
+     * @return количество обновлённых билетов
+     */
+    @Modifying
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "tickets"))
+    @Query(value = "UPDATE tickets t SET sold_at = p.date_time FROM performances p " +
+            "WHERE p.id = t.performance_id AND t.sold_at IS NULL", nativeQuery = true)
+    int backfillSoldAt();
+
+    @Query("SELECT MIN(t.soldAt) FROM Ticket t")
+    LocalDateTime findFirstSoldAt();
+
+    @Query("SELECT MAX(t.soldAt) FROM Ticket t")
+    LocalDateTime findLastSoldAt();
+
+    /**
+     * Шаг последовательности идентификаторов билетов — размер пачки, которую
+     * выдаёт одно значение последовательности.
+     */
+    @Query(value = "SELECT increment_by FROM pg_sequences " +
+            "WHERE schemaname = current_schema() AND sequencename = 'tickets_seq'", nativeQuery = true)
+    long findIdIncrement();
+
+    /**
+     * Выделяет пачки идентификаторов билетов для вставки в обход Hibernate.
+     * Как и у pooled-оптимизатора, значение {@code v} резервирует идентификаторы
+     * от {@code v - шаг + 1} до {@code v}.
+     *
+     * @param count количество пачек
+     * @return верхние границы пачек
+     */
+    @Query(value = "SELECT nextval('tickets_seq') FROM generate_series(1, :count)", nativeQuery = true)
+    List<Long> allocateIdBlocks(@Param("count") int count);
+
+    /**
+     * Все билеты по возрастанию идентификатора для выгрузки.
+     * <p>Строки читаются курсором на стороне сервера порциями по 1000 строк;
+     * вызывать внутри транзакции и закрывать поток, сущности только для чтения.</p>
+     */
+    @Query("SELECT t FROM Ticket t ORDER BY t.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    Stream<Ticket> streamAllForExport();
+
+    // Методы выборки по ключу переопределены, чтобы страница списка загружалась
+    // вместе со связанными сущностями одним запросом (граф "Ticket.list")
+
+    @Override
+    @EntityGraph("Ticket.list")
+    List<Ticket> findAllByOrderByIdAsc(Limit limit);
+
+    @Override
+    @EntityGraph("Ticket.list")
+    List<Ticket> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    @Override
+    @EntityGraph("Ticket.list")
+    List<Ticket> findByIdLessThanOrderByIdDesc(Long id, Limit limit);
 }
@@ -12,7 +12,7 @@ import java.util.Optional;
  * а также содержит дополнительные методы поиска по email.
  * </p>
  */
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, KeysetRepository<User> {
 
     /**
      * Ищет пользователя по адресу электронной почты.
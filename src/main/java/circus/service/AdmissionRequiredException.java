@@ -0,0 +1,20 @@
+package circus.service;
+
+import java.io.Serial;
+
+/**
+ * Покупка без действительного допуска из очереди ({@link WaitingRoom}).
+ * <p>
+ * Проверяется до обращения к базе, поэтому при всплеске покупок лишние
+ * запросы отклоняются, не занимая соединений.
+ * </p>
+ */
+public class AdmissionRequiredException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public AdmissionRequiredException(String message) {
+        super(message);
+    }
+}
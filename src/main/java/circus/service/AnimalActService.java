@@ -9,6 +9,8 @@ public interface AnimalActService {
 
     AnimalAct findById(Long id);
 
+    KeysetPage<AnimalAct> findPage(String after, String before, int size);
+
     AnimalAct save(AnimalAct animalAct);
 
     void deleteById(Long id);
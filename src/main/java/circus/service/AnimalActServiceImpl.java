@@ -3,6 +3,7 @@ package circus.service;
 import circus.model.AnimalAct;
 import circus.repository.AnimalActRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -11,8 +12,11 @@ public class AnimalActServiceImpl implements AnimalActService {
 
     private final AnimalActRepository animalActRepository;
 
-    public AnimalActServiceImpl(AnimalActRepository animalActRepository) {
+    private final ScheduleConflictDetector scheduleConflicts;
+
+    public AnimalActServiceImpl(AnimalActRepository animalActRepository, ScheduleConflictDetector scheduleConflicts) {
         this.animalActRepository = animalActRepository;
+        this.scheduleConflicts = scheduleConflicts;
     }
 
     @Override
@@ -26,12 +30,27 @@ public class AnimalActServiceImpl implements AnimalActService {
     }
 
     @Override
+    public KeysetPage<AnimalAct> findPage(String after, String before, int size) {
+        return KeysetPage.byId(animalActRepository, AnimalAct::getId, after, before, size);
+    }
+
+    /**
+     * Сохраняет номер, если его участники не заняты в это время в других выступлениях.
+     *
+     * @throws ScheduleConflictException при пересечении расписания
+     */
+    @Override
+    @Transactional
     public AnimalAct save(AnimalAct animalAct) {
-        return animalActRepository.save(animalAct);
+        AnimalAct saved = animalActRepository.save(animalAct);
+        scheduleConflicts.placeAnimalAct(saved);
+        return saved;
     }
 
     @Override
+    @Transactional
     public void deleteById(Long id) {
         animalActRepository.deleteById(id);
+        scheduleConflicts.removeAnimalAct(id);
     }
 }
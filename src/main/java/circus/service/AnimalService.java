@@ -10,6 +10,8 @@ public interface AnimalService {
 
     Animal findById(Long id);
 
+    KeysetPage<Animal> findPage(String after, String before, int size);
+
     Animal save(Animal animal);
 
     void deleteById(Long id);
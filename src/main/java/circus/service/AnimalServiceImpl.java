@@ -11,8 +11,11 @@ public class AnimalServiceImpl implements AnimalService {
 
     private final AnimalRepository animalRepository;
 
-    public AnimalServiceImpl(AnimalRepository animalRepository) {
+    private final ReferenceDataCache referenceDataCache;
+
+    public AnimalServiceImpl(AnimalRepository animalRepository, ReferenceDataCache referenceDataCache) {
         this.animalRepository = animalRepository;
+        this.referenceDataCache = referenceDataCache;
     }
 
     @Override
@@ -25,13 +28,21 @@ public class AnimalServiceImpl implements AnimalService {
         return animalRepository.findById(id).orElse(null);
     }
 
+    @Override
+    public KeysetPage<Animal> findPage(String after, String before, int size) {
+        return KeysetPage.byId(animalRepository, Animal::getId, after, before, size);
+    }
+
     @Override
     public Animal save(Animal animal) {
-        return animalRepository.save(animal);
+        Animal saved = animalRepository.save(animal);
+        referenceDataCache.invalidateAnimals();
+        return saved;
     }
 
     @Override
     public void deleteById(Long id) {
         animalRepository.deleteById(id);
+        referenceDataCache.invalidateAnimals();
     }
 }
@@ -0,0 +1,47 @@
+package circus.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Периодический вывод статистики второго уровня кэша Hibernate.
+ * <p>
+ * Для каждого региона печатает число попаданий, промахов и записей,
+ * а также долю попаданий; значения накапливаются с момента старта приложения.
+ * Статистика собирается при {@code hibernate.generate_statistics=true}.
+ * </p>
+ */
+@Component
+public class CacheStatisticsReporter {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public CacheStatisticsReporter(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Scheduled(fixedDelayString = "${circus.cache.stats-interval:PT15M}",
+            initialDelayString = "${circus.cache.stats-interval:PT15M}")
+    public void report() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        if (!statistics.isStatisticsEnabled()) {
+            return;
+        }
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics stats = statistics.getCacheRegionStatistics(region);
+            if (stats == null) {
+                continue;
+            }
+            long hits = stats.getHitCount();
+            long misses = stats.getMissCount();
+            long lookups = hits + misses;
+            System.out.printf("Кэш %s: попаданий %d, промахов %d, записей %d, доля попаданий %.1f%%%n",
+                    region, hits, misses, stats.getPutCount(),
+                    lookups == 0 ? 0.0 : hits * 100.0 / lookups);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package circus.service;
+
+import circus.repository.DailySalesRepository;
+import circus.repository.PerformanceRepository;
+import circus.repository.TicketRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Сводка продаж по дням ({@code daily_sales}) для отчётов по месяцам и сезонам.
+ * <p>
+ * Записи билетов изменяют сводку в своей транзакции приращениями: продажа
+ * прибавляется ко дню продажи, удаление и изменение билета вычитают прежние
+ * значения. Приращения применяются после изменения агрегатов выступления, то есть
+ * под блокировкой его строки, поэтому пересчёт дня ({@link #rebuild}) под той же
+ * блокировкой не пропускает параллельные продажи.
+ * </p>
+ *
+ * <p>
+ * Пересчёт сравнивает сводку диапазона с суммой по {@code tickets} одним запросом
+ * и пересчитывает только разошедшиеся дни. При первом запуске билетам без даты
+ * продажи проставляется дата выступления, и сводка строится заново.
+ * </p>
+ */
+@Component
+public class DailySalesRollup {
+
+    /**
+     * Ключ advisory-блокировки заполнения сводки при старте.
+     */
+    static final long BACKFILL_LOCK_KEY = 0x43495243_0003L;
+
+    private final DailySalesRepository dailySalesRepository;
+
+    private final PerformanceRepository performanceRepository;
+
+    private final TicketRepository ticketRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public DailySalesRollup(DailySalesRepository dailySalesRepository,
+                            PerformanceRepository performanceRepository,
+                            TicketRepository ticketRepository,
+                            TransactionTemplate transactionTemplate) {
+        this.dailySalesRepository = dailySalesRepository;
+        this.performanceRepository = performanceRepository;
+        this.ticketRepository = ticketRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Учитывает проданные билеты в текущей транзакции.
+     *
+     * @param soldAt момент продажи; {@code null} — билет ещё не получил дату продажи
+     *               и будет учтён при заполнении сводки
+     */
+    public void add(Long performanceId, LocalDateTime soldAt, long tickets, long viewers, long revenue) {
+        if (soldAt != null) {
+            dailySalesRepository.addSales(performanceId, soldAt.toLocalDate(), tickets, viewers, revenue);
+        }
+    }
+
+    /**
+     * Вычитает прежние значения удалённого или изменённого билета.
+     */
+    public void remove(TicketRepository.Sale sale) {
+        if (sale.getSoldAt() == null) {
+            return;
+        }
+        LocalDate day = sale.getSoldAt().toLocalDate();
+        dailySalesRepository.addSales(sale.getPerformanceId(), day, -1, -sale.getViewersCount(),
+                -sale.getTotalPrice());
+        dailySalesRepository.deleteIfEmpty(sale.getPerformanceId(), day);
+    }
+
+    /**
+     * Удаляет сводку удаляемого выступления (его билеты удаляются каскадом).
+     */
+    public void removePerformance(Long performanceId) {
+        dailySalesRepository.deleteByPerformanceId(performanceId);
+    }
+
+    /**
+     * Проставляет дату продажи старым билетам и строит по ним сводку.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        Integer backfilled = transactionTemplate.execute(status ->
+                performanceRepository.tryAdvisoryXactLock(BACKFILL_LOCK_KEY)
+                        ? ticketRepository.backfillSoldAt()
+                        : 0);
+        if (backfilled == null || backfilled == 0) {
+            return;
+        }
+        LocalDateTime first = ticketRepository.findFirstSoldAt();
+        LocalDateTime last = ticketRepository.findLastSoldAt();
+        if (first != null && last != null) {
+            int repaired = rebuild(first.toLocalDate(), last.toLocalDate());
+            System.out.println("Дата продажи проставлена билетам: " + backfilled
+                    + ", дней в сводке продаж: " + repaired);
+        }
+    }
+
+    /**
+     * Пересчитывает дни диапазона, сводка за которые разошлась с таблицей билетов.
+     *
+     * @param from первый день
+     * @param to   последний день (включительно)
+     * @return количество пересчитанных дней
+     */
+    public int rebuild(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Конец диапазона раньше начала");
+        }
+        List<DailySalesRepository.SalesDay> drifted = transactionTemplate.execute(status ->
+                dailySalesRepository.findDrift(from, to, from.atStartOfDay(), to.plusDays(1).atStartOfDay()));
+        if (drifted == null) {
+            return 0;
+        }
+        for (DailySalesRepository.SalesDay day : drifted) {
+            transactionTemplate.executeWithoutResult(status -> {
+                performanceRepository.lockById(day.getPerformanceId());
+                LocalDate date = day.getSaleDate();
+                dailySalesRepository.recalculateDay(day.getPerformanceId(), date,
+                        date.atStartOfDay(), date.plusDays(1).atStartOfDay());
+                dailySalesRepository.deleteIfEmpty(day.getPerformanceId(), date);
+            });
+        }
+        if (!drifted.isEmpty()) {
+            System.out.println("Пересчитано дней в сводке продаж: " + drifted.size());
+        }
+        return drifted.size();
+    }
+}
@@ -0,0 +1,195 @@
+package circus.service;
+
+import circus.repository.PerformanceRepository;
+import circus.repository.TicketRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Выгрузка билетов и выступлений для сверки в CSV или NDJSON.
+ * <p>
+ * Строки читаются курсором на стороне сервера и сразу пишутся в выходной поток;
+ * каждая выгруженная сущность отсоединяется от контекста, поэтому объём памяти
+ * не зависит от числа строк. Поток сбрасывается после заголовка и затем
+ * каждые {@link #FLUSH_ROWS} строк, так что клиент начинает получать данные сразу.
+ * </p>
+ */
+@Component
+public class DataExportService {
+
+    private static final int FLUSH_ROWS = 1000;
+
+    /**
+     * Формат выгрузки.
+     */
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * @throws IllegalArgumentException если формат неизвестен
+         */
+        public static Format of(String name) {
+            for (Format format : values()) {
+                if (format.extension.equalsIgnoreCase(name)) {
+                    return format;
+                }
+            }
+            throw new IllegalArgumentException("Неизвестный формат выгрузки: " + name);
+        }
+    }
+
+    private static final List<String> TICKET_COLUMNS = List.of(
+            "id", "performance_id", "customer_name", "viewers_count", "total_price", "seat_row", "first_seat");
+
+    private static final List<String> PERFORMANCE_COLUMNS = List.of(
+            "id", "name", "date_time", "main_artist_id", "duration_minutes", "status",
+            "capacity", "revenue", "viewers_count");
+
+    private final TicketRepository ticketRepository;
+
+    private final PerformanceRepository performanceRepository;
+
+    private final ObjectMapper objectMapper;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public DataExportService(TicketRepository ticketRepository,
+                             PerformanceRepository performanceRepository,
+                             ObjectMapper objectMapper,
+                             PlatformTransactionManager transactionManager) {
+        this.ticketRepository = ticketRepository;
+        this.performanceRepository = performanceRepository;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Выгружает все билеты.
+     *
+     * @return количество строк
+     */
+    public long exportTickets(Format format, OutputStream out) {
+        return export(format, out, TICKET_COLUMNS, ticketRepository::streamAllForExport, ticket -> new Object[]{
+                ticket.getId(), ticket.getPerformance().getId(), ticket.getCustomerName(),
+                ticket.getViewersCount(), ticket.getTotalPrice(), ticket.getSeatRow(), ticket.getFirstSeat()});
+    }
+
+    /**
+     * Выгружает все выступления вместе с агрегатами продаж.
+     *
+     * @return количество строк
+     */
+    public long exportPerformances(Format format, OutputStream out) {
+        return export(format, out, PERFORMANCE_COLUMNS, performanceRepository::streamAllForExport,
+                performance -> new Object[]{
+                        performance.getId(), performance.getName(), performance.getDateTime(),
+                        performance.getMainArtist() != null ? performance.getMainArtist().getId() : null,
+                        performance.getDurationMinutes(), performance.getStatus(), performance.getCapacity(),
+                        performance.getRevenue(), performance.getViewersCount()});
+    }
+
+    private <T> long export(Format format, OutputStream out, List<String> columns,
+                            Supplier<Stream<T>> source, Function<T, Object[]> values) {
+        Long rows = readOnlyTransaction.execute(status -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+            try (Stream<T> stream = source.get()) {
+                if (format == Format.CSV) {
+                    writer.write(String.join(",", columns));
+                    writer.write('\n');
+                }
+                writer.flush();
+                long count = 0;
+                for (T entity : (Iterable<T>) stream::iterator) {
+                    Object[] row = values.apply(entity);
+                    writer.write(format == Format.CSV ? csvLine(row) : jsonLine(columns, row));
+                    writer.write('\n');
+                    entityManager.detach(entity);
+                    if (++count % FLUSH_ROWS == 0) {
+                        writer.flush();
+                    }
+                }
+                writer.flush();
+                return count;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return rows == null ? 0 : rows;
+    }
+
+    private static String csvLine(Object[] row) {
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < row.length; i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            if (row[i] == null) {
+                continue;
+            }
+            String value = row[i].toString();
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                    || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+        return line.toString();
+    }
+
+    private String jsonLine(List<String> columns, Object[] row) {
+        Map<String, Object> object = new LinkedHashMap<>();
+        for (int i = 0; i < row.length; i++) {
+            Object value = row[i];
+            // даты и прочие значения — строками, как в CSV
+            object.put(columns.get(i), value == null || value instanceof Number || value instanceof Boolean
+                    ? value : value.toString());
+        }
+        try {
+            return objectMapper.writeValueAsString(object);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
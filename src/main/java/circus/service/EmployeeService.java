@@ -1,8 +1,12 @@
 package circus.service;
 
 import circus.model.Employee;
+import circus.repository.EmployeeInvolvementRepository.Involvement;
+import circus.repository.EmployeeInvolvementRepository.Workload;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 public interface EmployeeService {
 
@@ -10,7 +14,19 @@ public interface EmployeeService {
 
     Employee findById(Long id);
 
+    KeysetPage<Employee> findPage(String after, String before, int size);
+
     Employee save(Employee employee);
 
     void deleteById(Long id);
+
+    /**
+     * Роли сотрудника во всех выступлениях: главный артист, исполнитель номера, дрессировщик.
+     */
+    List<Involvement> findInvolvements(Long employeeId);
+
+    /**
+     * Загрузка сотрудников по их идентификаторам; сотрудников без ролей в карте нет.
+     */
+    Map<Long, Workload> findWorkload(Collection<Long> employeeIds);
 }
@@ -1,18 +1,31 @@
 package circus.service;
 
 import circus.model.Employee;
+import circus.repository.EmployeeInvolvementRepository;
+import circus.repository.EmployeeInvolvementRepository.Involvement;
+import circus.repository.EmployeeInvolvementRepository.Workload;
 import circus.repository.EmployeeRepository;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class EmployeeServiceImpl implements EmployeeService {
 
     private final EmployeeRepository employeeRepository;
 
-    public EmployeeServiceImpl(EmployeeRepository employeeRepository) {
+    private final ReferenceDataCache referenceDataCache;
+
+    private final EmployeeInvolvementRepository involvementRepository;
+
+    public EmployeeServiceImpl(EmployeeRepository employeeRepository, ReferenceDataCache referenceDataCache,
+                               EmployeeInvolvementRepository involvementRepository) {
         this.employeeRepository = employeeRepository;
+        this.referenceDataCache = referenceDataCache;
+        this.involvementRepository = involvementRepository;
     }
 
     @Override
@@ -25,13 +38,37 @@ public class EmployeeServiceImpl implements EmployeeService {
         return employeeRepository.findById(id).orElse(null);
     }
 
+    @Override
+    public KeysetPage<Employee> findPage(String after, String before, int size) {
+        return KeysetPage.byId(employeeRepository, Employee::getId, after, before, size);
+    }
+
     @Override
     public Employee save(Employee employee) {
-        return employeeRepository.save(employee);
+        Employee saved = employeeRepository.save(employee);
+        referenceDataCache.invalidateEmployees();
+        return saved;
     }
 
     @Override
     public void deleteById(Long id) {
         employeeRepository.deleteById(id);
+        referenceDataCache.invalidateEmployees();
+    }
+
+    @Override
+    public List<Involvement> findInvolvements(Long employeeId) {
+        return involvementRepository.findByEmployeeId(employeeId);
+    }
+
+    @Override
+    public Map<Long, Workload> findWorkload(Collection<Long> employeeIds) {
+        Map<Long, Workload> workload = new HashMap<>();
+        if (!employeeIds.isEmpty()) {
+            for (Workload row : involvementRepository.findWorkload(employeeIds)) {
+                workload.put(row.getEmployeeId(), row);
+            }
+        }
+        return workload;
     }
 }
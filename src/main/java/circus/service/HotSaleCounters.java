@@ -0,0 +1,189 @@
+package circus.service;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Остатки мест выступлений в режиме горячей продажи.
+ * <p>
+ * Ключи — примитивные {@code long} (идентификаторы выступлений) в отсортированном
+ * массиве; поиск выполняется двоичным поиском без упаковки и без блокировок.
+ * Набор выступлений меняется редко (включение и выключение режима), поэтому
+ * при изменении создаётся новый неизменяемый снимок массивов.
+ * </p>
+ *
+ * <p>
+ * Остаток каждого выступления разбит на несколько полос ({@code AtomicLongArray}
+ * с шагом в строку кэша процессора). Поток списывает места из «своей» полосы
+ * через CAS и переходит к соседним, только если в ней не хватает мест, поэтому
+ * одновременные покупки почти не конкурируют за одну ячейку памяти.
+ * </p>
+ */
+final class HotSaleCounters {
+
+    /**
+     * Шаг между полосами в элементах {@code long}: 8 × 8 байт = 64 байта (строка кэша).
+     */
+    private static final int PAD = 8;
+
+    private final int stripes;
+
+    private volatile Snapshot snapshot = new Snapshot(new long[0], new AtomicLongArray[0]);
+
+    HotSaleCounters(int stripes) {
+        this.stripes = stripes;
+    }
+
+    /**
+     * Неизменяемый снимок: ключи по возрастанию и соответствующие им полосы остатков.
+     */
+    private record Snapshot(long[] keys, AtomicLongArray[] counters) {
+    }
+
+    /**
+     * Добавляет выступление с указанным остатком мест (если его ещё нет).
+     */
+    synchronized void open(long performanceId, long remaining) {
+        Snapshot current = snapshot;
+        int index = Arrays.binarySearch(current.keys, performanceId);
+        if (index >= 0) {
+            return;
+        }
+        int insertAt = -index - 1;
+        int size = current.keys.length;
+        long[] keys = new long[size + 1];
+        AtomicLongArray[] counters = new AtomicLongArray[size + 1];
+        System.arraycopy(current.keys, 0, keys, 0, insertAt);
+        System.arraycopy(current.counters, 0, counters, 0, insertAt);
+        System.arraycopy(current.keys, insertAt, keys, insertAt + 1, size - insertAt);
+        System.arraycopy(current.counters, insertAt, counters, insertAt + 1, size - insertAt);
+        keys[insertAt] = performanceId;
+        counters[insertAt] = distribute(remaining);
+        snapshot = new Snapshot(keys, counters);
+    }
+
+    /**
+     * Убирает выступление; последующие {@link #tryTake} для него вернут {@code false}.
+     */
+    synchronized void close(long performanceId) {
+        Snapshot current = snapshot;
+        int index = Arrays.binarySearch(current.keys, performanceId);
+        if (index < 0) {
+            return;
+        }
+        int size = current.keys.length;
+        long[] keys = new long[size - 1];
+        AtomicLongArray[] counters = new AtomicLongArray[size - 1];
+        System.arraycopy(current.keys, 0, keys, 0, index);
+        System.arraycopy(current.counters, 0, counters, 0, index);
+        System.arraycopy(current.keys, index + 1, keys, index, size - index - 1);
+        System.arraycopy(current.counters, index + 1, counters, index, size - index - 1);
+        snapshot = new Snapshot(keys, counters);
+    }
+
+    boolean contains(long performanceId) {
+        return Arrays.binarySearch(snapshot.keys, performanceId) >= 0;
+    }
+
+    /**
+     * Списывает места, если их достаточно.
+     *
+     * @param performanceId идентификатор выступления
+     * @param seats         количество мест
+     * @return {@code true}, если места списаны; {@code false}, если мест не хватает
+     * или выступление не в режиме горячей продажи
+     * @throws IllegalArgumentException если {@code seats} меньше одного
+     */
+    boolean tryTake(long performanceId, long seats) {
+        if (seats < 1) {
+            // иначе условие «мест достаточно» выполняется всегда и CAS добавляет места
+            throw new IllegalArgumentException("Количество мест должно быть положительным");
+        }
+        AtomicLongArray counter = find(performanceId);
+        if (counter == null) {
+            return false;
+        }
+        int home = (int) (Thread.currentThread().threadId() % stripes);
+        // сначала своя полоса, затем остальные по кругу
+        for (int i = 0; i < stripes; i++) {
+            int slot = ((home + i) % stripes) * PAD;
+            long available = counter.get(slot);
+            while (available >= seats) {
+                if (counter.compareAndSet(slot, available, available - seats)) {
+                    return true;
+                }
+                available = counter.get(slot);
+            }
+        }
+        // места есть, но разбросаны по полосам: собираем их под блокировкой счётчика
+        synchronized (counter) {
+            if (remaining(counter) < seats) {
+                return false;
+            }
+            long needed = seats;
+            for (int i = 0; i < stripes && needed > 0; i++) {
+                int slot = i * PAD;
+                long available = counter.get(slot);
+                while (available > 0) {
+                    long take = Math.min(available, needed);
+                    if (counter.compareAndSet(slot, available, available - take)) {
+                        needed -= take;
+                        break;
+                    }
+                    available = counter.get(slot);
+                }
+            }
+            if (needed > 0) {
+                // параллельные покупки успели забрать места: возвращаем собранное
+                give(counter, seats - needed);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Возвращает места (например, если заказ не удалось записать в журнал).
+     */
+    void release(long performanceId, long seats) {
+        AtomicLongArray counter = find(performanceId);
+        if (counter != null) {
+            give(counter, seats);
+        }
+    }
+
+    /**
+     * Текущий остаток мест или {@code -1}, если выступление не в режиме горячей продажи.
+     */
+    long remaining(long performanceId) {
+        AtomicLongArray counter = find(performanceId);
+        return counter == null ? -1 : remaining(counter);
+    }
+
+    private AtomicLongArray find(long performanceId) {
+        Snapshot current = snapshot;
+        int index = Arrays.binarySearch(current.keys, performanceId);
+        return index < 0 ? null : current.counters[index];
+    }
+
+    private AtomicLongArray distribute(long remaining) {
+        AtomicLongArray counter = new AtomicLongArray(stripes * PAD);
+        for (int i = 0; i < stripes; i++) {
+            counter.set(i * PAD, remaining / stripes + (i < remaining % stripes ? 1 : 0));
+        }
+        return counter;
+    }
+
+    private void give(AtomicLongArray counter, long seats) {
+        int home = (int) (Thread.currentThread().threadId() % stripes);
+        counter.addAndGet(home * PAD, seats);
+    }
+
+    private long remaining(AtomicLongArray counter) {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += counter.get(i * PAD);
+        }
+        return sum;
+    }
+}
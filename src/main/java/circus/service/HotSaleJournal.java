@@ -0,0 +1,252 @@
+package circus.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongConsumer;
+
+/**
+ * Локальный журнал заказов горячей продажи (только дозапись).
+ * <p>
+ * Каждый принятый заказ записывается строкой
+ * {@code S <seq> <performanceId> <viewers> <price> <name> <key> <hash>} (ключ идемпотентности
+ * и отпечаток заказа, если покупка оформлена с ключом) и сбрасывается на диск до ответа покупателю. После фиксации пачки в базе
+ * дописывается отметка {@code C <seq>}: все заказы с номером не больше {@code seq}
+ * сохранены. При старте заказы после последней отметки восстанавливаются.
+ * Недописанная при сбое последняя строка пропускается; заказ, который не удалось
+ * сбросить на диск, отменяется отметкой {@code X <seq>}.
+ * </p>
+ */
+final class HotSaleJournal implements AutoCloseable {
+
+    /**
+     * Заказ из журнала.
+     */
+    record Entry(long seq, long performanceId, int viewers, long totalPrice, String customerName,
+                 String key, String requestHash) {
+    }
+
+    /**
+     * Записанный, но ещё не сброшенный на диск заказ.
+     */
+    private record Unforced(long seq, LongConsumer written) {
+    }
+
+    private final FileChannel channel;
+
+    /**
+     * Заказы, ожидающие сброса на диск, в порядке номеров.
+     */
+    private final ArrayDeque<Unforced> unforced = new ArrayDeque<>();
+
+    /**
+     * Номер последнего записанного заказа.
+     */
+    private long lastWritten;
+
+    /**
+     * Номер последнего заказа, сохранённого в базе.
+     */
+    private long lastCommitted;
+
+    private HotSaleJournal(FileChannel channel, long lastWritten, long lastCommitted) {
+        this.channel = channel;
+        this.lastWritten = lastWritten;
+        this.lastCommitted = lastCommitted;
+    }
+
+    /**
+     * Открывает журнал и читает заказы, ещё не сохранённые в базе.
+     *
+     * @param file      файл журнала (создаётся при отсутствии)
+     * @param unflushed сюда добавляются заказы после последней отметки фиксации
+     * @return открытый журнал
+     */
+    static HotSaleJournal open(Path file, List<Entry> unflushed) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        long lastWritten = 0;
+        long lastCommitted = 0;
+        List<Entry> entries = new ArrayList<>();
+        Set<Long> cancelled = new HashSet<>();
+        if (Files.exists(file)) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                String[] parts = line.split(" ");
+                try {
+                    // строки без ключа остались от журналов прежнего формата
+                    if ((parts.length == 6 || parts.length == 8) && parts[0].equals("S")) {
+                        Entry entry = new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+                                Integer.parseInt(parts[3]), Long.parseLong(parts[4]),
+                                decodeName(parts[5]),
+                                parts.length == 8 ? decodeKey(parts[6]) : null,
+                                parts.length == 8 ? decodeKey(parts[7]) : null);
+                        entries.add(entry);
+                        lastWritten = Math.max(lastWritten, entry.seq());
+                    } else if (parts.length == 2 && parts[0].equals("C")) {
+                        lastCommitted = Math.max(lastCommitted, Long.parseLong(parts[1]));
+                    } else if (parts.length == 2 && parts[0].equals("X")) {
+                        cancelled.add(Long.parseLong(parts[1]));
+                    }
+                } catch (IllegalArgumentException e) {
+                    // оборванная запись в конце файла
+                }
+            }
+        }
+        lastWritten = Math.max(lastWritten, lastCommitted);
+        for (Entry entry : entries) {
+            if (entry.seq() > lastCommitted && !cancelled.contains(entry.seq())) {
+                unflushed.add(entry);
+            }
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new HotSaleJournal(channel, lastWritten, lastCommitted);
+    }
+
+    /**
+     * Номер последнего записанного заказа (для продолжения нумерации).
+     */
+    synchronized long lastWritten() {
+        return lastWritten;
+    }
+
+    /**
+     * Продолжает нумерацию не ниже указанного номера (например, если файл журнала был удалён).
+     */
+    synchronized void advanceTo(long seq) {
+        lastWritten = Math.max(lastWritten, seq);
+    }
+
+    /**
+     * Записывает заказ и дожидается его сброса на диск.
+     * <p>
+     * {@code written} вызывается под блокировкой журнала только после сброса заказа
+     * на диск, строго в порядке номеров: сброс, выполненный одним потоком, подтверждает
+     * и более ранние записи других потоков. Поэтому отметка {@link #commit(long)}
+     * по последнему номеру пачки покрывает все предыдущие. Если сбросить заказ
+     * не удалось, он отменяется и в очередь на сохранение не попадает.
+     * </p>
+     *
+     * @param written получает номер записанного заказа
+     * @return номер заказа в журнале
+     * @throws UncheckedIOException если заказ не удалось записать или сбросить на диск
+     */
+    long append(long performanceId, int viewers, long totalPrice, String customerName,
+                String key, String requestHash, LongConsumer written) {
+        long seq;
+        synchronized (this) {
+            seq = ++lastWritten;
+            write("S " + seq + " " + performanceId + " " + viewers + " " + totalPrice + " "
+                    + encodeName(customerName) + " " + encodeKey(key) + " " + encodeKey(requestHash) + "\n");
+            unforced.add(new Unforced(seq, written));
+        }
+        // вне блокировки: один force сбрасывает на диск записи нескольких потоков сразу
+        try {
+            force();
+        } catch (UncheckedIOException e) {
+            synchronized (this) {
+                if (unforced.removeIf(pending -> pending.seq() == seq)) {
+                    cancel(seq);
+                    throw e;
+                }
+            }
+            // заказ уже подтверждён сбросом другого потока
+            return seq;
+        }
+        synchronized (this) {
+            while (!unforced.isEmpty() && unforced.peekFirst().seq() <= seq) {
+                Unforced pending = unforced.poll();
+                pending.written().accept(pending.seq());
+            }
+        }
+        return seq;
+    }
+
+    /**
+     * Отменяет несброшенный заказ. Отметка пишется без сброса: если и она не попадёт
+     * на диск, заказ будет восстановлен при следующем старте.
+     */
+    private void cancel(long seq) {
+        try {
+            write("X " + seq + "\n");
+        } catch (UncheckedIOException e) {
+            // диск недоступен, отметку записать нельзя
+        }
+    }
+
+    /**
+     * Отмечает, что заказы с номером не больше {@code seq} сохранены в базе.
+     * Если после этого в журнале не осталось несохранённых заказов, файл очищается
+     * и в нём остаётся только эта отметка (для продолжения нумерации после перезапуска).
+     */
+    synchronized void commit(long seq) {
+        if (seq <= lastCommitted) {
+            return;
+        }
+        lastCommitted = seq;
+        try {
+            if (lastCommitted == lastWritten) {
+                channel.truncate(0);
+            }
+            write("C " + seq + "\n");
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    // префикс «n» не даёт пустому имени потеряться при разборе строки
+    private static String encodeName(String name) {
+        return "n" + URLEncoder.encode(name == null ? "" : name, StandardCharsets.UTF_8);
+    }
+
+    private static String decodeName(String encoded) {
+        return URLDecoder.decode(encoded.substring(1), StandardCharsets.UTF_8);
+    }
+
+    // «-» — покупка без ключа
+    private static String encodeKey(String key) {
+        return key == null ? "-" : "k" + URLEncoder.encode(key, StandardCharsets.UTF_8);
+    }
+
+    private static String decodeKey(String encoded) {
+        return encoded.equals("-") ? null : URLDecoder.decode(encoded.substring(1), StandardCharsets.UTF_8);
+    }
+
+    private void write(String line) {
+        ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void force() {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
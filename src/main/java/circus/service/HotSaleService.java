@@ -0,0 +1,437 @@
+package circus.service;
+
+import circus.model.Performance;
+import circus.model.Ticket;
+import circus.repository.PerformanceRepository;
+import circus.repository.TicketRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Режим «горячей продажи» для выступлений с ажиотажным спросом.
+ * <p>
+ * Пока режим включён, остаток мест выступления хранится в памяти
+ * ({@link HotSaleCounters}) и списывается без обращения к базе. Принятый заказ
+ * записывается в локальный журнал ({@link HotSaleJournal}) и ставится в очередь;
+ * фоновая задача пачками сохраняет билеты и одним UPDATE на выступление
+ * обновляет агрегаты продаж, поэтому покупки не конкурируют за строку выступления.
+ * </p>
+ *
+ * <p>
+ * При сбое заказы, не успевшие попасть в базу, восстанавливаются из журнала при
+ * следующем старте. Номер заказа в журнале сохраняется в билете
+ * ({@code hot_sale_seq}), поэтому повторное восстановление не создаёт дубликатов.
+ * Ключ идемпотентности покупки тоже записывается в журнал, а строка
+ * {@code purchase_keys} вставляется в той же транзакции, что и билет.
+ * Режим локален для узла: продажа горячего выступления должна идти через один узел.
+ * Агрегаты продаж обновляются тем же условным UPDATE с проверкой вместимости, что и
+ * обычная покупка, поэтому при продаже с нескольких узлов лишние заказы не сохраняются,
+ * а попадают в список ошибочных.
+ * </p>
+ */
+@Component
+public class HotSaleService {
+
+    private final TicketRepository ticketRepository;
+
+    private final PerformanceRepository performanceRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final SeatHoldService seatHoldService;
+
+    private final SeatMapService seatMapService;
+
+    private final DailySalesRollup dailySales;
+
+    private final PurchaseKeyStore purchaseKeys;
+
+    private final Path journalFile;
+
+    private final int batchSize;
+
+    private final HotSaleCounters counters;
+
+    /**
+     * Принятые, но ещё не сохранённые в базе заказы (в порядке номеров журнала).
+     */
+    private final ConcurrentLinkedQueue<HotSaleJournal.Entry> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Заказы, которые не удалось сохранить даже по одному.
+     */
+    private final List<HotSaleJournal.Entry> deadLetters = new CopyOnWriteArrayList<>();
+
+    private final Object flushLock = new Object();
+
+    /**
+     * База недоступна с прошлой попытки записи (защищено {@link #flushLock});
+     * о сбое и восстановлении сообщается по одному разу.
+     */
+    private boolean databaseDown;
+
+    private HotSaleJournal journal;
+
+    public HotSaleService(TicketRepository ticketRepository,
+                          PerformanceRepository performanceRepository,
+                          TransactionTemplate transactionTemplate,
+                          SeatHoldService seatHoldService,
+                          SeatMapService seatMapService,
+                          DailySalesRollup dailySales,
+                          PurchaseKeyStore purchaseKeys,
+                          @Value("${circus.hot-sale.journal:data/hot-sale.journal}") String journalFile,
+                          @Value("${circus.hot-sale.batch-size:500}") int batchSize,
+                          @Value("${circus.hot-sale.stripes:8}") int stripes) {
+        this.ticketRepository = ticketRepository;
+        this.performanceRepository = performanceRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.seatHoldService = seatHoldService;
+        this.seatMapService = seatMapService;
+        this.dailySales = dailySales;
+        this.purchaseKeys = purchaseKeys;
+        this.journalFile = Path.of(journalFile);
+        this.batchSize = batchSize;
+        this.counters = new HotSaleCounters(stripes);
+    }
+
+    /**
+     * Открывает журнал и сохраняет заказы, принятые до сбоя, но не попавшие в базу.
+     * Выполняется до начала приёма запросов.
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        List<HotSaleJournal.Entry> unflushed = new ArrayList<>();
+        journal = HotSaleJournal.open(journalFile, unflushed);
+        Long maxSaved = ticketRepository.findMaxHotSaleSeq();
+        if (maxSaved != null) {
+            journal.advanceTo(maxSaved);
+        }
+        if (unflushed.isEmpty()) {
+            return;
+        }
+        Set<Long> saved = new HashSet<>(ticketRepository.findHotSaleSeqsFrom(unflushed.get(0).seq()));
+        unflushed.removeIf(entry -> saved.contains(entry.seq()));
+        // повтор покупки до записи билета в базу находит принятый заказ по ключу
+        for (HotSaleJournal.Entry entry : unflushed) {
+            if (entry.key() != null) {
+                purchaseKeys.rememberPending(entry.key(), entry.requestHash(), pendingTicket(entry));
+            }
+        }
+        pending.addAll(unflushed);
+        flush();
+        System.out.println("Восстановлено заказов горячей продажи из журнала: " + unflushed.size());
+    }
+
+    /**
+     * Включает режим горячей продажи для выступления.
+     *
+     * @param performanceId идентификатор выступления
+     * @throws IllegalStateException если у выступления не задана вместимость
+     *                               или есть схема зала (места назначаются в базе)
+     */
+    public void start(Long performanceId) {
+        Performance performance = performanceRepository.findById(performanceId).orElse(null);
+        if (performance == null || performance.getCapacity() == null) {
+            throw new IllegalStateException(
+                    "Горячая продажа возможна только для выступления с ограниченным количеством мест");
+        }
+        if (seatMapService.hasSeatMap(performanceId)) {
+            throw new IllegalStateException("Горячая продажа недоступна для выступления со схемой зала");
+        }
+        // под блокировкой строки выступления: покупки через базу, уже изменившие строку,
+        // зафиксированы и учтены в остатке, а ожидающие блокировку после неё увидят
+        // включённый режим и откатятся (см. TicketServiceImpl.save); уже удержанные
+        // места в счётчик не попадают и возвращаются в него при покупке
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                performanceRepository.lockById(performanceId);
+                long remaining = performanceRepository.findById(performanceId)
+                        .map(Performance::getRemainingSeats)
+                        .orElse(0L);
+                long held = seatHoldService.heldByOthers(performanceId, null);
+                counters.open(performanceId, Math.max(remaining - held, 0));
+            });
+        } catch (RuntimeException e) {
+            counters.close(performanceId);
+            throw e;
+        }
+    }
+
+    /**
+     * Выключает режим: новые покупки снова идут напрямую в базу,
+     * накопленные заказы сохраняются.
+     */
+    public void stop(Long performanceId) {
+        counters.close(performanceId);
+        flush();
+    }
+
+    public boolean isActive(Long performanceId) {
+        return performanceId != null && counters.contains(performanceId);
+    }
+
+    /**
+     * Остаток мест в памяти или {@code -1}, если режим для выступления не включён.
+     */
+    public long remaining(Long performanceId) {
+        return counters.remaining(performanceId);
+    }
+
+    /**
+     * Принимает заказ: списывает места в памяти и записывает заказ в журнал.
+     * Билет сохраняется в базе при следующей записи очереди.
+     *
+     * @param ticket      новый билет
+     * @param key         ключ идемпотентности покупки или {@code null}
+     * @param requestHash отпечаток заказа для ключа
+     * @return принятый билет (без идентификатора до сохранения в базе)
+     * @throws SoldOutException если свободных мест недостаточно
+     */
+    public Ticket accept(Ticket ticket, String key, String requestHash) {
+        long performanceId = ticket.getPerformance().getId();
+        int viewers = ticket.getViewersCount();
+        // места, удержанные покупателем до начала горячей продажи, возвращаются в счётчик
+        SeatHoldService.Hold hold = seatHoldService.release(ticket.getHoldToken());
+        if (hold != null && hold.performanceId() == performanceId) {
+            counters.release(performanceId, hold.seats());
+        }
+        if (!counters.tryTake(performanceId, viewers)) {
+            throw new SoldOutException("Недостаточно свободных мест на выступление: запрошено " + viewers);
+        }
+        boolean[] queued = {false};
+        try {
+            journal.append(performanceId, viewers, ticket.getTotalPrice(), ticket.getCustomerName(),
+                    key, requestHash, seq -> {
+                pending.add(new HotSaleJournal.Entry(seq, performanceId, viewers,
+                        ticket.getTotalPrice(), ticket.getCustomerName(), key, requestHash));
+                queued[0] = true;
+            });
+        } catch (RuntimeException e) {
+            if (!queued[0]) {
+                counters.release(performanceId, viewers);
+            }
+            throw e;
+        }
+        return ticket;
+    }
+
+    /**
+     * Сохраняет накопленные заказы пачками по {@code circus.hot-sale.batch-size}.
+     * <p>
+     * Заказы удаляются из очереди и отмечаются в журнале только после фиксации
+     * транзакции. Если пачка не сохраняется, её заказы сохраняются по одному;
+     * заказ, который не удаётся сохранить и отдельно, переносится в список
+     * {@link #deadLetters()}, чтобы не задерживать остальные заказы. При
+     * недоступности базы очередь остаётся как есть до следующего запуска.
+     * </p>
+     */
+    @Scheduled(fixedDelayString = "${circus.hot-sale.flush-interval:PT1S}", scheduler = "hotSaleScheduler")
+    public void flush() {
+        synchronized (flushLock) {
+            while (!pending.isEmpty()) {
+                List<HotSaleJournal.Entry> batch = new ArrayList<>();
+                for (HotSaleJournal.Entry entry : pending) {
+                    if (batch.size() == batchSize) {
+                        break;
+                    }
+                    batch.add(entry);
+                }
+                List<HotSaleJournal.Entry> duplicates;
+                try {
+                    duplicates = transactionTemplate.execute(status -> persist(batch));
+                } catch (RuntimeException e) {
+                    if (isUnavailable(e)) {
+                        databaseUnavailable();
+                        return;
+                    }
+                    databaseAvailable();
+                    System.out.println("Не удалось сохранить пачку заказов горячей продажи ("
+                            + batch.size() + " шт.), сохраняем по одному: " + e.getMessage());
+                    if (!flushOneByOne(batch)) {
+                        return;
+                    }
+                    continue;
+                }
+                databaseAvailable();
+                for (int i = 0; i < batch.size(); i++) {
+                    pending.poll();
+                }
+                journal.commit(batch.get(batch.size() - 1).seq());
+                dropDuplicates(duplicates);
+            }
+        }
+    }
+
+    /**
+     * Сохраняет заказы пачки по одному.
+     *
+     * @return {@code false}, если база недоступна и запись нужно повторить позже
+     */
+    private boolean flushOneByOne(List<HotSaleJournal.Entry> batch) {
+        for (HotSaleJournal.Entry entry : batch) {
+            List<HotSaleJournal.Entry> duplicates = List.of();
+            try {
+                duplicates = transactionTemplate.execute(status -> persist(List.of(entry)));
+            } catch (RuntimeException e) {
+                if (isUnavailable(e)) {
+                    databaseUnavailable();
+                    return false;
+                }
+                System.out.println("Заказ горячей продажи №" + entry.seq() + " (выступление "
+                        + entry.performanceId() + ", зрителей " + entry.viewers()
+                        + ") не сохранён и перенесён в список ошибочных: " + e.getMessage());
+                deadLetters.add(entry);
+                // места заказа возвращаются, если продажа выступления ещё идёт;
+                // если же места в базе кончились (продажа шла и с другого узла), возвращать нечего
+                if (!(e instanceof SoldOutException)) {
+                    counters.release(entry.performanceId(), entry.viewers());
+                }
+                if (entry.key() != null) {
+                    purchaseKeys.forget(entry.key());
+                }
+            }
+            pending.poll();
+            journal.commit(entry.seq());
+            dropDuplicates(duplicates);
+        }
+        return true;
+    }
+
+    private void databaseUnavailable() {
+        if (!databaseDown) {
+            databaseDown = true;
+            System.out.println("База недоступна, заказы горячей продажи будут сохранены позже");
+        }
+    }
+
+    private void databaseAvailable() {
+        if (databaseDown) {
+            databaseDown = false;
+            System.out.println("База снова доступна, сохранение заказов горячей продажи продолжено");
+        }
+    }
+
+    private static boolean isUnavailable(Throwable e) {
+        return e instanceof CannotCreateTransactionException
+                || e instanceof DataAccessResourceFailureException
+                || e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException;
+    }
+
+    /**
+     * Заказы, которые не удалось сохранить в базе (например, выступление удалено);
+     * они исключены из очереди и разбираются вручную по журналу сервера.
+     */
+    List<HotSaleJournal.Entry> deadLetters() {
+        return List.copyOf(deadLetters);
+    }
+
+    /**
+     * Есть ли несохранённые заказы выступления.
+     */
+    public boolean hasPending(Long performanceId) {
+        return performanceId != null
+                && pending.stream().anyMatch(entry -> entry.performanceId() == performanceId);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        flush();
+        journal.close();
+    }
+
+    /**
+     * Заказы, ключ которых уже занят покупкой, оформленной в обход горячей продажи
+     * (например, на другом узле): второй билет не создаётся, места возвращаются.
+     */
+    private void dropDuplicates(List<HotSaleJournal.Entry> duplicates) {
+        for (HotSaleJournal.Entry entry : duplicates) {
+            System.out.println("Заказ горячей продажи №" + entry.seq()
+                    + " повторяет уже оформленную покупку с тем же ключом и не сохранён");
+            counters.release(entry.performanceId(), entry.viewers());
+            purchaseKeys.forget(entry.key());
+        }
+    }
+
+    private static Ticket pendingTicket(HotSaleJournal.Entry entry) {
+        Performance performance = new Performance();
+        performance.setId(entry.performanceId());
+        Ticket ticket = new Ticket();
+        ticket.setPerformance(performance);
+        ticket.setCustomerName(entry.customerName());
+        ticket.setViewersCount(entry.viewers());
+        ticket.setTotalPrice(entry.totalPrice());
+        return ticket;
+    }
+
+    /**
+     * Сохраняет билеты пачки и занимает их ключи идемпотентности.
+     *
+     * @return заказы, ключ которых уже занят (их билеты не сохраняются)
+     */
+    private List<HotSaleJournal.Entry> persist(List<HotSaleJournal.Entry> batch) {
+        List<Ticket> tickets = new ArrayList<>(batch.size());
+        List<HotSaleJournal.Entry> persisted = new ArrayList<>();
+        List<HotSaleJournal.Entry> duplicates = new ArrayList<>();
+        Map<Long, long[]> totals = new HashMap<>();
+        // в журнале нет времени заказа, поэтому моментом продажи считается сохранение пачки
+        LocalDateTime soldAt = LocalDateTime.now();
+        for (HotSaleJournal.Entry entry : batch) {
+            if (entry.key() != null && !purchaseKeys.claim(entry.key(), entry.requestHash())) {
+                duplicates.add(entry);
+                continue;
+            }
+            Ticket ticket = new Ticket();
+            ticket.setPerformance(performanceRepository.getReferenceById(entry.performanceId()));
+            ticket.setCustomerName(entry.customerName());
+            ticket.setViewersCount(entry.viewers());
+            ticket.setTotalPrice(entry.totalPrice());
+            ticket.setHotSaleSeq(entry.seq());
+            ticket.setSoldAt(soldAt);
+            tickets.add(ticket);
+            persisted.add(entry);
+            long[] sum = totals.computeIfAbsent(entry.performanceId(), id -> new long[3]);
+            sum[0] += entry.totalPrice();
+            sum[1] += entry.viewers();
+            sum[2]++;
+        }
+        ticketRepository.saveAll(tickets);
+        for (int i = 0; i < tickets.size(); i++) {
+            HotSaleJournal.Entry entry = persisted.get(i);
+            if (entry.key() != null) {
+                purchaseKeys.complete(entry.key(), tickets.get(i).getId(), entry.requestHash());
+            }
+        }
+        // счётчик в памяти локален для узла, поэтому вместимость проверяется и в базе
+        totals.forEach((performanceId, sum) -> {
+            int reserved = performanceRepository.reserveSeats(performanceId, sum[0], sum[1],
+                    seatHoldService.heldByOthers(performanceId, null));
+            if (reserved == 0) {
+                throw new SoldOutException("Недостаточно свободных мест на выступление " + performanceId
+                        + " для заказов горячей продажи: запрошено " + sum[1]);
+            }
+            dailySales.add(performanceId, soldAt, sum[2], sum[1], sum[0]);
+        });
+        return duplicates;
+    }
+}
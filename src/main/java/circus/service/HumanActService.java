@@ -9,6 +9,8 @@ public interface HumanActService {
 
     HumanAct findById(Long id);
 
+    KeysetPage<HumanAct> findPage(String after, String before, int size);
+
     HumanAct save(HumanAct humanAct);
 
     void deleteById(Long id);
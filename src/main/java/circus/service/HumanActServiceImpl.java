@@ -3,6 +3,7 @@ package circus.service;
 import circus.model.HumanAct;
 import circus.repository.HumanActRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -11,8 +12,11 @@ public class HumanActServiceImpl implements HumanActService {
 
     private final HumanActRepository humanActRepository;
 
-    public HumanActServiceImpl(HumanActRepository humanActRepository) {
+    private final ScheduleConflictDetector scheduleConflicts;
+
+    public HumanActServiceImpl(HumanActRepository humanActRepository, ScheduleConflictDetector scheduleConflicts) {
         this.humanActRepository = humanActRepository;
+        this.scheduleConflicts = scheduleConflicts;
     }
 
     @Override
@@ -25,15 +29,30 @@ public class HumanActServiceImpl implements HumanActService {
         return humanActRepository.findById(id).orElse(null);
     }
 
+    @Override
+    public KeysetPage<HumanAct> findPage(String after, String before, int size) {
+        return KeysetPage.byId(humanActRepository, HumanAct::getId, after, before, size);
+    }
+
 
+    /**
+     * Сохраняет номер, если его участники не заняты в это время в других выступлениях.
+     *
+     * @throws ScheduleConflictException при пересечении расписания
+     */
     @Override
+    @Transactional
     public HumanAct save(HumanAct humanAct) {
-        return humanActRepository.save(humanAct);
+        HumanAct saved = humanActRepository.save(humanAct);
+        scheduleConflicts.placeHumanAct(saved);
+        return saved;
     }
 
     @Override
+    @Transactional
     public void deleteById(Long id) {
         humanActRepository.deleteById(id);
+        scheduleConflicts.removeHumanAct(id);
     }
 
     @Override
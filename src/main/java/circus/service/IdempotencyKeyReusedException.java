@@ -0,0 +1,20 @@
+package circus.service;
+
+import java.io.Serial;
+
+/**
+ * Повтор покупки с уже использованным ключом идемпотентности, но с другим заказом.
+ * <p>
+ * Вместо первого билета клиент получает ошибку: скорее всего, ключ
+ * по ошибке использован для нового заказа.
+ * </p>
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,196 @@
+package circus.service;
+
+import java.util.SplittableRandom;
+
+/**
+ * Дерево интервалов {@code [start, end)} с идентификаторами.
+ * <p>
+ * Декартово дерево (treap) по ключу {@code (start, id)}; каждый узел хранит
+ * наибольший конец интервала в своём поддереве, поэтому поиск пересечения
+ * отбрасывает поддеревья, которые заведомо кончаются раньше запрошенного начала
+ * или начинаются позже его конца. Вставка, удаление и поиск первого пересечения
+ * выполняются за O(log n) в среднем.
+ * </p>
+ *
+ * <p>Класс не потокобезопасен: вызывающий код синхронизирует доступ сам.</p>
+ */
+final class IntervalTree {
+
+    private static final class Node {
+
+        final long start;
+
+        final long end;
+
+        final long id;
+
+        final int priority;
+
+        long maxEnd;
+
+        Node left;
+
+        Node right;
+
+        Node(long start, long end, long id, int priority) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.priority = priority;
+            this.maxEnd = end;
+        }
+    }
+
+    private final SplittableRandom random = new SplittableRandom(0x43495243L);
+
+    private Node root;
+
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Добавляет интервал; пустой интервал ({@code end <= start}) ни с чем не пересекается.
+     *
+     * @param id идентификатор, уникальный для интервалов с одинаковым началом
+     */
+    void insert(long start, long end, long id) {
+        root = insert(root, new Node(start, end, id, random.nextInt()));
+        size++;
+    }
+
+    /**
+     * Удаляет интервал с заданными началом и идентификатором.
+     *
+     * @return {@code false}, если такого интервала нет
+     */
+    boolean remove(long start, long id) {
+        int before = size;
+        root = remove(root, start, id);
+        return size < before;
+    }
+
+    /**
+     * Находит интервал, пересекающийся с {@code [start, end)}, кроме интервала {@code excludeId}.
+     *
+     * @return идентификатор найденного интервала или {@code -1}
+     */
+    long findOverlap(long start, long end, long excludeId) {
+        if (end <= start) {
+            return -1;
+        }
+        return findOverlap(root, start, end, excludeId);
+    }
+
+    private static long findOverlap(Node node, long start, long end, long excludeId) {
+        while (node != null && node.maxEnd > start) {
+            if (node.left != null && node.left.maxEnd > start) {
+                long found = findOverlap(node.left, start, end, excludeId);
+                if (found != -1) {
+                    return found;
+                }
+            }
+            if (node.start >= end) {
+                // у правого поддерева начала ещё позже
+                return -1;
+            }
+            if (node.end > start && node.end > node.start && node.id != excludeId) {
+                return node.id;
+            }
+            node = node.right;
+        }
+        return -1;
+    }
+
+    private static Node insert(Node node, Node added) {
+        if (node == null) {
+            return added;
+        }
+        if (compare(added.start, added.id, node) < 0) {
+            node.left = insert(node.left, added);
+            if (node.left.priority > node.priority) {
+                node = rotateRight(node);
+            }
+        } else {
+            node.right = insert(node.right, added);
+            if (node.right.priority > node.priority) {
+                node = rotateLeft(node);
+            }
+        }
+        update(node);
+        return node;
+    }
+
+    private Node remove(Node node, long start, long id) {
+        if (node == null) {
+            return null;
+        }
+        int cmp = compare(start, id, node);
+        if (cmp < 0) {
+            node.left = remove(node.left, start, id);
+        } else if (cmp > 0) {
+            node.right = remove(node.right, start, id);
+        } else {
+            size--;
+            return merge(node.left, node.right);
+        }
+        update(node);
+        return node;
+    }
+
+    /**
+     * Сливает два поддерева, все ключи левого меньше ключей правого.
+     */
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+    private static int compare(long start, long id, Node node) {
+        int cmp = Long.compare(start, node.start);
+        return cmp != 0 ? cmp : Long.compare(id, node.id);
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static void update(Node node) {
+        long maxEnd = node.end;
+        if (node.left != null && node.left.maxEnd > maxEnd) {
+            maxEnd = node.left.maxEnd;
+        }
+        if (node.right != null && node.right.maxEnd > maxEnd) {
+            maxEnd = node.right.maxEnd;
+        }
+        node.maxEnd = maxEnd;
+    }
+}
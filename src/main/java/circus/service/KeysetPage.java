@@ -0,0 +1,121 @@
+package circus.service;
+
+import circus.repository.KeysetRepository;
+import org.springframework.data.domain.Limit;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Страница списка, полученная выборкой по ключу (keyset pagination).
+ * <p>
+ * Вместо номера страницы хранит курсоры — ключи первой и последней записи.
+ * Шаблоны передают их обратно в параметрах {@code before}/{@code after},
+ * и следующая выборка начинается сразу с нужного места в индексе.
+ * </p>
+ *
+ * @param <T> тип элементов страницы
+ */
+public class KeysetPage<T> {
+
+    /**
+     * Размер страницы по умолчанию.
+     */
+    public static final int DEFAULT_SIZE = 50;
+
+    private final List<T> items;
+
+    private final String nextCursor;
+
+    private final String previousCursor;
+
+    private KeysetPage(List<T> items, String nextCursor, String previousCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+    }
+
+    /**
+     * Собирает страницу из результата запроса, выбравшего {@code size + 1} строк.
+     * <p>
+     * Лишняя строка только сигнализирует, что дальше есть ещё записи, и в страницу не попадает.
+     * Для выборки «назад» строки приходят в обратном порядке и разворачиваются.
+     * </p>
+     *
+     * @param rows       строки в порядке выборки
+     * @param size       размер страницы
+     * @param backward   {@code true}, если выбиралась страница перед курсором
+     * @param fromCursor {@code true}, если выборка начиналась с курсора (а не с начала списка)
+     * @param cursorOf   функция получения курсора из элемента
+     * @return страница с курсорами соседних страниц
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int size, boolean backward, boolean fromCursor,
+                                       Function<T, String> cursorOf) {
+        boolean more = rows.size() > size;
+        List<T> items = new ArrayList<>(more ? rows.subList(0, size) : rows);
+        if (backward) {
+            Collections.reverse(items);
+        }
+        boolean hasNext = backward ? fromCursor : more;
+        boolean hasPrevious = backward ? more : fromCursor;
+
+        String next = hasNext && !items.isEmpty() ? cursorOf.apply(items.get(items.size() - 1)) : null;
+        String previous = hasPrevious && !items.isEmpty() ? cursorOf.apply(items.get(0)) : null;
+        return new KeysetPage<>(items, next, previous);
+    }
+
+    /**
+     * Загружает страницу сущностей, упорядоченных по идентификатору.
+     * <p>
+     * Некорректный курсор игнорируется, и возвращается первая страница.
+     * </p>
+     *
+     * @param repository репозиторий с методами выборки по ключу
+     * @param idOf       функция получения идентификатора сущности
+     * @param after      курсор «вперёд» (идентификатор последней показанной записи) или {@code null}
+     * @param before     курсор «назад» (идентификатор первой показанной записи) или {@code null}
+     * @param size       размер страницы
+     * @return страница сущностей
+     */
+    public static <T> KeysetPage<T> byId(KeysetRepository<T> repository, Function<T, Long> idOf,
+                                         String after, String before, int size) {
+        Function<T, String> cursorOf = item -> String.valueOf(idOf.apply(item));
+        Long beforeId = parseId(before);
+        if (beforeId != null) {
+            List<T> rows = repository.findByIdLessThanOrderByIdDesc(beforeId, Limit.of(size + 1));
+            if (!rows.isEmpty()) {
+                return of(rows, size, true, true, cursorOf);
+            }
+        }
+        Long afterId = parseId(after);
+        List<T> rows = afterId != null
+                ? repository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(size + 1))
+                : repository.findAllByOrderByIdAsc(Limit.of(size + 1));
+        return of(rows, size, false, afterId != null, cursorOf);
+    }
+
+    private static Long parseId(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(cursor);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+}
@@ -1,6 +1,9 @@
 package circus.service;
 
+import circus.model.AnimalAct;
+import circus.model.HumanAct;
 import circus.model.Performance;
+import circus.repository.ReferenceOption;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -23,6 +26,14 @@ public interface PerformanceService {
 
     List<Performance> findAllUpcoming(); // только status = false
 
+    /**
+     * Возвращает идентификаторы и названия предстоящих выступлений
+     * для выпадающего списка при покупке билета.
+     *
+     * @return список пунктов {@link ReferenceOption} в порядке начала выступлений
+     */
+    List<ReferenceOption> findUpcomingOptions();
+
     /**
      * Сохраняет новое или обновляет существующее выступление.
      *
@@ -31,6 +42,16 @@ public interface PerformanceService {
      */
     Performance save(Performance performance);
 
+    /**
+     * Сохраняет новые выступления вместе с их номерами одной транзакцией
+     * (пакетными вставками). Пересечения расписания проверяются так же, как при
+     * сохранении по одному.
+     *
+     * @return сохранённые выступления
+     */
+    List<Performance> saveSchedule(List<Performance> performances, List<HumanAct> humanActs,
+                                   List<AnimalAct> animalActs);
+
     List<Performance> findByDateRange(LocalDateTime fromDate, LocalDateTime toDate);
 
     /**
@@ -53,8 +74,49 @@ public interface PerformanceService {
 
     List<Performance> findAllSorted();
 
+    /**
+     * Ищет страницу выступлений одним запросом к базе данных.
+     * <p>
+     * Все условия необязательны и комбинируются между собой:
+     * границы по дате, отбор только предстоящих выступлений (для посетителей)
+     * и порядок сортировки. Страница выбирается по ключу {@code (dateTime, id)}
+     * (или {@code (revenue, id)} при сортировке по доходу), без OFFSET.
+     * </p>
+     *
+     * @param fromDate     нижняя граница даты (включительно) или {@code null}
+     * @param toDate       верхняя граница даты (включительно) или {@code null}
+     * @param upcomingOnly {@code true} — только предстоящие выступления
+     * @param sortBy       {@code revenue_asc}, {@code revenue_desc} или {@code null} (по дате, новые сверху)
+     * @param after        курсор следующей страницы или {@code null}
+     * @param before       курсор предыдущей страницы или {@code null}
+     * @param size         размер страницы
+     * @return отфильтрованная и отсортированная страница выступлений
+     */
+    KeysetPage<Performance> searchPage(LocalDateTime fromDate, LocalDateTime toDate,
+                                       boolean upcomingOnly, String sortBy,
+                                       String after, String before, int size);
+
+    /**
+     * Возвращает страницу выступлений, начинающуюся с указанного, с теми же фильтрами
+     * и сортировкой, что и {@link #searchPage}.
+     * <p>Используется в режиме редактирования, чтобы редактируемая строка была на экране.</p>
+     *
+     * @param performance выступление, с которого начинается страница
+     * @param size        размер страницы
+     * @return страница выступлений
+     */
+    KeysetPage<Performance> pageStartingAt(Performance performance, LocalDateTime fromDate, LocalDateTime toDate,
+                                           boolean upcomingOnly, String sortBy, int size);
+
     List<Performance> findAllUpcomingSorted();
 
+    /**
+     * Немедленно переводит прошедшие выступления в статус «проведено».
+     * <p>
+     * Обычно это делает фоновый {@link PerformanceStatusScheduler}; при открытии афиши
+     * метод не вызывается, чтобы чтение списка не порождало записей в БД.
+     * </p>
+     */
     void updateStatusesForPastPerformances();
 
 //    List<Performance> findByDateTime(LocalDateTime byDate);
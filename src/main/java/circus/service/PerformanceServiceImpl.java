@@ -1,14 +1,26 @@
 package circus.service;
 
+import circus.model.AnimalAct;
+import circus.model.HumanAct;
 import circus.model.Performance;
+import circus.repository.AnimalActRepository;
+import circus.repository.HumanActRepository;
 import circus.repository.PerformanceRepository;
+import circus.repository.PerformanceSpecifications;
+import circus.repository.ReferenceOption;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
+import static circus.repository.PerformanceSpecifications.startsFrom;
+import static circus.repository.PerformanceSpecifications.startsTo;
+import static circus.repository.PerformanceSpecifications.upcoming;
+
 /**
  * Реализация интерфейса {@link PerformanceService}.
  * <p>
@@ -28,14 +40,75 @@ public class PerformanceServiceImpl implements PerformanceService {
      */
     private final PerformanceRepository performanceRepository;
 
+    /**
+     * Репозитории номеров; используются при сохранении сгенерированного расписания.
+     */
+    private final HumanActRepository humanActRepository;
+
+    private final AnimalActRepository animalActRepository;
+
+    /**
+     * Планировщик смены статусов; пересчитывает время срабатывания при изменении расписания.
+     */
+    private final PerformanceStatusScheduler statusScheduler;
+
+    /**
+     * Кэш выпадающих списков; сбрасывается при изменении выступлений.
+     */
+    private final ReferenceDataCache referenceDataCache;
+
+    /**
+     * Сводка продаж по дням; строки выступления удаляются вместе с ним.
+     */
+    private final DailySalesRollup dailySalesRollup;
+
+    /**
+     * Проверка пересечений расписания артистов и животных.
+     */
+    private final ScheduleConflictDetector scheduleConflicts;
+
+    /**
+     * Горячая продажа; выступление с идущей продажей удалить нельзя.
+     */
+    private final HotSaleService hotSaleService;
+
+    /**
+     * Схемы залов; схема удаляется вместе с выступлением.
+     */
+    private final SeatMapService seatMapService;
+
     /**
      * Конструктор сервиса выступлений.
      *
      * @param performanceRepository репозиторий выступлений
+     * @param humanActRepository    репозиторий номеров артистов
+     * @param animalActRepository   репозиторий номеров с животными
+     * @param statusScheduler       планировщик смены статусов
+     * @param referenceDataCache    кэш выпадающих списков
+     * @param dailySalesRollup      сводка продаж по дням
+     * @param scheduleConflicts     проверка пересечений расписания
+     * @param hotSaleService        горячая продажа
+     * @param seatMapService        схемы залов
      */
     @Autowired
-    public PerformanceServiceImpl(PerformanceRepository performanceRepository) {
+    public PerformanceServiceImpl(PerformanceRepository performanceRepository,
+                                  HumanActRepository humanActRepository,
+                                  AnimalActRepository animalActRepository,
+                                  PerformanceStatusScheduler statusScheduler,
+                                  ReferenceDataCache referenceDataCache,
+                                  DailySalesRollup dailySalesRollup,
+                                  ScheduleConflictDetector scheduleConflicts,
+                                  HotSaleService hotSaleService,
+                                  SeatMapService seatMapService) {
         this.performanceRepository = performanceRepository;
+        this.humanActRepository = humanActRepository;
+        this.animalActRepository = animalActRepository;
+        this.statusScheduler = statusScheduler;
+        this.referenceDataCache = referenceDataCache;
+        this.dailySalesRollup = dailySalesRollup;
+        this.scheduleConflicts = scheduleConflicts;
+        this.hotSaleService = hotSaleService;
+        this.seatMapService = seatMapService;
     }
 
     public List<Performance> findByDateRange(LocalDateTime fromDate, LocalDateTime toDate) {
@@ -64,8 +137,43 @@ public class PerformanceServiceImpl implements PerformanceService {
     }
 
     @Override
+    public List<ReferenceOption> findUpcomingOptions() {
+        return performanceRepository.findUpcomingOptions();
+    }
+
+    /**
+     * Сохраняет выступление, если его главный артист и участники номеров не заняты
+     * в это время в других выступлениях.
+     *
+     * @throws ScheduleConflictException при пересечении расписания
+     */
+    @Override
+    @Transactional
     public Performance save(Performance performance) {
-        return performanceRepository.save(performance);
+        Performance saved = performanceRepository.save(performance);
+        scheduleConflicts.placePerformance(saved);
+        statusScheduler.rescheduleAfterCommit();
+        referenceDataCache.invalidatePerformances();
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public List<Performance> saveSchedule(List<Performance> performances, List<HumanAct> humanActs,
+                                          List<AnimalAct> animalActs) {
+        List<Performance> saved = performanceRepository.saveAll(performances);
+        for (Performance performance : saved) {
+            scheduleConflicts.placePerformance(performance);
+        }
+        for (HumanAct act : humanActRepository.saveAll(humanActs)) {
+            scheduleConflicts.placeHumanAct(act);
+        }
+        for (AnimalAct act : animalActRepository.saveAll(animalActs)) {
+            scheduleConflicts.placeAnimalAct(act);
+        }
+        statusScheduler.rescheduleAfterCommit();
+        referenceDataCache.invalidatePerformances();
+        return saved;
     }
 
     /**
@@ -86,10 +194,21 @@ public class PerformanceServiceImpl implements PerformanceService {
      * </p>
      *
      * @param id идентификатор выступления
+     * @throws IllegalStateException если у выступления идёт горячая продажа
+     *                               или не все её заказы сохранены
      */
     @Override
+    @Transactional
     public void deleteById(Long id) {
+        if (hotSaleService.isActive(id) || hotSaleService.hasPending(id)) {
+            throw new IllegalStateException("Остановите горячую продажу перед удалением выступления");
+        }
+        dailySalesRollup.removePerformance(id);
+        seatMapService.remove(id);
         performanceRepository.deleteById(id);
+        scheduleConflicts.removePerformance(id);
+        statusScheduler.rescheduleAfterCommit();
+        referenceDataCache.invalidatePerformances();
     }
 
     @Override
@@ -97,15 +216,104 @@ public class PerformanceServiceImpl implements PerformanceService {
         return performanceRepository.findAllByOrderByDateTimeDesc();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetPage<Performance> searchPage(LocalDateTime fromDate, LocalDateTime toDate,
+                                              boolean upcomingOnly, String sortBy,
+                                              String after, String before, int size) {
+        Specification<Performance> filter = filter(fromDate, toDate, upcomingOnly);
+        boolean byRevenue = "revenue_asc".equals(sortBy) || "revenue_desc".equals(sortBy);
+        String property = byRevenue ? "revenue" : "dateTime";
+        boolean ascending = "revenue_asc".equals(sortBy);
+
+        Specification<Performance> beforeSeek = parseCursor(before, byRevenue, !ascending);
+        if (beforeSeek != null) {
+            List<Performance> rows = fetch(filter.and(beforeSeek), property, !ascending, size + 1);
+            if (!rows.isEmpty()) {
+                return KeysetPage.of(rows, size, true, true, p -> cursorOf(p, byRevenue));
+            }
+        }
+        Specification<Performance> afterSeek = parseCursor(after, byRevenue, ascending);
+        List<Performance> rows = fetch(afterSeek != null ? filter.and(afterSeek) : filter,
+                property, ascending, size + 1);
+        return KeysetPage.of(rows, size, false, afterSeek != null, p -> cursorOf(p, byRevenue));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public KeysetPage<Performance> pageStartingAt(Performance performance, LocalDateTime fromDate,
+                                                  LocalDateTime toDate, boolean upcomingOnly,
+                                                  String sortBy, int size) {
+        boolean byRevenue = "revenue_asc".equals(sortBy) || "revenue_desc".equals(sortBy);
+        boolean ascending = "revenue_asc".equals(sortBy);
+        String property = byRevenue ? "revenue" : "dateTime";
+        // Курсор (ключ, id ± 1) пропускает всё, что стоит выше выступления, но не его самого
+        long id = ascending ? performance.getId() - 1 : performance.getId() + 1;
+        Specification<Performance> seek = byRevenue
+                ? PerformanceSpecifications.seek(property, performance.getRevenue(), id, ascending)
+                : PerformanceSpecifications.seek(property, performance.getDateTime(), id, ascending);
+        List<Performance> rows = fetch(filter(fromDate, toDate, upcomingOnly).and(seek), property, ascending,
+                size + 1);
+        return KeysetPage.of(rows, size, false, true, p -> cursorOf(p, byRevenue));
+    }
+
+    private static Specification<Performance> filter(LocalDateTime fromDate, LocalDateTime toDate,
+                                                     boolean upcomingOnly) {
+        return Specification.allOf(startsFrom(fromDate), startsTo(toDate), upcoming(upcomingOnly));
+    }
+
+    /**
+     * Выбирает не более {@code limit} строк в порядке {@code (property, id)}.
+     */
+    private List<Performance> fetch(Specification<Performance> spec, String property,
+                                    boolean ascending, int limit) {
+        Sort sort = Sort.by(ascending ? Sort.Direction.ASC : Sort.Direction.DESC, property, "id");
+        // project(...) для сущности задаёт граф загрузки: главный артист приходит
+        // в том же запросе, а не отдельным SELECT на каждую строку афиши
+        return performanceRepository.findBy(spec, q -> q.sortBy(sort).limit(limit)
+                .project("mainArtist").all());
+    }
+
+    /**
+     * Формирует курсор строки: значение ключа сортировки и идентификатор через {@code _}.
+     */
+    private String cursorOf(Performance performance, boolean byRevenue) {
+        Object key = byRevenue ? performance.getRevenue() : performance.getDateTime();
+        return key + "_" + performance.getId();
+    }
+
+    /**
+     * Разбирает курсор в условие выборки по ключу.
+     *
+     * @return условие или {@code null}, если курсор не передан или некорректен
+     */
+    private Specification<Performance> parseCursor(String cursor, boolean byRevenue, boolean ascending) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        int separator = cursor.lastIndexOf('_');
+        if (separator < 0) {
+            return null;
+        }
+        try {
+            String key = cursor.substring(0, separator);
+            Long id = Long.parseLong(cursor.substring(separator + 1));
+            return byRevenue
+                    ? PerformanceSpecifications.seek("revenue", Long.parseLong(key), id, ascending)
+                    : PerformanceSpecifications.seek("dateTime", LocalDateTime.parse(key), id, ascending);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
     @Override
     public List<Performance> findAllUpcomingSorted() {
         return performanceRepository.findAllUpcomingOrderByDateTimeDesc();
     }
 
     @Override
-    @Transactional
     public void updateStatusesForPastPerformances() {
-        performanceRepository.markPastPerformancesAsDone();
+        statusScheduler.runTransition();
     }
 //    @Override
 //    public List<Performance> findByDateTime(LocalDateTime byDate){
@@ -0,0 +1,210 @@
+package circus.service;
+
+import circus.repository.PerformanceRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Фоновая смена статусов прошедших выступлений.
+ * <p>
+ * Вместо UPDATE при каждом открытии афиши планировщик знает время ближайшего
+ * незавершённого выступления и запускает перевод статуса ровно в этот момент.
+ * После каждого запуска и после каждого изменения расписания
+ * ({@link #reschedule()}) вычисляется следующий момент срабатывания.
+ * </p>
+ *
+ * <p>
+ * Если запущено несколько узлов приложения, обновление выполняет только тот,
+ * кто получил advisory-блокировку PostgreSQL; остальные пропускают запуск
+ * и повторяют его через интервал опроса. Периодический опрос подхватывает
+ * выступления, добавленные на других узлах.
+ * </p>
+ *
+ * <p>
+ * После изменения расписания пересчёт выполняется в фоне после фиксации
+ * транзакции ({@link #rescheduleAfterCommit()}): сохранения не ждут запроса
+ * к базе и не выстраиваются в очередь друг за другом.
+ * </p>
+ */
+@Component
+public class PerformanceStatusScheduler {
+
+    /**
+     * Ключ advisory-блокировки задачи смены статусов.
+     */
+    static final long STATUS_LOCK_KEY = 0x43495243_0001L;
+
+    /**
+     * Запас времени после начала выступления, чтобы {@code CURRENT_TIMESTAMP}
+     * в базе гарантированно оказался позже времени выступления.
+     */
+    private static final Duration GRACE = Duration.ofSeconds(1);
+
+    private final PerformanceRepository performanceRepository;
+
+    private final TaskScheduler taskScheduler;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Duration pollInterval;
+
+    /**
+     * Запланированный запуск смены статусов (не более одного одновременно).
+     */
+    private ScheduledFuture<?> nextRun;
+
+    /**
+     * Номер последнего начатого пересчёта; применяется результат только самого позднего
+     * из них, так как он прочитал самое свежее расписание.
+     */
+    private final AtomicLong started = new AtomicLong();
+
+    private long applied;
+
+    private final AtomicBoolean rescheduleRequested = new AtomicBoolean();
+
+    public PerformanceStatusScheduler(PerformanceRepository performanceRepository,
+                                      TaskScheduler taskScheduler,
+                                      TransactionTemplate transactionTemplate,
+                                      @Value("${circus.performance-status.poll-interval:PT5M}")
+                                      Duration pollInterval) {
+        this.performanceRepository = performanceRepository;
+        this.taskScheduler = taskScheduler;
+        this.transactionTemplate = transactionTemplate;
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Планирует первый запуск после старта приложения.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        reschedule();
+    }
+
+    /**
+     * Страховочный опрос: подхватывает изменения расписания, сделанные на других узлах.
+     */
+    @Scheduled(fixedDelayString = "${circus.performance-status.poll-interval:PT5M}",
+            initialDelayString = "${circus.performance-status.poll-interval:PT5M}")
+    public void poll() {
+        reschedule();
+    }
+
+    /**
+     * Переводит прошедшие выступления в статус «проведено».
+     * <p>
+     * Выполняется в отдельной транзакции под advisory-блокировкой:
+     * если её держит другой узел, запуск пропускается.
+     * </p>
+     *
+     * @return количество обновлённых выступлений
+     */
+    public int runTransition() {
+        Integer updated = tryTransition();
+        return updated == null ? 0 : updated;
+    }
+
+    /**
+     * @return количество обновлённых выступлений или {@code null}, если блокировку держит другой узел
+     */
+    private Integer tryTransition() {
+        return transactionTemplate.execute(status ->
+                performanceRepository.tryAdvisoryXactLock(STATUS_LOCK_KEY)
+                        ? performanceRepository.markPastPerformancesAsDone()
+                        : null);
+    }
+
+    /**
+     * Пересчитывает момент следующего срабатывания после фиксации текущей транзакции
+     * (без транзакции — сразу), в фоновом потоке. Вызывается после сохранения
+     * и удаления выступлений; запросы, пришедшие до начала пересчёта, объединяются.
+     */
+    public void rescheduleAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            requestReschedule();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                requestReschedule();
+            }
+        });
+    }
+
+    private void requestReschedule() {
+        if (rescheduleRequested.compareAndSet(false, true)) {
+            taskScheduler.schedule(() -> {
+                rescheduleRequested.set(false);
+                reschedule();
+            }, Instant.now());
+        }
+    }
+
+    /**
+     * Пересчитывает момент следующего срабатывания.
+     * <p>
+     * Запрос к базе выполняется без блокировки; под ней только заменяется
+     * запланированный запуск.
+     * </p>
+     */
+    public void reschedule() {
+        long number = started.incrementAndGet();
+        LocalDateTime next = performanceRepository.findNextStatusTransition();
+        Instant fireAt = null;
+        if (next != null) {
+            fireAt = next.atZone(ZoneId.systemDefault()).toInstant().plus(GRACE);
+            Instant earliest = Instant.now().plus(GRACE);
+            if (fireAt.isBefore(earliest)) {
+                fireAt = earliest;
+            }
+        }
+        schedule(number, fireAt);
+    }
+
+    private synchronized void schedule(long number, Instant fireAt) {
+        if (number < applied) {
+            // более поздний пересчёт уже применён
+            return;
+        }
+        applied = number;
+        if (nextRun != null) {
+            nextRun.cancel(false);
+            nextRun = null;
+        }
+        if (fireAt != null) {
+            nextRun = taskScheduler.schedule(this::fire, fireAt);
+        }
+    }
+
+    private void fire() {
+        Integer updated = null;
+        try {
+            updated = tryTransition();
+        } finally {
+            if (updated != null) {
+                reschedule();
+            } else {
+                // смену статусов выполняет другой узел (или запуск не удался):
+                // повтор через интервал опроса, а не каждую секунду
+                schedule(started.incrementAndGet(), Instant.now().plus(pollInterval));
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package circus.service;
+
+import circus.repository.SalesAnalyticsRepository;
+import circus.repository.SalesAnalyticsRepository.PerformanceRevenue;
+import circus.repository.SalesAnalyticsRepository.PerformanceWages;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Прибыль выступлений: выручка по билетам минус зарплаты занятых в них сотрудников
+ * (главного артиста, исполнителей номеров и дрессировщиков).
+ * <p>
+ * Диапазон делится по месяцам на части не длиннее {@code circus.profit-report.partition-months},
+ * которые считаются параллельно в отдельном {@link ForkJoinPool}. Каждая часть —
+ * два группирующих запроса (выручка и зарплаты по выступлениям), сущности не
+ * загружаются. Части не пересекаются по месяцам, поэтому результаты только
+ * склеиваются по порядку. Параллелизм ограничен {@code circus.profit-report.parallelism}
+ * и не должен превышать размер пула соединений. Диапазон ограничен
+ * {@link #MAX_MONTHS} месяцами (три сезона).
+ * </p>
+ *
+ * <p>
+ * Зарплата сотрудника считается оплатой за одно выступление: в каждом
+ * выступлении она учитывается один раз, сколько бы ролей у него ни было.
+ * </p>
+ */
+@Component
+public class ProfitReportService {
+
+    static final int MAX_MONTHS = 36;
+
+    /**
+     * Прибыль выступления.
+     */
+    public record PerformanceProfit(Long performanceId, String name, LocalDateTime dateTime,
+                                    long revenue, long wages, long profit) {
+    }
+
+    /**
+     * Прибыль месяца.
+     *
+     * @param month первый день месяца
+     */
+    public record MonthProfit(LocalDate month, int performances, long revenue, long wages, long profit) {
+    }
+
+    /**
+     * Отчёт о прибыли за диапазон дат выступлений.
+     *
+     * @param from первый день
+     * @param to   последний день (включительно)
+     */
+    public record Report(LocalDate from, LocalDate to, List<PerformanceProfit> performances,
+                         List<MonthProfit> months, long revenue, long wages, long profit) {
+    }
+
+    /**
+     * Результат части диапазона.
+     */
+    private record Part(List<PerformanceProfit> performances, List<MonthProfit> months) {
+    }
+
+    private final SalesAnalyticsRepository salesAnalyticsRepository;
+
+    private final int partitionMonths;
+
+    private final ForkJoinPool pool;
+
+    public ProfitReportService(SalesAnalyticsRepository salesAnalyticsRepository,
+                               @Value("${circus.profit-report.parallelism:4}") int parallelism,
+                               @Value("${circus.profit-report.partition-months:3}") int partitionMonths) {
+        if (partitionMonths < 1) {
+            throw new IllegalArgumentException("Часть отчёта должна включать хотя бы один месяц");
+        }
+        this.salesAnalyticsRepository = salesAnalyticsRepository;
+        this.partitionMonths = partitionMonths;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Считает прибыль по выступлениям и месяцам.
+     *
+     * @param from первый день диапазона
+     * @param to   последний день диапазона (включительно)
+     * @throws IllegalArgumentException если конец раньше начала или диапазон
+     *                                  захватывает больше {@link #MAX_MONTHS} месяцев
+     */
+    public Report report(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Конец диапазона раньше начала");
+        }
+        if (ChronoUnit.MONTHS.between(from.withDayOfMonth(1), to.withDayOfMonth(1)) >= MAX_MONTHS) {
+            throw new IllegalArgumentException("Отчёт о прибыли строится не более чем за " + MAX_MONTHS + " месяцев");
+        }
+        // границы месяцев: from, первые числа следующих месяцев, день после to
+        List<LocalDate> bounds = new ArrayList<>();
+        bounds.add(from);
+        for (LocalDate month = from.withDayOfMonth(1).plusMonths(1); !month.isAfter(to); month = month.plusMonths(1)) {
+            bounds.add(month);
+        }
+        bounds.add(to.plusDays(1));
+        Part part = pool.invoke(new PartTask(bounds, 0, bounds.size() - 1));
+        long revenue = 0;
+        long wages = 0;
+        for (MonthProfit month : part.months()) {
+            revenue += month.revenue();
+            wages += month.wages();
+        }
+        return new Report(from, to, part.performances(), part.months(), revenue, wages, revenue - wages);
+    }
+
+    /**
+     * Месяцы {@code [first, last)} списка границ; делится пополам, пока не станет
+     * не длиннее {@link #partitionMonths}. Задачи живут только внутри пула
+     * и не сериализуются.
+     */
+    @SuppressWarnings("serial")
+    private final class PartTask extends RecursiveTask<Part> {
+
+        private final List<LocalDate> bounds;
+
+        private final int first;
+
+        private final int last;
+
+        PartTask(List<LocalDate> bounds, int first, int last) {
+            this.bounds = bounds;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected Part compute() {
+            if (last - first <= partitionMonths) {
+                return load();
+            }
+            int middle = (first + last) >>> 1;
+            PartTask right = new PartTask(bounds, middle, last);
+            right.fork();
+            Part left = new PartTask(bounds, first, middle).compute();
+            Part rest = right.join();
+            List<PerformanceProfit> performances = new ArrayList<>(left.performances());
+            performances.addAll(rest.performances());
+            List<MonthProfit> months = new ArrayList<>(left.months());
+            months.addAll(rest.months());
+            return new Part(performances, months);
+        }
+
+        private Part load() {
+            LocalDateTime start = bounds.get(first).atStartOfDay();
+            LocalDateTime end = bounds.get(last).atStartOfDay();
+            Map<Long, Long> wagesById = new HashMap<>();
+            for (PerformanceWages wages : salesAnalyticsRepository.findPerformanceWages(start, end)) {
+                wagesById.put(wages.getPerformanceId(), wages.getWages());
+            }
+            List<PerformanceRevenue> revenues = salesAnalyticsRepository.findPerformanceRevenue(start, end);
+            List<PerformanceProfit> performances = new ArrayList<>(revenues.size());
+            List<MonthProfit> months = new ArrayList<>(last - first);
+            int next = 0;
+            for (int i = first; i < last; i++) {
+                LocalDateTime monthEnd = bounds.get(i + 1).atStartOfDay();
+                int count = 0;
+                long revenue = 0;
+                long wages = 0;
+                // выступления отсортированы по дате, поэтому месяц — непрерывный отрезок списка
+                for (; next < revenues.size() && revenues.get(next).getDateTime().isBefore(monthEnd); next++) {
+                    PerformanceRevenue row = revenues.get(next);
+                    long performanceWages = wagesById.getOrDefault(row.getPerformanceId(), 0L);
+                    performances.add(new PerformanceProfit(row.getPerformanceId(), row.getName(), row.getDateTime(),
+                            row.getRevenue(), performanceWages, row.getRevenue() - performanceWages));
+                    count++;
+                    revenue += row.getRevenue();
+                    wages += performanceWages;
+                }
+                months.add(new MonthProfit(bounds.get(i).withDayOfMonth(1), count, revenue, wages, revenue - wages));
+            }
+            return new Part(performances, months);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package circus.service;
+
+import circus.model.PurchaseKey;
+import circus.model.Ticket;
+import circus.repository.PurchaseKeyRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Хранилище ключей идемпотентности покупок.
+ * <p>
+ * Недавние ключи держатся в ограниченном кэше памяти, поэтому повторы при сетевых
+ * сбоях обычно не доходят до базы. Источник истины — таблица {@code purchase_keys}:
+ * ключ занимается в транзакции покупки, и одновременные повторы с разных узлов
+ * не создают второй билет. Записи старше {@code circus.idempotency.retention} удаляются.
+ * </p>
+ *
+ * <p>
+ * Вместе с ключом хранится отпечаток заказа ({@link #requestHash(Ticket)}): повтор
+ * с тем же ключом, но другим заказом отклоняется {@link IdempotencyKeyReusedException}.
+ * </p>
+ *
+ * <p>
+ * Покупки горячей продажи ещё не имеют строки в базе: до сохранения билета их ключи
+ * хранятся в памяти узла вместе с принятым билетом (без вытеснения) и в журнале
+ * горячей продажи, а строка {@code purchase_keys} вставляется в транзакции,
+ * сохраняющей билет (см. {@link HotSaleService}).
+ * </p>
+ */
+@Component
+public class PurchaseKeyStore {
+
+    /**
+     * Результат покупки по ключу: идентификатор сохранённого билета
+     * или билет, принятый горячей продажей, и отпечаток заказа.
+     */
+    record Purchase(Long ticketId, Ticket pending, String requestHash) {
+    }
+
+    private final PurchaseKeyRepository purchaseKeyRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Duration retention;
+
+    private final Cache<String, Purchase> recent;
+
+    /**
+     * Ключи покупок горячей продажи, билеты которых ещё не сохранены в базе.
+     * Размер ограничен очередью записи горячей продажи.
+     */
+    private final Map<String, Purchase> inFlight = new ConcurrentHashMap<>();
+
+    public PurchaseKeyStore(PurchaseKeyRepository purchaseKeyRepository,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${circus.idempotency.cache-size:100000}") long cacheSize,
+                            @Value("${circus.idempotency.retention:P1D}") Duration retention) {
+        this.purchaseKeyRepository = purchaseKeyRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.retention = retention;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(retention)
+                .build();
+    }
+
+    /**
+     * Проверяет ключ, пришедший от клиента.
+     *
+     * @throws IllegalArgumentException если ключ длиннее {@link PurchaseKey#MAX_KEY_LENGTH}
+     */
+    public static void validateKey(String key) {
+        if (key != null && key.length() > PurchaseKey.MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Ключ идемпотентности длиннее "
+                    + PurchaseKey.MAX_KEY_LENGTH + " символов");
+        }
+    }
+
+    /**
+     * Отпечаток заказа: выступление, покупатель, количество зрителей, стоимость и места.
+     */
+    static String requestHash(Ticket ticket) {
+        String request = String.join("\n",
+                String.valueOf(ticket.getPerformance() != null ? ticket.getPerformance().getId() : null),
+                String.valueOf(ticket.getCustomerName()),
+                String.valueOf(ticket.getViewersCount()),
+                String.valueOf(ticket.getTotalPrice()),
+                String.valueOf(ticket.getSeatRow()),
+                String.valueOf(ticket.getFirstSeat()));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(request.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Ищет покупку по ключу: сначала в памяти, затем в базе.
+     *
+     * @param requestHash отпечаток повторяемого заказа
+     * @return покупка или {@code null}, если ключ не встречался
+     * @throws IdempotencyKeyReusedException если с этим ключом оформлен другой заказ
+     */
+    Purchase find(String key, String requestHash) {
+        Purchase purchase = recent.getIfPresent(key);
+        if (purchase == null) {
+            purchase = inFlight.get(key);
+        }
+        if (purchase == null) {
+            PurchaseKey row = purchaseKeyRepository.findById(key).orElse(null);
+            if (row == null || row.getTicketId() == null) {
+                return null;
+            }
+            purchase = new Purchase(row.getTicketId(), null, row.getRequestHash());
+            recent.put(key, purchase);
+        }
+        // у ключей, сохранённых до появления отпечатков, сравнивать нечего
+        if (purchase.requestHash() != null && !purchase.requestHash().equals(requestHash)) {
+            throw new IdempotencyKeyReusedException(
+                    "Ключ идемпотентности уже использован для другого заказа");
+        }
+        return purchase;
+    }
+
+    /**
+     * Занимает ключ в текущей транзакции покупки.
+     *
+     * @return {@code false}, если покупка с этим ключом уже зафиксирована
+     */
+    boolean claim(String key, String requestHash) {
+        return purchaseKeyRepository.claim(key, requestHash) == 1;
+    }
+
+    /**
+     * Связывает ключ с сохранённым билетом; в памяти — после фиксации транзакции.
+     * Ключ покупки горячей продажи после этого ищется по сохранённому билету.
+     */
+    void complete(String key, Long ticketId, String requestHash) {
+        purchaseKeyRepository.complete(key, ticketId);
+        Purchase purchase = new Purchase(ticketId, null, requestHash);
+        afterCommit(() -> {
+            recent.put(key, purchase);
+            inFlight.remove(key);
+        });
+    }
+
+    /**
+     * Запоминает билет, принятый горячей продажей.
+     *
+     * @return {@code false}, если ключ уже занят другим запросом
+     */
+    boolean rememberPending(String key, String requestHash, Ticket ticket) {
+        return recent.getIfPresent(key) == null
+                && inFlight.putIfAbsent(key, new Purchase(null, ticket, requestHash)) == null;
+    }
+
+    /**
+     * Освобождает ключ покупки, которая не была оформлена;
+     * в транзакции — после её фиксации.
+     */
+    void forget(String key) {
+        afterCommit(() -> inFlight.remove(key));
+    }
+
+    /**
+     * Удаляет устаревшие ключи из базы.
+     */
+    @Scheduled(cron = "${circus.idempotency.purge-cron:0 15 * * * *}")
+    public void purge() {
+        Integer removed = transactionTemplate.execute(status ->
+                purchaseKeyRepository.deleteCreatedBefore(LocalDateTime.now().minus(retention)));
+        if (removed != null && removed > 0) {
+            System.out.println("Удалено устаревших ключей идемпотентности: " + removed);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package circus.service;
+
+import circus.repository.AnimalRepository;
+import circus.repository.EmployeeRepository;
+import circus.repository.PerformanceRepository;
+import circus.repository.ReferenceOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Кэш справочных списков для выпадающих меню (сотрудники, животные, выступления).
+ * <p>
+ * Хранит неизменяемые снимки списков {@link ReferenceOption}, поэтому формы
+ * в установившемся режиме не обращаются к базе данных. Методы записи
+ * соответствующих сервисов вызывают {@code invalidate*()}, увеличивая версию
+ * списка; снимок со старой версией при следующем чтении загружается заново.
+ * </p>
+ *
+ * <p>
+ * Кэш локален для узла. Изменения, сделанные на других узлах, подхватываются
+ * по истечении {@code circus.reference-data.max-age}.
+ * </p>
+ */
+@Component
+public class ReferenceDataCache {
+
+    private final EmployeeRepository employeeRepository;
+
+    private final AnimalRepository animalRepository;
+
+    private final PerformanceRepository performanceRepository;
+
+    /**
+     * Максимальный возраст снимка.
+     */
+    private final Duration maxAge;
+
+    /**
+     * Общая версия справочников; растёт при любой инвалидации.
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    private final Slot employees = new Slot();
+
+    private final Slot animals = new Slot();
+
+    private final Slot performances = new Slot();
+
+    public ReferenceDataCache(EmployeeRepository employeeRepository,
+                              AnimalRepository animalRepository,
+                              PerformanceRepository performanceRepository,
+                              @Value("${circus.reference-data.max-age:PT5M}") Duration maxAge) {
+        this.employeeRepository = employeeRepository;
+        this.animalRepository = animalRepository;
+        this.performanceRepository = performanceRepository;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Сотрудники (артисты, дрессировщики) для выпадающих списков.
+     */
+    public List<ReferenceOption> employees() {
+        return employees.get(employeeRepository::findOptions);
+    }
+
+    /**
+     * Животные для выпадающих списков.
+     */
+    public List<ReferenceOption> animals() {
+        return animals.get(animalRepository::findOptions);
+    }
+
+    /**
+     * Выступления для выпадающих списков.
+     */
+    public List<ReferenceOption> performances() {
+        return performances.get(performanceRepository::findOptions);
+    }
+
+    public void invalidateEmployees() {
+        invalidate(employees);
+    }
+
+    public void invalidateAnimals() {
+        invalidate(animals);
+    }
+
+    public void invalidatePerformances() {
+        invalidate(performances);
+    }
+
+    /**
+     * Текущая версия справочников; меняется при любом изменении сотрудников,
+     * животных или выступлений на этом узле.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Увеличивает версию списка. Внутри транзакции это делается после фиксации,
+     * чтобы параллельное чтение не закэшировало данные до изменения под новой версией.
+     */
+    private void invalidate(Slot slot) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    slot.bump();
+                    version.incrementAndGet();
+                }
+            });
+        } else {
+            slot.bump();
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Снимок списка, загруженный при определённой версии.
+     */
+    private record Snapshot(long version, Instant loadedAt, List<ReferenceOption> options) {
+    }
+
+    /**
+     * Ячейка кэша одного справочника.
+     */
+    private final class Slot {
+
+        private final AtomicLong version = new AtomicLong();
+
+        private final AtomicReference<Snapshot> snapshot = new AtomicReference<>();
+
+        List<ReferenceOption> get(Supplier<List<ReferenceOption>> loader) {
+            // версия читается до загрузки: если список изменится во время запроса,
+            // снимок окажется устаревшим и будет перечитан при следующем обращении
+            long current = version.get();
+            Snapshot cached = snapshot.get();
+            Instant now = Instant.now();
+            if (cached != null && cached.version() == current
+                    && cached.loadedAt().plus(maxAge).isAfter(now)) {
+                return cached.options();
+            }
+            Snapshot loaded = new Snapshot(current, now, List.copyOf(loader.get()));
+            snapshot.accumulateAndGet(loaded, (old, fresh) ->
+                    old != null && old.version() > fresh.version() ? old : fresh);
+            return loaded.options();
+        }
+
+        void bump() {
+            version.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package circus.service;
+
+import circus.repository.PerformanceRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Сверка агрегатов продаж выступлений с таблицей билетов.
+ * <p>
+ * Выручка и количество зрителей хранятся в {@code performances} и обновляются
+ * инкрементально. Задача находит выступления, у которых агрегаты разошлись
+ * с суммой по {@code tickets} (ручные правки в БД, сбои), и пересчитывает их.
+ * </p>
+ *
+ * <p>
+ * Каждое выступление пересчитывается в своей короткой транзакции: сначала строка
+ * блокируется, затем сумма считается заново, поэтому параллельная продажа билета
+ * не теряется. При нескольких узлах задачу выполняет тот, кто взял advisory-блокировку.
+ * </p>
+ */
+@Component
+public class SalesAggregateReconciler {
+
+    /**
+     * Ключ advisory-блокировки задачи сверки.
+     */
+    static final long RECONCILE_LOCK_KEY = 0x43495243_0002L;
+
+    private final PerformanceRepository performanceRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public SalesAggregateReconciler(PerformanceRepository performanceRepository,
+                                    TransactionTemplate transactionTemplate) {
+        this.performanceRepository = performanceRepository;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Заполняет агрегаты после старта (в том числе для данных, созданных до их появления).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        reconcile();
+    }
+
+    /**
+     * Плановая сверка по расписанию.
+     */
+    @Scheduled(cron = "${circus.sales-aggregate.reconcile-cron:0 30 3 * * *}")
+    public void scheduledReconcile() {
+        reconcile();
+    }
+
+    /**
+     * Находит и исправляет расхождения агрегатов.
+     *
+     * @return количество исправленных выступлений
+     */
+    public int reconcile() {
+        List<Long> drifted = transactionTemplate.execute(status ->
+                performanceRepository.tryAdvisoryXactLock(RECONCILE_LOCK_KEY)
+                        ? performanceRepository.findIdsWithSalesDrift()
+                        : List.<Long>of());
+        if (drifted == null) {
+            return 0;
+        }
+        int repaired = 0;
+        for (Long id : drifted) {
+            Integer updated = transactionTemplate.execute(status -> {
+                performanceRepository.lockById(id);
+                return performanceRepository.recalculateSales(id);
+            });
+            if (updated != null) {
+                repaired += updated;
+            }
+        }
+        if (repaired > 0) {
+            System.out.println("Пересчитаны агрегаты продаж выступлений: " + repaired);
+        }
+        return repaired;
+    }
+}
@@ -0,0 +1,190 @@
+package circus.service;
+
+import circus.repository.DailySalesRepository;
+import circus.repository.DailySalesRepository.MonthSales;
+import circus.repository.SalesAnalyticsRepository;
+import circus.repository.SalesAnalyticsRepository.ArtistSales;
+import circus.repository.SalesAnalyticsRepository.PeriodSales;
+import circus.repository.SalesAnalyticsRepository.RankedPerformance;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Аналитика выручки и зрителей.
+ * <p>
+ * Каждый отчёт — один запрос {@link SalesAnalyticsRepository}, сущности не загружаются.
+ * Результаты кэшируются по отчёту и диапазону дат на {@code circus.analytics.cache-ttl},
+ * поэтому повторные запросы панели отчётов не нагружают базу, а новые продажи
+ * попадают в отчёты с задержкой не больше этого срока.
+ * </p>
+ *
+ * <p>
+ * Отчёты по месяцам и сезонам читают сводку {@code daily_sales} и группируют
+ * их по дате продажи, а не по дате выступления.
+ * </p>
+ */
+@Component
+public class SalesAnalyticsService {
+
+    /**
+     * Период группировки продаж.
+     */
+    public enum Period {
+        DAY, WEEK, MONTH;
+
+        /**
+         * @throws IllegalArgumentException если период неизвестен
+         */
+        public static Period of(String name) {
+            try {
+                return valueOf(name.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Неизвестный период: " + name + " (day, week, month)");
+            }
+        }
+    }
+
+    /**
+     * Продажи сезона.
+     *
+     * @param year   год начала сезона
+     * @param from   первый день сезона
+     * @param to     последний день сезона
+     * @param months продажи по месяцам сезона
+     */
+    public record Season(int year, LocalDate from, LocalDate to, List<MonthSales> months,
+                         long tickets, long viewers, long revenue) {
+    }
+
+    private record Key(String report, Object detail, LocalDate from, LocalDate to) {
+    }
+
+    private final SalesAnalyticsRepository salesAnalyticsRepository;
+
+    private final DailySalesRepository dailySalesRepository;
+
+    private final int seasonStartMonth;
+
+    private final Cache<Key, List<?>> results;
+
+    public SalesAnalyticsService(SalesAnalyticsRepository salesAnalyticsRepository,
+                                 DailySalesRepository dailySalesRepository,
+                                 @Value("${circus.season.start-month:9}") int seasonStartMonth,
+                                 @Value("${circus.analytics.cache-size:1000}") long cacheSize,
+                                 @Value("${circus.analytics.cache-ttl:PT5M}") Duration cacheTtl) {
+        if (seasonStartMonth < 1 || seasonStartMonth > 12) {
+            throw new IllegalArgumentException("Месяц начала сезона должен быть от 1 до 12");
+        }
+        this.salesAnalyticsRepository = salesAnalyticsRepository;
+        this.dailySalesRepository = dailySalesRepository;
+        this.seasonStartMonth = seasonStartMonth;
+        this.results = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+
+    /**
+     * Продажи по дням, неделям или месяцам выступлений с накопленными итогами.
+     *
+     * @param from первый день диапазона
+     * @param to   последний день диапазона (включительно)
+     */
+    public List<PeriodSales> salesByPeriod(Period period, LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        return cached(new Key("period", period, from, to), () -> salesAnalyticsRepository.findSalesByPeriod(
+                period.name().toLowerCase(Locale.ROOT), start(from), end(to)));
+    }
+
+    /**
+     * Продажи по главным артистам выступлений.
+     */
+    public List<ArtistSales> salesByArtist(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        return cached(new Key("artist", null, from, to), () -> salesAnalyticsRepository.findSalesByArtist(
+                start(from), end(to)));
+    }
+
+    /**
+     * Первые {@code limit} выступлений каждого месяца по выручке.
+     */
+    public List<RankedPerformance> topPerformances(LocalDate from, LocalDate to, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Размер рейтинга должен быть положительным");
+        }
+        checkRange(from, to);
+        return cached(new Key("top", limit, from, to), () -> salesAnalyticsRepository.findTopPerformancesByMonth(
+                start(from), end(to), limit));
+    }
+
+    /**
+     * Продажи по месяцам продажи из сводки по дням.
+     *
+     * @param from первый день диапазона
+     * @param to   последний день диапазона (включительно)
+     */
+    public List<MonthSales> monthlySales(LocalDate from, LocalDate to) {
+        checkRange(from, to);
+        return cached(new Key("months", null, from, to), () -> dailySalesRepository.findMonthSales(from, to));
+    }
+
+    /**
+     * Продажи сезона, начинающегося в {@code circus.season.start-month} указанного года.
+     */
+    public Season season(int year) {
+        LocalDate from = seasonStart(year);
+        LocalDate to = seasonStart(year + 1).minusDays(1);
+        List<MonthSales> months = monthlySales(from, to);
+        long tickets = 0;
+        long viewers = 0;
+        long revenue = 0;
+        for (MonthSales month : months) {
+            tickets += month.getTickets();
+            viewers += month.getViewers();
+            revenue += month.getRevenue();
+        }
+        return new Season(year, from, to, months, tickets, viewers, revenue);
+    }
+
+    /**
+     * Первый день сезона, начинающегося в указанном году.
+     */
+    public LocalDate seasonStart(int year) {
+        return LocalDate.of(year, seasonStartMonth, 1);
+    }
+
+    /**
+     * Год начала сезона, в который попадает день.
+     */
+    public int seasonOf(LocalDate day) {
+        return day.getMonthValue() >= seasonStartMonth ? day.getYear() : day.getYear() - 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> List<T> cached(Key key, Supplier<List<T>> query) {
+        return (List<T>) results.get(key, k -> List.copyOf(query.get()));
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("Конец диапазона раньше начала");
+        }
+    }
+
+    private static LocalDateTime start(LocalDate from) {
+        return from.atStartOfDay();
+    }
+
+    private static LocalDateTime end(LocalDate to) {
+        return to.plusDays(1).atStartOfDay();
+    }
+}
@@ -0,0 +1,504 @@
+package circus.service;
+
+import circus.model.AnimalAct;
+import circus.model.HumanAct;
+import circus.model.Performance;
+import circus.repository.ScheduleRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Проверка пересечений расписания: сотрудник (главный артист, исполнитель номера,
+ * дрессировщик) или животное не могут участвовать в двух выступлениях,
+ * интервалы {@code [dateTime, dateTime + durationMinutes)} которых пересекаются.
+ * <p>
+ * Для каждого сотрудника и животного в памяти хранится {@link IntervalTree}
+ * выступлений с его участием, поэтому проверка сохранения — несколько поисков
+ * в деревьях за O(log n), без запросов к базе. Индекс загружается при старте тремя
+ * запросами и обновляется при каждом сохранении и удалении выступлений и номеров:
+ * проверка и изменение индекса выполняются атомарно, так что параллельные
+ * сохранения не пропускают конфликт друг друга. Если транзакция затем откатывается,
+ * индекс перечитывается из базы в фоне; он также перечитывается раз в
+ * {@code circus.schedule.reload-interval}, чтобы учесть изменения в обход сервисов.
+ * </p>
+ *
+ * <p>
+ * Запросы перечитывания не видят изменений незафиксированных транзакций и тех, что
+ * зафиксированы уже после запросов. Поэтому каждое изменение индекса записывается
+ * в журнал и хранится в нём, пока не завершится его транзакция и все начатые до
+ * этого перечитывания; перед заменой индекса такие изменения применяются к
+ * прочитанному заново. Изменения идемпотентны (задают состояние выступления или
+ * номера целиком), поэтому повтор уже попавшего в базу изменения ничего не меняет.
+ * </p>
+ *
+ * <p>
+ * Индекс свой у каждого экземпляра приложения: при нескольких экземплярах
+ * одновременные изменения на разных экземплярах видны друг другу только после
+ * перечитывания.
+ * </p>
+ */
+@Component
+public class ScheduleConflictDetector {
+
+    private enum Kind {
+        EMPLOYEE("Сотрудник"),
+        ANIMAL("Животное");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+    }
+
+    private record Resource(Kind kind, long id) {
+
+        @Override
+        public String toString() {
+            return kind.label + " #" + id;
+        }
+    }
+
+    /**
+     * Время выступления в минутах от эпохи.
+     */
+    private record Slot(long start, long end, Long mainArtistId) {
+    }
+
+    /**
+     * Участники номера.
+     */
+    private record Assignment(long performanceId, List<Resource> resources) {
+    }
+
+    /**
+     * Изменение индекса для повтора после перечитывания.
+     * <p>Поля {@code completed} и {@code rolledBack} меняются под {@code lock}.</p>
+     */
+    private static final class Change {
+
+        final Consumer<Index> apply;
+
+        /**
+         * Версия, на которой завершилась транзакция изменения; {@code 0}, пока она идёт.
+         */
+        long completed;
+
+        boolean rolledBack;
+
+        Change(Consumer<Index> apply) {
+            this.apply = apply;
+        }
+    }
+
+    /**
+     * Состояние индекса; заменяется целиком при перечитывании.
+     */
+    private static final class Index {
+
+        final Map<Resource, IntervalTree> trees = new HashMap<>();
+
+        final Map<Long, Slot> slots = new HashMap<>();
+
+        /**
+         * Сколько раз сотрудник или животное заняты в выступлении (главный артист
+         * может быть и исполнителем номера); интервал в дереве один на выступление.
+         */
+        final Map<Long, Map<Resource, Integer>> usage = new HashMap<>();
+
+        final Map<Long, Assignment> humanActs = new HashMap<>();
+
+        final Map<Long, Assignment> animalActs = new HashMap<>();
+
+        /**
+         * @return выступление, пересекающееся по времени со {@code slot}, или {@code -1}
+         */
+        long findConflict(Resource resource, Slot slot, long performanceId) {
+            IntervalTree tree = trees.get(resource);
+            return tree == null ? -1 : tree.findOverlap(slot.start(), slot.end(), performanceId);
+        }
+
+        void setSlot(long performanceId, Slot slot) {
+            Slot old = slots.put(performanceId, slot);
+            for (Resource resource : usage.getOrDefault(performanceId, Map.of()).keySet()) {
+                IntervalTree tree = trees.computeIfAbsent(resource, r -> new IntervalTree());
+                if (old != null) {
+                    tree.remove(old.start(), performanceId);
+                }
+                tree.insert(slot.start(), slot.end(), performanceId);
+            }
+            Long oldArtist = old != null ? old.mainArtistId() : null;
+            if (oldArtist != null && !oldArtist.equals(slot.mainArtistId())) {
+                release(performanceId, new Resource(Kind.EMPLOYEE, oldArtist));
+            }
+            if (slot.mainArtistId() != null && !slot.mainArtistId().equals(oldArtist)) {
+                occupy(performanceId, new Resource(Kind.EMPLOYEE, slot.mainArtistId()));
+            }
+        }
+
+        void removePerformance(long performanceId) {
+            Slot slot = slots.remove(performanceId);
+            Map<Resource, Integer> used = usage.remove(performanceId);
+            if (slot != null && used != null) {
+                for (Resource resource : used.keySet()) {
+                    removeInterval(resource, slot, performanceId);
+                }
+            }
+            humanActs.values().removeIf(act -> act.performanceId() == performanceId);
+            animalActs.values().removeIf(act -> act.performanceId() == performanceId);
+        }
+
+        void putAct(Map<Long, Assignment> acts, long actId, Assignment assignment) {
+            removeAct(acts, actId);
+            acts.put(actId, assignment);
+            for (Resource resource : assignment.resources()) {
+                occupy(assignment.performanceId(), resource);
+            }
+        }
+
+        void removeAct(Map<Long, Assignment> acts, long actId) {
+            Assignment old = acts.remove(actId);
+            if (old != null) {
+                for (Resource resource : old.resources()) {
+                    release(old.performanceId(), resource);
+                }
+            }
+        }
+
+        private void occupy(long performanceId, Resource resource) {
+            int count = usage.computeIfAbsent(performanceId, id -> new HashMap<>()).merge(resource, 1, Integer::sum);
+            Slot slot = slots.get(performanceId);
+            if (count == 1 && slot != null) {
+                trees.computeIfAbsent(resource, r -> new IntervalTree())
+                        .insert(slot.start(), slot.end(), performanceId);
+            }
+        }
+
+        private void release(long performanceId, Resource resource) {
+            Map<Resource, Integer> used = usage.get(performanceId);
+            Integer count = used != null ? used.get(resource) : null;
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                used.put(resource, count - 1);
+                return;
+            }
+            used.remove(resource);
+            Slot slot = slots.get(performanceId);
+            if (slot != null) {
+                removeInterval(resource, slot, performanceId);
+            }
+        }
+
+        private void removeInterval(Resource resource, Slot slot, long performanceId) {
+            IntervalTree tree = trees.get(resource);
+            if (tree != null && tree.remove(slot.start(), performanceId) && tree.size() == 0) {
+                trees.remove(resource);
+            }
+        }
+    }
+
+    private final ScheduleRepository scheduleRepository;
+
+    private final TaskScheduler taskScheduler;
+
+    private final Object lock = new Object();
+
+    private Index index = new Index();
+
+    /**
+     * Журнал изменений в порядке применения (под {@code lock}).
+     */
+    private final List<Change> changes = new ArrayList<>();
+
+    /**
+     * Счётчик событий журнала: начала перечитываний и завершения транзакций.
+     */
+    private long version;
+
+    /**
+     * Версии, на которых начались идущие сейчас перечитывания.
+     */
+    private final List<Long> loads = new ArrayList<>();
+
+    private final AtomicBoolean reloadRequested = new AtomicBoolean();
+
+    public ScheduleConflictDetector(ScheduleRepository scheduleRepository, TaskScheduler taskScheduler) {
+        this.scheduleRepository = scheduleRepository;
+        this.taskScheduler = taskScheduler;
+    }
+
+    /**
+     * Строит индекс по базе. Выполняется при старте и затем периодически.
+     */
+    @PostConstruct
+    @Scheduled(initialDelayString = "${circus.schedule.reload-interval:PT15M}",
+            fixedDelayString = "${circus.schedule.reload-interval:PT15M}")
+    public void reload() {
+        long start;
+        synchronized (lock) {
+            start = ++version;
+            loads.add(start);
+        }
+        try {
+            Index loaded = load();
+            synchronized (lock) {
+                for (Change change : changes) {
+                    if (!change.rolledBack && (change.completed == 0 || change.completed > start)) {
+                        change.apply.accept(loaded);
+                    }
+                }
+                index = loaded;
+            }
+        } finally {
+            synchronized (lock) {
+                loads.remove(Long.valueOf(start));
+                prune();
+            }
+        }
+    }
+
+    private Index load() {
+        Index loaded = new Index();
+        for (ScheduleRepository.Slot slot : scheduleRepository.findAllSlots()) {
+            loaded.setSlot(slot.getId(), slot(slot.getDateTime(), slot.getDurationMinutes(), slot.getMainArtistId()));
+        }
+        for (ScheduleRepository.Assignment act : scheduleRepository.findHumanActAssignments()) {
+            loaded.putAct(loaded.humanActs, act.getId(), assignment(act.getPerformanceId(), act.getEmployeeId(), null));
+        }
+        for (ScheduleRepository.Assignment act : scheduleRepository.findAnimalActAssignments()) {
+            loaded.putAct(loaded.animalActs, act.getId(),
+                    assignment(act.getPerformanceId(), act.getEmployeeId(), act.getAnimalId()));
+        }
+        return loaded;
+    }
+
+    /**
+     * Проверяет и учитывает сохранённое выступление (вызывается в транзакции сохранения).
+     *
+     * @throws ScheduleConflictException если главный артист или участники номеров
+     *                                   выступления заняты в это время в другом
+     */
+    public void placePerformance(Performance performance) {
+        long performanceId = performance.getId();
+        Slot slot = slot(performance.getDateTime(), performance.getDurationMinutes(),
+                performance.getMainArtist() != null ? performance.getMainArtist().getId() : null);
+        Change change;
+        synchronized (lock) {
+            // изменение применяется сразу и отменяется при конфликте: так прежнее время
+            // и прежний главный артист выступления не считаются занятостью
+            Slot old = index.slots.get(performanceId);
+            index.setSlot(performanceId, slot);
+            try {
+                for (Resource resource : index.usage.getOrDefault(performanceId, Map.of()).keySet()) {
+                    checkFree(resource, slot, performanceId);
+                }
+            } catch (ScheduleConflictException e) {
+                if (old != null) {
+                    index.setSlot(performanceId, old);
+                } else {
+                    index.removePerformance(performanceId);
+                }
+                throw e;
+            }
+            change = record(loaded -> loaded.setSlot(performanceId, slot));
+        }
+        track(change);
+    }
+
+    public void removePerformance(Long performanceId) {
+        Change change;
+        synchronized (lock) {
+            index.removePerformance(performanceId);
+            change = record(loaded -> loaded.removePerformance(performanceId));
+        }
+        track(change);
+    }
+
+    /**
+     * Проверяет и учитывает сохранённый номер артистов.
+     *
+     * @throws ScheduleConflictException если исполнитель занят в другом выступлении
+     */
+    public void placeHumanAct(HumanAct act) {
+        placeAct(true, act.getId(), assignment(act.getPerformance().getId(), act.getMainPerformer().getId(), null));
+    }
+
+    /**
+     * Проверяет и учитывает сохранённый номер с животным.
+     *
+     * @throws ScheduleConflictException если дрессировщик или животное заняты в другом выступлении
+     */
+    public void placeAnimalAct(AnimalAct act) {
+        placeAct(false, act.getId(), assignment(act.getPerformance().getId(), act.getAnimalTrainer().getId(),
+                act.getAnimal().getId()));
+    }
+
+    public void removeHumanAct(Long actId) {
+        removeAct(true, actId);
+    }
+
+    public void removeAnimalAct(Long actId) {
+        removeAct(false, actId);
+    }
+
+    /**
+     * Свободен ли сотрудник в интервале {@code [from, to)} (в любой роли).
+     */
+    public boolean isEmployeeFree(long employeeId, LocalDateTime from, LocalDateTime to) {
+        return isFree(new Resource(Kind.EMPLOYEE, employeeId), from, to);
+    }
+
+    /**
+     * Свободно ли животное в интервале {@code [from, to)}.
+     */
+    public boolean isAnimalFree(long animalId, LocalDateTime from, LocalDateTime to) {
+        return isFree(new Resource(Kind.ANIMAL, animalId), from, to);
+    }
+
+    private boolean isFree(Resource resource, LocalDateTime from, LocalDateTime to) {
+        Slot slot = new Slot(minutes(from), minutes(to), null);
+        synchronized (lock) {
+            return index.findConflict(resource, slot, -1) == -1;
+        }
+    }
+
+    private void placeAct(boolean human, long actId, Assignment assignment) {
+        Change change;
+        synchronized (lock) {
+            Map<Long, Assignment> acts = human ? index.humanActs : index.animalActs;
+            Slot slot = index.slots.get(assignment.performanceId());
+            Assignment old = acts.get(actId);
+            index.putAct(acts, actId, assignment);
+            try {
+                for (Resource resource : slot != null ? assignment.resources() : List.<Resource>of()) {
+                    checkFree(resource, slot, assignment.performanceId());
+                }
+            } catch (ScheduleConflictException e) {
+                if (old != null) {
+                    index.putAct(acts, actId, old);
+                } else {
+                    index.removeAct(acts, actId);
+                }
+                throw e;
+            }
+            change = record(loaded -> loaded.putAct(human ? loaded.humanActs : loaded.animalActs, actId, assignment));
+        }
+        track(change);
+    }
+
+    private void removeAct(boolean human, long actId) {
+        Change change;
+        synchronized (lock) {
+            index.removeAct(human ? index.humanActs : index.animalActs, actId);
+            change = record(loaded -> loaded.removeAct(human ? loaded.humanActs : loaded.animalActs, actId));
+        }
+        track(change);
+    }
+
+    private void checkFree(Resource resource, Slot slot, long performanceId) {
+        long conflict = index.findConflict(resource, slot, performanceId);
+        if (conflict != -1) {
+            LocalDateTime start = LocalDateTime.ofEpochSecond(index.slots.get(conflict).start() * 60, 0,
+                    ZoneOffset.UTC);
+            throw new ScheduleConflictException(resource + " уже участвует в выступлении #" + conflict
+                    + ", которое начинается " + start);
+        }
+    }
+
+    /**
+     * Записывает применённое к индексу изменение в журнал (вызывается под {@code lock}).
+     */
+    private Change record(Consumer<Index> apply) {
+        Change change = new Change(apply);
+        changes.add(change);
+        return change;
+    }
+
+    /**
+     * Индекс меняется до фиксации транзакции: изменение остаётся в журнале до её
+     * завершения, а при откате индекс перечитывается из базы в фоне (запросы
+     * из {@code afterCompletion} выполнялись бы на ресурсах завершённой транзакции).
+     */
+    private void track(Change change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            complete(change, true);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                boolean committed = status == STATUS_COMMITTED;
+                complete(change, committed);
+                if (!committed) {
+                    requestReload();
+                }
+            }
+        });
+    }
+
+    private void complete(Change change, boolean committed) {
+        synchronized (lock) {
+            change.completed = ++version;
+            change.rolledBack = !committed;
+            prune();
+        }
+    }
+
+    /**
+     * Убирает из журнала изменения, которые уже видны всем идущим перечитываниям
+     * (вызывается под {@code lock}).
+     */
+    private void prune() {
+        changes.removeIf(change -> change.completed != 0
+                && loads.stream().allMatch(start -> change.completed < start));
+    }
+
+    /**
+     * Планирует перечитывание; запросы, пришедшие до его начала, объединяются.
+     */
+    private void requestReload() {
+        if (reloadRequested.compareAndSet(false, true)) {
+            taskScheduler.schedule(() -> {
+                reloadRequested.set(false);
+                reload();
+            }, Instant.now());
+        }
+    }
+
+    private static Slot slot(LocalDateTime dateTime, Integer durationMinutes, Long mainArtistId) {
+        long start = minutes(dateTime);
+        return new Slot(start, start + (durationMinutes != null ? durationMinutes : 0), mainArtistId);
+    }
+
+    /**
+     * Минуты от эпохи; часовой пояс не важен, так как сравниваются только локальные времена.
+     */
+    static long minutes(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    private static Assignment assignment(Long performanceId, Long employeeId, Long animalId) {
+        List<Resource> resources = new ArrayList<>(2);
+        resources.add(new Resource(Kind.EMPLOYEE, employeeId));
+        if (animalId != null) {
+            resources.add(new Resource(Kind.ANIMAL, animalId));
+        }
+        return new Assignment(performanceId, resources);
+    }
+}
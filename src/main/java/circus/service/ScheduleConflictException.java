@@ -0,0 +1,20 @@
+package circus.service;
+
+import java.io.Serial;
+
+/**
+ * Сотрудник или животное уже заняты в другом выступлении в это время.
+ * <p>
+ * Бросается внутри транзакции сохранения, поэтому изменение не сохраняется;
+ * сообщение показывается пользователю на странице ошибки.
+ * </p>
+ */
+public class ScheduleConflictException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public ScheduleConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,271 @@
+package circus.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Поиск расписания: распределяет выступления по временным слотам так, чтобы
+ * ни один сотрудник, животное или манеж не были заняты дважды одновременно
+ * (с учётом отдыха между выступлениями), а ожидаемая выручка была наибольшей.
+ * <p>
+ * Каждый поток повторяет рандомизированное жадное построение с последующим
+ * улучшением переносами выступлений в более выгодные слоты, пока не истечёт
+ * время; из лучших решений потоков выбирается лучшее. Занятость сотрудников,
+ * животных и манежа внутри решения хранится в {@link IntervalTree}.
+ * </p>
+ *
+ * <p>Допустимость слотов относительно уже существующего расписания проверяется
+ * заранее и передаётся через {@code values}.</p>
+ */
+final class ScheduleSolver {
+
+    /**
+     * Выступление, которое нужно поставить в расписание.
+     *
+     * @param show      номер шаблона (строка {@code values})
+     * @param duration  длительность, минуты
+     * @param employees занятые сотрудники
+     * @param animals   занятые животные
+     */
+    record Item(int show, int duration, long[] employees, long[] animals) {
+    }
+
+    /**
+     * Решение.
+     *
+     * @param slots    слот каждого выступления или {@code -1}, если его не удалось поставить
+     * @param value    суммарная ожидаемая выручка
+     * @param restarts сколько раз решение строилось заново (во всех потоках)
+     */
+    record Solution(int[] slots, long value, int restarts) {
+    }
+
+    private static final int DEADLINE_CHECK_MASK = 255;
+
+    private final long[] slotStarts;
+
+    private final List<Item> items;
+
+    private final long[][] values;
+
+    private final int[][] feasibleSlots;
+
+    private final long employeeRest;
+
+    private final long animalRest;
+
+    /**
+     * @param slotStarts   начала слотов, минуты от эпохи
+     * @param items        выступления
+     * @param values       ожидаемая выручка шаблона в слоте; отрицательная — слот недопустим
+     * @param employeeRest минимальный перерыв сотрудника между выступлениями, минуты
+     * @param animalRest   минимальный перерыв животного между выступлениями, минуты
+     */
+    ScheduleSolver(long[] slotStarts, List<Item> items, long[][] values, long employeeRest, long animalRest) {
+        this.slotStarts = slotStarts;
+        this.items = items;
+        this.values = values;
+        this.employeeRest = employeeRest;
+        this.animalRest = animalRest;
+        this.feasibleSlots = new int[values.length][];
+        for (int show = 0; show < values.length; show++) {
+            long[] showValues = values[show];
+            feasibleSlots[show] = IntStream.range(0, slotStarts.length)
+                    .filter(slot -> showValues[slot] >= 0)
+                    .toArray();
+        }
+    }
+
+    /**
+     * Ищет расписание в {@code workers} потоках до {@code deadline} ({@link System#nanoTime()}).
+     */
+    Solution solve(ForkJoinPool pool, int workers, long deadline, long seed) {
+        List<Callable<Solution>> tasks = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            long workerSeed = seed + i;
+            tasks.add(() -> new Worker(workerSeed).run(deadline));
+        }
+        Solution best = null;
+        int restarts = 0;
+        try {
+            for (Future<Solution> future : pool.invokeAll(tasks)) {
+                Solution solution = future.get();
+                restarts += solution.restarts();
+                if (best == null || solution.value() > best.value()) {
+                    best = solution;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Поиск расписания прерван", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ошибка поиска расписания: " + e.getCause().getMessage(), e.getCause());
+        }
+        return new Solution(best.slots(), best.value(), restarts);
+    }
+
+    /**
+     * Состояние одного потока поиска.
+     */
+    private final class Worker {
+
+        private final SplittableRandom random;
+
+        private final int[] slotOf = new int[items.size()];
+
+        private IntervalTree arena;
+
+        private Map<Long, IntervalTree> employeeTrees;
+
+        private Map<Long, IntervalTree> animalTrees;
+
+        private long value;
+
+        Worker(long seed) {
+            this.random = new SplittableRandom(seed);
+        }
+
+        Solution run(long deadline) {
+            int[] best = null;
+            long bestValue = -1;
+            int restarts = 0;
+            do {
+                construct();
+                improve(deadline);
+                restarts++;
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = slotOf.clone();
+                }
+            } while (System.nanoTime() < deadline);
+            return new Solution(best, bestValue, restarts);
+        }
+
+        /**
+         * Жадно ставит выступления в порядке убывания их лучшей выручки (со случайным
+         * разбросом) в самый выгодный из свободных слотов (тоже с разбросом).
+         */
+        private void construct() {
+            arena = new IntervalTree();
+            employeeTrees = new HashMap<>();
+            animalTrees = new HashMap<>();
+            value = 0;
+            Arrays.fill(slotOf, -1);
+            Integer[] order = new Integer[items.size()];
+            double[] priority = new double[items.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+                long best = 0;
+                for (int slot : feasibleSlots[items.get(i).show()]) {
+                    best = Math.max(best, values[items.get(i).show()][slot]);
+                }
+                priority[i] = best * (0.75 + 0.5 * random.nextDouble());
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(priority[b], priority[a]));
+            for (int i : order) {
+                int show = items.get(i).show();
+                int chosen = -1;
+                double chosenScore = -1;
+                for (int slot : feasibleSlots[show]) {
+                    double score = values[show][slot] * (0.9 + 0.2 * random.nextDouble());
+                    if (score > chosenScore && fits(i, slot)) {
+                        chosen = slot;
+                        chosenScore = score;
+                    }
+                }
+                if (chosen >= 0) {
+                    place(i, chosen);
+                }
+            }
+        }
+
+        /**
+         * Переносит случайные выступления в случайные более выгодные свободные слоты
+         * и пробует поставить непоставленные.
+         */
+        private void improve(long deadline) {
+            int attempts = items.size() * 20;
+            for (int attempt = 0; attempt < attempts; attempt++) {
+                if ((attempt & DEADLINE_CHECK_MASK) == 0 && System.nanoTime() >= deadline) {
+                    return;
+                }
+                int i = random.nextInt(items.size());
+                int[] slots = feasibleSlots[items.get(i).show()];
+                if (slots.length == 0) {
+                    continue;
+                }
+                int slot = slots[random.nextInt(slots.length)];
+                int current = slotOf[i];
+                if (current < 0) {
+                    if (fits(i, slot)) {
+                        place(i, slot);
+                    }
+                } else if (values[items.get(i).show()][slot] > values[items.get(i).show()][current]) {
+                    unplace(i);
+                    place(i, fits(i, slot) ? slot : current);
+                }
+            }
+        }
+
+        private boolean fits(int i, int slot) {
+            Item item = items.get(i);
+            long start = slotStarts[slot];
+            long end = start + item.duration();
+            if (arena.findOverlap(start, end, i) != -1) {
+                return false;
+            }
+            for (long employee : item.employees()) {
+                IntervalTree tree = employeeTrees.get(employee);
+                if (tree != null && tree.findOverlap(start - employeeRest, end + employeeRest, i) != -1) {
+                    return false;
+                }
+            }
+            for (long animal : item.animals()) {
+                IntervalTree tree = animalTrees.get(animal);
+                if (tree != null && tree.findOverlap(start - animalRest, end + animalRest, i) != -1) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void place(int i, int slot) {
+            Item item = items.get(i);
+            long start = slotStarts[slot];
+            long end = start + item.duration();
+            arena.insert(start, end, i);
+            for (long employee : item.employees()) {
+                employeeTrees.computeIfAbsent(employee, id -> new IntervalTree()).insert(start, end, i);
+            }
+            for (long animal : item.animals()) {
+                animalTrees.computeIfAbsent(animal, id -> new IntervalTree()).insert(start, end, i);
+            }
+            slotOf[i] = slot;
+            value += values[item.show()][slot];
+        }
+
+        private void unplace(int i) {
+            Item item = items.get(i);
+            int slot = slotOf[i];
+            long start = slotStarts[slot];
+            arena.remove(start, i);
+            for (long employee : item.employees()) {
+                employeeTrees.get(employee).remove(start, i);
+            }
+            for (long animal : item.animals()) {
+                animalTrees.get(animal).remove(start, i);
+            }
+            slotOf[i] = -1;
+            value -= values[item.show()][slot];
+        }
+    }
+}
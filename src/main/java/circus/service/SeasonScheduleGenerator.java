@@ -0,0 +1,483 @@
+package circus.service;
+
+import circus.model.AnimalAct;
+import circus.model.HumanAct;
+import circus.model.Performance;
+import circus.repository.AnimalRepository;
+import circus.repository.EmployeeRepository;
+import circus.repository.ScheduleRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Автоматическое составление расписания сезона.
+ * <p>
+ * Шаблоны выступлений (главный артист, номера, длительность, сколько раз показать)
+ * распределяются по слотам — дням диапазона и заданному времени начала. Слот
+ * недопустим для шаблона, если его участник занят в уже существующем выступлении
+ * или отсутствует, а также если в это время на манеже идёт другое выступление.
+ * Между выступлениями одного сотрудника и одного животного выдерживается отдых
+ * ({@code employeeRest}, {@code animalRest}): так, животное не выходит в двух
+ * выступлениях подряд.
+ * </p>
+ *
+ * <p>
+ * Ожидаемая выручка выступления — средняя выручка прошедших выступлений его
+ * главного артиста, умноженная на отношение средней выручки в этот день недели
+ * и час к общей средней. Поиск ({@link ScheduleSolver}) идёт во всех потоках
+ * {@code circus.schedule-solver.parallelism} в пределах отведённого времени.
+ * Результат сохраняется одной транзакцией пакетными вставками; без {@code persist}
+ * расписание только возвращается для просмотра.
+ * </p>
+ */
+@Component
+public class SeasonScheduleGenerator {
+
+    /**
+     * Номер артистов шаблона.
+     */
+    public record HumanActSpec(String type, Long performerId) {
+    }
+
+    /**
+     * Номер с животным шаблона.
+     */
+    public record AnimalActSpec(Long animalId, Long trainerId) {
+    }
+
+    /**
+     * Шаблон выступления.
+     *
+     * @param count сколько раз показать за сезон
+     */
+    public record Show(String name, String description, Long mainArtistId, int durationMinutes,
+                       Integer capacity, int count, List<HumanActSpec> humanActs,
+                       List<AnimalActSpec> animalActs) {
+    }
+
+    /**
+     * Отсутствие сотрудника или животного (указывается одно из двух) в дни {@code from}–{@code to}.
+     */
+    public record Absence(Long employeeId, Long animalId, LocalDate from, LocalDate to) {
+    }
+
+    /**
+     * Задание на составление расписания; необязательные поля берутся из настроек.
+     *
+     * @param startTimes время начала выступлений в течение дня
+     * @param daysOff    выходные дни недели
+     * @param timeBudget время на поиск (не больше {@code circus.schedule-solver.max-time-budget})
+     * @param persist    сохранить найденное расписание
+     */
+    public record Request(LocalDate from, LocalDate to, List<LocalTime> startTimes, Set<DayOfWeek> daysOff,
+                          List<Show> shows, List<Absence> absences, Duration employeeRest,
+                          Duration animalRest, Duration timeBudget, boolean persist) {
+    }
+
+    /**
+     * Выступление расписания.
+     *
+     * @param performanceId идентификатор сохранённого выступления; {@code null} без сохранения
+     */
+    public record Planned(String name, LocalDateTime dateTime, int durationMinutes, long expectedRevenue,
+                          Long performanceId) {
+    }
+
+    /**
+     * Результат.
+     *
+     * @param unscheduled сколько выступлений не удалось поставить
+     * @param restarts    сколько вариантов расписания построено при поиске
+     */
+    public record Result(List<Planned> scheduled, int unscheduled, long expectedRevenue, int restarts,
+                         boolean persisted) {
+    }
+
+    /**
+     * Наибольшая длина сезона в днях.
+     */
+    static final int MAX_DAYS = 366;
+
+    /**
+     * Наибольшее количество времён начала в день и шаблонов выступлений: вместе
+     * с длиной сезона они ограничивают размер таблицы выручки (шаблоны × слоты).
+     */
+    static final int MAX_START_TIMES = 24;
+
+    static final int MAX_SHOWS = 100;
+
+    static final int MAX_ABSENCES = 1000;
+
+    private final ScheduleRepository scheduleRepository;
+
+    private final EmployeeRepository employeeRepository;
+
+    private final AnimalRepository animalRepository;
+
+    private final ScheduleConflictDetector scheduleConflicts;
+
+    private final PerformanceService performanceService;
+
+    private final ForkJoinPool pool;
+
+    private final int parallelism;
+
+    private final Duration defaultTimeBudget;
+
+    private final Duration maxTimeBudget;
+
+    private final Duration defaultEmployeeRest;
+
+    private final Duration defaultAnimalRest;
+
+    public SeasonScheduleGenerator(ScheduleRepository scheduleRepository,
+                                   EmployeeRepository employeeRepository,
+                                   AnimalRepository animalRepository,
+                                   ScheduleConflictDetector scheduleConflicts,
+                                   PerformanceService performanceService,
+                                   @Value("${circus.schedule-solver.parallelism:0}") int parallelism,
+                                   @Value("${circus.schedule-solver.time-budget:PT5S}") Duration defaultTimeBudget,
+                                   @Value("${circus.schedule-solver.max-time-budget:PT60S}") Duration maxTimeBudget,
+                                   @Value("${circus.schedule-solver.employee-rest:PT0M}") Duration defaultEmployeeRest,
+                                   @Value("${circus.schedule-solver.animal-rest:PT3H}") Duration defaultAnimalRest) {
+        this.scheduleRepository = scheduleRepository;
+        this.employeeRepository = employeeRepository;
+        this.animalRepository = animalRepository;
+        this.scheduleConflicts = scheduleConflicts;
+        this.performanceService = performanceService;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.pool = new ForkJoinPool(this.parallelism);
+        this.defaultTimeBudget = defaultTimeBudget;
+        this.maxTimeBudget = maxTimeBudget;
+        this.defaultEmployeeRest = defaultEmployeeRest;
+        this.defaultAnimalRest = defaultAnimalRest;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Составляет расписание и при {@link Request#persist()} сохраняет его.
+     *
+     * @throws IllegalArgumentException если задание некорректно
+     * @throws ScheduleConflictException если за время поиска расписание изменилось
+     *                                   и сохранить результат нельзя
+     */
+    public Result generate(Request request) {
+        List<Show> shows = validate(request);
+        Duration employeeRest = request.employeeRest() != null ? request.employeeRest() : defaultEmployeeRest;
+        Duration animalRest = request.animalRest() != null ? request.animalRest() : defaultAnimalRest;
+        Duration budget = request.timeBudget() != null ? request.timeBudget() : defaultTimeBudget;
+        if (budget.compareTo(maxTimeBudget) > 0) {
+            budget = maxTimeBudget;
+        }
+        long deadline = System.nanoTime() + budget.toNanos();
+
+        List<LocalDateTime> slots = slots(request);
+        for (Show show : shows) {
+            if (show.count() > slots.size()) {
+                throw new IllegalArgumentException("Выступление " + show.name() + " нельзя показать "
+                        + show.count() + " раз: в сезоне " + slots.size() + " слотов");
+            }
+        }
+        long[] slotStarts = slots.stream().mapToLong(ScheduleConflictDetector::minutes).toArray();
+        long[][] values = values(request, shows, slots, employeeRest, animalRest);
+
+        List<ScheduleSolver.Item> items = new ArrayList<>();
+        for (int show = 0; show < shows.size(); show++) {
+            Show template = shows.get(show);
+            Set<Long> employees = employees(template);
+            Set<Long> animals = animals(template);
+            ScheduleSolver.Item item = new ScheduleSolver.Item(show, template.durationMinutes(),
+                    employees.stream().mapToLong(Long::longValue).toArray(),
+                    animals.stream().mapToLong(Long::longValue).toArray());
+            for (int copy = 0; copy < template.count(); copy++) {
+                items.add(item);
+            }
+        }
+
+        ScheduleSolver.Solution solution = new ScheduleSolver(slotStarts, items, values,
+                employeeRest.toMinutes(), animalRest.toMinutes())
+                .solve(pool, parallelism, deadline, System.nanoTime());
+
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < items.size(); i++) {
+            if (solution.slots()[i] >= 0) {
+                order.add(i);
+            }
+        }
+        order.sort((a, b) -> Integer.compare(solution.slots()[a], solution.slots()[b]));
+        List<Performance> performances = new ArrayList<>(order.size());
+        List<HumanAct> humanActs = new ArrayList<>();
+        List<AnimalAct> animalActs = new ArrayList<>();
+        for (int i : order) {
+            Show template = shows.get(items.get(i).show());
+            Performance performance = performance(template, slots.get(solution.slots()[i]));
+            performances.add(performance);
+            if (request.persist()) {
+                addActs(template, performance, humanActs, animalActs);
+            }
+        }
+        if (request.persist()) {
+            performanceService.saveSchedule(performances, humanActs, animalActs);
+            System.out.println("Расписание сезона сохранено: выступлений " + performances.size()
+                    + ", ожидаемая выручка " + solution.value());
+        }
+        List<Planned> planned = new ArrayList<>(order.size());
+        for (int k = 0; k < order.size(); k++) {
+            int i = order.get(k);
+            Performance performance = performances.get(k);
+            planned.add(new Planned(performance.getName(), performance.getDateTime(),
+                    performance.getDurationMinutes(), values[items.get(i).show()][solution.slots()[i]],
+                    performance.getId()));
+        }
+        return new Result(planned, items.size() - order.size(), solution.value(), solution.restarts(),
+                request.persist());
+    }
+
+    private List<Show> validate(Request request) {
+        if (request.from() == null || request.to() == null || request.to().isBefore(request.from())) {
+            throw new IllegalArgumentException("Укажите диапазон дат сезона");
+        }
+        if (request.from().isBefore(LocalDate.now())) {
+            throw new IllegalArgumentException("Сезон не может начинаться в прошлом");
+        }
+        if (ChronoUnit.DAYS.between(request.from(), request.to()) >= MAX_DAYS) {
+            throw new IllegalArgumentException("Сезон не может быть длиннее " + MAX_DAYS + " дней");
+        }
+        if (request.startTimes() == null || request.startTimes().isEmpty()
+                || request.startTimes().stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Укажите время начала выступлений");
+        }
+        if (request.startTimes().stream().distinct().count() > MAX_START_TIMES) {
+            throw new IllegalArgumentException("Не больше " + MAX_START_TIMES + " времён начала в день");
+        }
+        if (request.shows() == null || request.shows().isEmpty() || request.shows().stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Укажите выступления для расписания");
+        }
+        if (request.shows().size() > MAX_SHOWS) {
+            throw new IllegalArgumentException("Не больше " + MAX_SHOWS + " выступлений в задании");
+        }
+        if ((request.employeeRest() != null && request.employeeRest().isNegative())
+                || (request.animalRest() != null && request.animalRest().isNegative())) {
+            throw new IllegalArgumentException("Отдых между выступлениями не может быть отрицательным");
+        }
+        if (request.absences() != null) {
+            if (request.absences().size() > MAX_ABSENCES) {
+                throw new IllegalArgumentException("Не больше " + MAX_ABSENCES + " отсутствий в задании");
+            }
+            for (Absence absence : request.absences()) {
+                if (absence == null || absence.from() == null || absence.to() == null
+                        || (absence.employeeId() == null) == (absence.animalId() == null)) {
+                    throw new IllegalArgumentException(
+                            "У отсутствия должны быть даты и либо сотрудник, либо животное");
+                }
+            }
+        }
+        Set<Long> employees = new HashSet<>();
+        Set<Long> animals = new HashSet<>();
+        for (Show show : request.shows()) {
+            if (show.name() == null || show.name().isBlank() || show.mainArtistId() == null) {
+                throw new IllegalArgumentException("У выступления должны быть название и главный артист");
+            }
+            if (show.durationMinutes() < 1 || show.count() < 0) {
+                throw new IllegalArgumentException("Некорректная длительность или количество выступления "
+                        + show.name());
+            }
+            // без участника номер нельзя сохранить, а при поиске его занятость не учитывалась бы
+            if (show.humanActs() != null && show.humanActs().stream()
+                    .anyMatch(act -> act == null || act.performerId() == null)) {
+                throw new IllegalArgumentException("У номера артистов выступления " + show.name()
+                        + " не указан исполнитель");
+            }
+            if (show.animalActs() != null && show.animalActs().stream()
+                    .anyMatch(act -> act == null || act.animalId() == null || act.trainerId() == null)) {
+                throw new IllegalArgumentException("У номера с животным выступления " + show.name()
+                        + " не указаны животное или дрессировщик");
+            }
+            employees.addAll(employees(show));
+            animals.addAll(animals(show));
+        }
+        if (employeeRepository.findAllById(employees).size() != employees.size()) {
+            throw new IllegalArgumentException("В задании есть несуществующие сотрудники");
+        }
+        if (animalRepository.findAllById(animals).size() != animals.size()) {
+            throw new IllegalArgumentException("В задании есть несуществующие животные");
+        }
+        return request.shows();
+    }
+
+    private static List<LocalDateTime> slots(Request request) {
+        Set<DayOfWeek> daysOff = request.daysOff() != null ? request.daysOff() : Set.of();
+        List<LocalTime> times = request.startTimes().stream().distinct().sorted().toList();
+        List<LocalDateTime> slots = new ArrayList<>();
+        for (LocalDate day = request.from(); !day.isAfter(request.to()); day = day.plusDays(1)) {
+            if (!daysOff.contains(day.getDayOfWeek())) {
+                for (LocalTime time : times) {
+                    slots.add(day.atTime(time));
+                }
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Ожидаемая выручка каждого шаблона в каждом слоте; {@code -1}, если слот недопустим
+     * из-за существующего расписания или отсутствия участника.
+     */
+    private long[][] values(Request request, List<Show> shows, List<LocalDateTime> slots,
+                            Duration employeeRest, Duration animalRest) {
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, Long> artistRevenue = new HashMap<>();
+        for (ScheduleRepository.ArtistRevenue row : scheduleRepository.findRevenueByMainArtist(now)) {
+            artistRevenue.put(row.getMainArtistId(), row.getRevenue());
+        }
+        Map<Integer, Long> slotRevenue = new HashMap<>();
+        long total = 0;
+        long count = 0;
+        for (ScheduleRepository.SlotRevenue row : scheduleRepository.findRevenueBySlot(now)) {
+            slotRevenue.put(row.getDayOfWeek() * 24 + row.getHour(), row.getRevenue());
+            total += row.getRevenue() * row.getPerformances();
+            count += row.getPerformances();
+        }
+        double average = count > 0 ? (double) total / count : 0;
+
+        // занятость манежа существующими выступлениями
+        IntervalTree arena = new IntervalTree();
+        LocalDateTime first = slots.isEmpty() ? now : slots.get(0);
+        LocalDateTime last = slots.isEmpty() ? now : slots.get(slots.size() - 1);
+        for (ScheduleRepository.Slot slot : scheduleRepository.findSlotsBetween(first.minusDays(1), last.plusDays(1))) {
+            long start = ScheduleConflictDetector.minutes(slot.getDateTime());
+            arena.insert(start, start + slot.getDurationMinutes(), slot.getId());
+        }
+
+        List<Absence> absences = request.absences() != null ? request.absences() : List.of();
+        long[][] values = new long[shows.size()][slots.size()];
+        for (int show = 0; show < shows.size(); show++) {
+            Show template = shows.get(show);
+            Set<Long> employees = employees(template);
+            Set<Long> animals = animals(template);
+            double base = artistRevenue.getOrDefault(template.mainArtistId(), Math.round(average));
+            for (int s = 0; s < slots.size(); s++) {
+                LocalDateTime start = slots.get(s);
+                LocalDateTime end = start.plusMinutes(template.durationMinutes());
+                if (!available(start, end, employees, animals, absences, arena, employeeRest, animalRest)) {
+                    values[show][s] = -1;
+                    continue;
+                }
+                Long atSlot = slotRevenue.get(start.getDayOfWeek().getValue() * 24 + start.getHour());
+                double factor = atSlot != null && average > 0 ? atSlot / average : 1;
+                // без истории продаж все слоты равноценны, и поиск ставит как можно больше выступлений
+                values[show][s] = Math.max(1, Math.round(base * factor));
+            }
+        }
+        return values;
+    }
+
+    private boolean available(LocalDateTime start, LocalDateTime end, Set<Long> employees, Set<Long> animals,
+                              List<Absence> absences, IntervalTree arena,
+                              Duration employeeRest, Duration animalRest) {
+        if (arena.findOverlap(ScheduleConflictDetector.minutes(start), ScheduleConflictDetector.minutes(end), -1) != -1) {
+            return false;
+        }
+        for (Absence absence : absences) {
+            boolean involved = absence.employeeId() != null ? employees.contains(absence.employeeId())
+                    : animals.contains(absence.animalId());
+            if (involved && !start.toLocalDate().isBefore(absence.from())
+                    && !start.toLocalDate().isAfter(absence.to())) {
+                return false;
+            }
+        }
+        for (Long employee : employees) {
+            if (!scheduleConflicts.isEmployeeFree(employee, start.minus(employeeRest), end.plus(employeeRest))) {
+                return false;
+            }
+        }
+        for (Long animal : animals) {
+            if (!scheduleConflicts.isAnimalFree(animal, start.minus(animalRest), end.plus(animalRest))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Set<Long> employees(Show show) {
+        Set<Long> employees = new LinkedHashSet<>();
+        employees.add(show.mainArtistId());
+        if (show.humanActs() != null) {
+            for (HumanActSpec act : show.humanActs()) {
+                employees.add(act.performerId());
+            }
+        }
+        if (show.animalActs() != null) {
+            for (AnimalActSpec act : show.animalActs()) {
+                employees.add(act.trainerId());
+            }
+        }
+        employees.remove(null);
+        return employees;
+    }
+
+    private static Set<Long> animals(Show show) {
+        Set<Long> animals = new LinkedHashSet<>();
+        if (show.animalActs() != null) {
+            for (AnimalActSpec act : show.animalActs()) {
+                animals.add(act.animalId());
+            }
+        }
+        animals.remove(null);
+        return animals;
+    }
+
+    private Performance performance(Show template, LocalDateTime dateTime) {
+        Performance performance = new Performance();
+        performance.setName(template.name());
+        performance.setDescription(template.description() != null ? template.description() : "");
+        performance.setDateTime(dateTime);
+        performance.setDurationMinutes(template.durationMinutes());
+        performance.setCapacity(template.capacity());
+        performance.setMainArtist(employeeRepository.getReferenceById(template.mainArtistId()));
+        return performance;
+    }
+
+    private void addActs(Show template, Performance performance, List<HumanAct> humanActs,
+                         List<AnimalAct> animalActs) {
+        if (template.humanActs() != null) {
+            for (HumanActSpec spec : template.humanActs()) {
+                HumanAct act = new HumanAct();
+                act.setType(spec.type());
+                act.setMainPerformer(employeeRepository.getReferenceById(spec.performerId()));
+                act.setPerformance(performance);
+                humanActs.add(act);
+            }
+        }
+        if (template.animalActs() != null) {
+            for (AnimalActSpec spec : template.animalActs()) {
+                AnimalAct act = new AnimalAct();
+                act.setAnimal(animalRepository.getReferenceById(spec.animalId()));
+                act.setAnimalTrainer(employeeRepository.getReferenceById(spec.trainerId()));
+                act.setPerformance(performance);
+                animalActs.add(act);
+            }
+        }
+    }
+}
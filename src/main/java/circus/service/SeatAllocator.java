@@ -0,0 +1,209 @@
+package circus.service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.stream.IntStream;
+
+/**
+ * Схема зала выступления и занятость мест в виде битовой карты.
+ * <p>
+ * Каждый ряд — одно слово {@code long}: бит {@code s} установлен, если место {@code s}
+ * (с нуля) занято, поэтому в ряду не больше 64 мест. Начала свободных блоков из
+ * {@code n} мест находятся за {@code n} сдвигов и операций «и» над словом ряда,
+ * а весь поиск лучшего блока занимает микросекунды даже для больших залов.
+ * </p>
+ *
+ * <p>
+ * В базе занятость хранится теми же байтами: слова рядов подряд в порядке
+ * little-endian, так что место {@code s} ряда {@code r} — это бит {@code r * 64 + s}
+ * в нумерации {@code get_bit}/{@code set_bit} PostgreSQL.
+ * </p>
+ *
+ * <p>Класс не потокобезопасен: вызывающий код синхронизирует доступ сам.</p>
+ */
+final class SeatAllocator {
+
+    static final int MAX_SEATS_PER_ROW = Long.SIZE;
+
+    /**
+     * Наибольшее число рядов: карта занятости и цены рядов создаются целиком в памяти.
+     */
+    static final int MAX_ROWS = 1000;
+
+    private final int seatsPerRow;
+
+    private final long[] rowPrices;
+
+    /**
+     * Ряды в порядке предпочтения: дороже, затем ближе к манежу.
+     */
+    private final int[] rowOrder;
+
+    private final long[] occupied;
+
+    /**
+     * @param seatsPerRow количество мест в ряду (не больше 64)
+     * @param rowPrices   цена места в каждом ряду (по зонам)
+     * @param occupancy   сохранённая битовая карта или {@code null} для пустого зала
+     */
+    SeatAllocator(int seatsPerRow, long[] rowPrices, byte[] occupancy) {
+        if (seatsPerRow < 1 || seatsPerRow > MAX_SEATS_PER_ROW) {
+            throw new IllegalArgumentException("В ряду должно быть от 1 до " + MAX_SEATS_PER_ROW + " мест");
+        }
+        this.seatsPerRow = seatsPerRow;
+        this.rowPrices = rowPrices.clone();
+        this.occupied = new long[rowPrices.length];
+        if (occupancy != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(occupancy).order(ByteOrder.LITTLE_ENDIAN);
+            for (int row = 0; row < occupied.length && buffer.remaining() >= Long.BYTES; row++) {
+                occupied[row] = buffer.getLong();
+            }
+        }
+        this.rowOrder = IntStream.range(0, rowPrices.length).boxed()
+                .sorted((a, b) -> rowPrices[a] != rowPrices[b]
+                        ? Long.compare(rowPrices[b], rowPrices[a])
+                        : Integer.compare(a, b))
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    int rows() {
+        return occupied.length;
+    }
+
+    int seatsPerRow() {
+        return seatsPerRow;
+    }
+
+    long price(int row) {
+        return row >= 1 && row <= rowPrices.length ? rowPrices[row - 1] : 0;
+    }
+
+    /**
+     * Разбирает ценовые зоны вида {@code 1-3:1500;4-10:900} (диапазон рядов и цена места).
+     * Ряды, не попавшие ни в одну зону, получают цену 0.
+     *
+     * @param zones описание зон
+     * @param rows  количество рядов
+     * @return цена места по рядам
+     * @throws IllegalArgumentException если описание не разбирается или выходит за зал
+     */
+    static long[] parseZones(String zones, int rows) {
+        long[] prices = new long[rows];
+        if (zones == null || zones.isBlank()) {
+            return prices;
+        }
+        for (String zone : zones.split(";")) {
+            try {
+                String[] parts = zone.trim().split(":");
+                String[] range = parts[0].split("-");
+                int from = Integer.parseInt(range[0].trim());
+                int to = range.length > 1 ? Integer.parseInt(range[1].trim()) : from;
+                long price = Long.parseLong(parts[1].trim());
+                if (parts.length != 2 || from < 1 || to > rows || from > to || price < 0) {
+                    throw new IllegalArgumentException();
+                }
+                for (int row = from; row <= to; row++) {
+                    prices[row - 1] = price;
+                }
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Неверная ценовая зона: " + zone.trim());
+            }
+        }
+        return prices;
+    }
+
+    /**
+     * Лучший свободный блок из {@code count} мест подряд: в самом дорогом ряду
+     * (при равной цене — в ближайшем к манежу), как можно ближе к центру ряда.
+     *
+     * @return блок или {@code null}, если такого блока нет
+     */
+    SeatBlock findBest(int count) {
+        if (count < 1 || count > seatsPerRow) {
+            return null;
+        }
+        for (int row : rowOrder) {
+            long starts = blockStarts(row, count);
+            if (starts == 0) {
+                continue;
+            }
+            int best = -1;
+            int bestDistance = Integer.MAX_VALUE;
+            while (starts != 0) {
+                int start = Long.numberOfTrailingZeros(starts);
+                // удвоенное расстояние от центра блока до центра ряда
+                int distance = Math.abs(2 * start + count - seatsPerRow);
+                if (distance < bestDistance) {
+                    best = start;
+                    bestDistance = distance;
+                }
+                starts &= starts - 1;
+            }
+            return new SeatBlock(row + 1, best + 1, count, rowPrices[row]);
+        }
+        return null;
+    }
+
+    /**
+     * Отмечает места занятыми, если все они свободны.
+     *
+     * @param row       ряд (с единицы)
+     * @param firstSeat первое место (с единицы)
+     * @return {@code false}, если блок выходит за ряд или хотя бы одно место занято
+     */
+    boolean occupy(int row, int firstSeat, int count) {
+        long mask = mask(row, firstSeat, count);
+        if (mask == 0 || (occupied[row - 1] & mask) != 0) {
+            return false;
+        }
+        occupied[row - 1] |= mask;
+        return true;
+    }
+
+    void free(int row, int firstSeat, int count) {
+        long mask = mask(row, firstSeat, count);
+        if (mask != 0) {
+            occupied[row - 1] &= ~mask;
+        }
+    }
+
+    /**
+     * Номер бита места в битовой карте (для {@code get_bit}/{@code set_bit}).
+     */
+    static int bitIndex(int row, int seat) {
+        return (row - 1) * MAX_SEATS_PER_ROW + seat - 1;
+    }
+
+    /**
+     * Пустая битовая карта зала из {@code rows} рядов.
+     */
+    static byte[] emptyOccupancy(int rows) {
+        return new byte[rows * Long.BYTES];
+    }
+
+    /**
+     * Биты, с которых начинается свободный блок из {@code count} мест ряда.
+     */
+    private long blockStarts(int row, int count) {
+        long free = ~occupied[row] & rowMask();
+        long starts = free;
+        for (int i = 1; i < count && starts != 0; i++) {
+            starts &= free >>> i;
+        }
+        return starts;
+    }
+
+    private long mask(int row, int firstSeat, int count) {
+        if (row < 1 || row > occupied.length || firstSeat < 1 || count < 1
+                || firstSeat - 1 + count > seatsPerRow) {
+            return 0;
+        }
+        long block = count == Long.SIZE ? -1L : (1L << count) - 1;
+        return block << (firstSeat - 1);
+    }
+
+    private long rowMask() {
+        return seatsPerRow == Long.SIZE ? -1L : (1L << seatsPerRow) - 1;
+    }
+}
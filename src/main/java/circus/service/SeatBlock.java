@@ -0,0 +1,16 @@
+package circus.service;
+
+/**
+ * Блок мест подряд в одном ряду (номера рядов и мест — с единицы).
+ *
+ * @param row       ряд
+ * @param firstSeat первое место блока
+ * @param count     количество мест
+ * @param price     цена одного места в зоне ряда
+ */
+public record SeatBlock(int row, int firstSeat, int count, long price) {
+
+    public int lastSeat() {
+        return firstSeat + count - 1;
+    }
+}
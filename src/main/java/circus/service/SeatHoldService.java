@@ -0,0 +1,167 @@
+package circus.service;
+
+import circus.model.Performance;
+import circus.repository.PerformanceRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Временное удержание мест на выступление между выбором мест и оплатой.
+ * <p>
+ * Удержанные места уменьшают количество свободных мест для остальных покупателей
+ * и освобождаются автоматически через {@code circus.seat-hold.ttl}. Сроки хранятся
+ * в иерархическом колесе таймеров ({@link TimingWheel}): добавление, отмена и
+ * истечение удержания выполняются за O(1), а фоновая задача раз в такт снимает
+ * только истёкшие удержания, без опроса базы и без отдельной задачи на каждое.
+ * </p>
+ *
+ * <p>Удержания хранятся в памяти узла, как и остатки горячей продажи.</p>
+ */
+@Component
+public class SeatHoldService {
+
+    /**
+     * Удержание мест.
+     *
+     * @param token         идентификатор удержания, передаётся вместе с покупкой
+     * @param performanceId выступление
+     * @param seats         количество мест
+     * @param expiresAt     момент освобождения мест
+     */
+    public record Hold(String token, Long performanceId, int seats, Instant expiresAt) {
+    }
+
+    private final PerformanceRepository performanceRepository;
+
+    private final Duration ttl;
+
+    private final TimingWheel<Hold> wheel;
+
+    private final Map<String, TimingWheel.Timeout<Hold>> holds = new HashMap<>();
+
+    /**
+     * Сумма удержанных мест по выступлениям.
+     */
+    private final Map<Long, Long> heldSeats = new HashMap<>();
+
+    public SeatHoldService(PerformanceRepository performanceRepository,
+                           @Value("${circus.seat-hold.ttl:PT5M}") Duration ttl,
+                           @Value("${circus.seat-hold.tick:PT1S}") Duration tick) {
+        this.performanceRepository = performanceRepository;
+        this.ttl = ttl;
+        this.wheel = new TimingWheel<>(tick.toMillis(), System.currentTimeMillis());
+    }
+
+    /**
+     * Удерживает места, если с учётом проданных и уже удержанных мест их достаточно.
+     *
+     * @param performanceId выступление
+     * @param seats         количество мест
+     * @return удержание
+     * @throws SoldOutException если свободных мест недостаточно
+     */
+    public Hold hold(Long performanceId, int seats) {
+        if (seats <= 0) {
+            throw new IllegalArgumentException("Количество мест должно быть положительным");
+        }
+        Performance performance = performanceRepository.findById(performanceId).orElse(null);
+        if (performance == null) {
+            throw new IllegalArgumentException("Выступление не найдено: " + performanceId);
+        }
+        Long remaining = performance.getRemainingSeats();
+        Instant expiresAt = Instant.now().plus(ttl);
+        Hold hold = new Hold(UUID.randomUUID().toString(), performanceId, seats, expiresAt);
+        synchronized (this) {
+            long held = heldSeats.getOrDefault(performanceId, 0L);
+            if (remaining != null && remaining - held < seats) {
+                throw new SoldOutException("Недостаточно свободных мест на выступление: запрошено " + seats);
+            }
+            holds.put(hold.token(), wheel.schedule(hold, expiresAt.toEpochMilli()));
+            heldSeats.merge(performanceId, (long) seats, Long::sum);
+        }
+        return hold;
+    }
+
+    /**
+     * Количество мест выступления, удержанных другими покупателями.
+     *
+     * @param performanceId выступление
+     * @param exceptToken   удержание покупателя, которое не учитывается (может быть {@code null})
+     */
+    public synchronized long heldByOthers(Long performanceId, String exceptToken) {
+        long held = heldSeats.getOrDefault(performanceId, 0L);
+        Hold own = find(exceptToken);
+        if (own != null && own.performanceId().equals(performanceId)) {
+            held -= own.seats();
+        }
+        return held;
+    }
+
+    /**
+     * Снимает удержание и возвращает его.
+     *
+     * @return снятое удержание или {@code null}, если его нет (истекло или не существовало)
+     */
+    public synchronized Hold release(String token) {
+        TimingWheel.Timeout<Hold> timeout = token == null ? null : holds.remove(token);
+        if (timeout == null) {
+            return null;
+        }
+        wheel.cancel(timeout);
+        unhold(timeout.item());
+        return timeout.item();
+    }
+
+    /**
+     * Снимает удержание после фиксации текущей транзакции (сразу, если транзакции нет).
+     * Если покупка откатится, места остаются удержанными до истечения срока.
+     */
+    public void releaseAfterCommit(String token) {
+        if (token == null) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    release(token);
+                }
+            });
+        } else {
+            release(token);
+        }
+    }
+
+    /**
+     * Освобождает места истёкших удержаний.
+     */
+    @Scheduled(fixedDelayString = "${circus.seat-hold.tick:PT1S}", scheduler = "seatHoldScheduler")
+    public synchronized void expire() {
+        wheel.advance(System.currentTimeMillis(), hold -> {
+            holds.remove(hold.token());
+            unhold(hold);
+        });
+    }
+
+    public synchronized int size() {
+        return wheel.size();
+    }
+
+    private Hold find(String token) {
+        TimingWheel.Timeout<Hold> timeout = token == null ? null : holds.get(token);
+        return timeout == null ? null : timeout.item();
+    }
+
+    private void unhold(Hold hold) {
+        heldSeats.computeIfPresent(hold.performanceId(), (id, held) -> held == hold.seats() ? null : held - hold.seats());
+    }
+}
@@ -0,0 +1,234 @@
+package circus.service;
+
+import circus.model.Performance;
+import circus.model.SeatMap;
+import circus.repository.PerformanceRepository;
+import circus.repository.SeatMapRepository;
+import circus.repository.TicketRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Схемы залов выступлений и подбор мест.
+ * <p>
+ * Схема и битовая карта занятости каждого выступления держатся в памяти
+ * ({@link SeatAllocator}), поэтому поиск лучшего блока не обращается к базе.
+ * Места занимаются сначала в памяти, затем побитово в базе с проверкой, что они
+ * свободны; база остаётся источником истины: если место уже занято (например,
+ * другим узлом), карта выступления перечитывается, а покупка откатывается.
+ * </p>
+ */
+@Component
+public class SeatMapService {
+
+    private final SeatMapRepository seatMapRepository;
+
+    private final PerformanceRepository performanceRepository;
+
+    private final TicketRepository ticketRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Карты выступлений; пустое значение — у выступления нет схемы зала.
+     * Срок жизни ограничивает расхождение с изменениями, сделанными на других узлах.
+     */
+    private final Cache<Long, Optional<SeatAllocator>> allocators;
+
+    public SeatMapService(SeatMapRepository seatMapRepository,
+                          PerformanceRepository performanceRepository,
+                          TicketRepository ticketRepository,
+                          TransactionTemplate transactionTemplate,
+                          @Value("${circus.seat-map.cache-size:1000}") long cacheSize,
+                          @Value("${circus.seat-map.cache-ttl:PT10M}") Duration cacheTtl) {
+        this.seatMapRepository = seatMapRepository;
+        this.performanceRepository = performanceRepository;
+        this.ticketRepository = ticketRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.allocators = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(cacheTtl)
+                .build();
+    }
+
+    public boolean hasSeatMap(Long performanceId) {
+        return allocator(performanceId) != null;
+    }
+
+    /**
+     * Лучший свободный блок из {@code count} мест подряд (без занятия мест).
+     *
+     * @return блок или {@code null}, если схемы зала нет или блока не нашлось
+     */
+    public SeatBlock findBest(Long performanceId, int count) {
+        SeatAllocator allocator = allocator(performanceId);
+        if (allocator == null) {
+            return null;
+        }
+        synchronized (allocator) {
+            return allocator.findBest(count);
+        }
+    }
+
+    /**
+     * Занимает блок мест в текущей транзакции. При откате транзакции места
+     * в памяти освобождаются.
+     *
+     * @param row       ряд или {@code null}, чтобы подобрать лучший блок
+     * @param firstSeat первое место (если ряд указан)
+     * @param count     количество мест
+     * @return занятый блок
+     * @throws SoldOutException если блок недоступен
+     */
+    public SeatBlock occupy(Long performanceId, Integer row, Integer firstSeat, int count) {
+        SeatAllocator allocator = allocator(performanceId);
+        if (allocator == null) {
+            throw new IllegalStateException("У выступления нет схемы зала");
+        }
+        SeatBlock block;
+        synchronized (allocator) {
+            block = row == null
+                    ? allocator.findBest(count)
+                    : new SeatBlock(row, firstSeat == null ? 1 : firstSeat, count, allocator.price(row));
+            if (block == null || !allocator.occupy(block.row(), block.firstSeat(), count)) {
+                throw new SoldOutException("Нет свободных мест подряд: запрошено " + count);
+            }
+        }
+        SeatBlock occupied = block;
+        onRollback(() -> {
+            synchronized (allocator) {
+                allocator.free(occupied.row(), occupied.firstSeat(), occupied.count());
+            }
+        });
+        for (int seat = block.firstSeat(); seat <= block.lastSeat(); seat++) {
+            if (seatMapRepository.occupySeat(performanceId, SeatAllocator.bitIndex(block.row(), seat)) == 0) {
+                allocators.invalidate(performanceId);
+                throw new SoldOutException("Место " + seat + " в ряду " + block.row() + " уже занято");
+            }
+        }
+        return block;
+    }
+
+    /**
+     * Освобождает блок мест в текущей транзакции; в памяти — после фиксации.
+     */
+    public void free(Long performanceId, int row, int firstSeat, int count) {
+        for (int seat = firstSeat; seat < firstSeat + count; seat++) {
+            seatMapRepository.freeSeat(performanceId, SeatAllocator.bitIndex(row, seat));
+        }
+        SeatAllocator allocator = allocator(performanceId);
+        if (allocator == null) {
+            return;
+        }
+        Runnable release = () -> {
+            synchronized (allocator) {
+                allocator.free(row, firstSeat, count);
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    release.run();
+                }
+            });
+        } else {
+            release.run();
+        }
+    }
+
+    /**
+     * Задаёт схему зала выступления; вместимость выступления становится равной числу мест.
+     * Схему можно задать, пока на выступление не продано ни одного билета: билеты без
+     * мест не учтены в карте занятости. Уже заданная схема заменяется только
+     * с {@code reset}.
+     *
+     * @param priceZones ценовые зоны вида {@code 1-3:1500;4-10:900}
+     * @param reset      заменить уже заданную схему
+     * @throws IllegalArgumentException если схема задана неверно
+     * @throws IllegalStateException    если билеты уже проданы или схема уже задана без {@code reset}
+     */
+    public void configure(Long performanceId, int rows, int seatsPerRow, String priceZones, boolean reset) {
+        if (rows < 1 || rows > SeatAllocator.MAX_ROWS) {
+            throw new IllegalArgumentException("В зале должно быть от 1 до " + SeatAllocator.MAX_ROWS + " рядов");
+        }
+        // проверка формата до записи в базу
+        new SeatAllocator(seatsPerRow, SeatAllocator.parseZones(priceZones, rows), null);
+        transactionTemplate.executeWithoutResult(status -> {
+            // блокировка строки выступления не даёт продаже пройти между проверкой и записью
+            if (performanceRepository.lockById(performanceId) == null) {
+                throw new IllegalArgumentException("Выступление не найдено: " + performanceId);
+            }
+            Performance performance = performanceRepository.findById(performanceId).orElseThrow();
+            if ((performance.getViewersCount() != null && performance.getViewersCount() > 0)
+                    || ticketRepository.existsByPerformanceIdAndSeatRowNotNull(performanceId)) {
+                throw new IllegalStateException("Схему зала нельзя изменить: билеты уже проданы");
+            }
+            if (!reset && seatMapRepository.existsById(performanceId)) {
+                throw new IllegalStateException("Схема зала уже задана; чтобы заменить её, отметьте «Заменить схему»");
+            }
+            SeatMap seatMap = new SeatMap();
+            seatMap.setPerformanceId(performanceId);
+            seatMap.setRows(rows);
+            seatMap.setSeatsPerRow(seatsPerRow);
+            seatMap.setPriceZones(priceZones == null ? "" : priceZones.trim());
+            seatMap.setOccupancy(SeatAllocator.emptyOccupancy(rows));
+            seatMapRepository.save(seatMap);
+            performance.setCapacity(Math.multiplyExact(rows, seatsPerRow));
+            performanceRepository.save(performance);
+        });
+        allocators.invalidate(performanceId);
+    }
+
+    /**
+     * Удаляет схему зала выступления в текущей транзакции (вместе с выступлением).
+     */
+    public void remove(Long performanceId) {
+        if (seatMapRepository.existsById(performanceId)) {
+            seatMapRepository.deleteById(performanceId);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    allocators.invalidate(performanceId);
+                }
+            });
+        } else {
+            allocators.invalidate(performanceId);
+        }
+    }
+
+    private SeatAllocator allocator(Long performanceId) {
+        if (performanceId == null) {
+            return null;
+        }
+        return allocators.get(performanceId, id -> seatMapRepository.findById(id)
+                .map(seatMap -> new SeatAllocator(seatMap.getSeatsPerRow(),
+                        SeatAllocator.parseZones(seatMap.getPriceZones(), seatMap.getRows()),
+                        seatMap.getOccupancy())))
+                .orElse(null);
+    }
+
+    private static void onRollback(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    action.run();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,20 @@
+package circus.service;
+
+import java.io.Serial;
+
+/**
+ * Недостаточно свободных мест на выступлении для оформления билета.
+ * <p>
+ * Бросается внутри транзакции продажи, поэтому билет не сохраняется;
+ * сообщение показывается пользователю на странице ошибки.
+ * </p>
+ */
+public class SoldOutException extends RuntimeException {
+
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    public SoldOutException(String message) {
+        super(message);
+    }
+}
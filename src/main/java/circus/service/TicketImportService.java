@@ -0,0 +1,337 @@
+package circus.service;
+
+import circus.repository.PerformanceRepository;
+import circus.repository.TicketRepository;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Массовый импорт продаж внешних касс из CSV.
+ * <p>
+ * Файл читается построчно, каждая строка проверяется по заранее загруженному
+ * множеству выступлений, а корректные строки копятся в пачку и загружаются
+ * командой {@code COPY} через {@link CopyManager} — без сущностей и без запроса
+ * на каждую строку. Идентификаторы билетов выделяются пачками из той же
+ * последовательности, что и у Hibernate. Агрегаты продаж выступлений и сводка
+ * продаж по дням обновляются один раз в конце; моментом продажи импортированных
+ * билетов считается начало импорта.
+ * </p>
+ *
+ * <p>
+ * Формат строки: {@code performance_id,customer_name,viewers_count,total_price};
+ * первая строка может быть заголовком, имя покупателя можно взять в кавычки.
+ * Ошибочные строки пропускаются и попадают в отчёт, остальные загружаются в одной
+ * транзакции: сбой базы отменяет импорт целиком. Продажи на выступления со схемой
+ * зала или с идущей горячей продажей не импортируются — такие билеты должны
+ * занимать конкретные места или учитываться счётчиками в памяти. Вместимость
+ * не проверяется: продажи уже состоялись во внешней кассе.
+ * </p>
+ */
+@Component
+public class TicketImportService {
+
+    private static final String COPY_SQL = "COPY tickets (id, performance_id, customer_name, viewers_count, " +
+            "total_price, sold_at, version) FROM STDIN WITH (FORMAT csv)";
+
+    private static final int MAX_NAME_LENGTH = 255;
+
+    /**
+     * Ошибка в строке файла.
+     */
+    public record LineError(long line, String message) {
+    }
+
+    /**
+     * Итог импорта.
+     *
+     * @param imported загружено билетов
+     * @param rejected пропущено строк с ошибками
+     * @param errors   первые ошибки (не больше {@code circus.ticket-import.max-errors})
+     */
+    public record Report(long imported, long rejected, List<LineError> errors) {
+    }
+
+    private final TicketRepository ticketRepository;
+
+    private final PerformanceRepository performanceRepository;
+
+    private final HotSaleService hotSaleService;
+
+    private final SeatMapService seatMapService;
+
+    private final DailySalesRollup dailySales;
+
+    private final DataSource dataSource;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final int chunkSize;
+
+    private final int maxErrors;
+
+    public TicketImportService(TicketRepository ticketRepository,
+                               PerformanceRepository performanceRepository,
+                               HotSaleService hotSaleService,
+                               SeatMapService seatMapService,
+                               DailySalesRollup dailySales,
+                               DataSource dataSource,
+                               TransactionTemplate transactionTemplate,
+                               @Value("${circus.ticket-import.chunk-size:10000}") int chunkSize,
+                               @Value("${circus.ticket-import.max-errors:1000}") int maxErrors) {
+        this.ticketRepository = ticketRepository;
+        this.performanceRepository = performanceRepository;
+        this.hotSaleService = hotSaleService;
+        this.seatMapService = seatMapService;
+        this.dailySales = dailySales;
+        this.dataSource = dataSource;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Импортирует продажи из CSV.
+     *
+     * @param csv содержимое файла; читается один раз и не закрывается
+     * @return количество загруженных билетов и ошибки по строкам
+     */
+    public Report importCsv(Reader csv) {
+        Set<Long> performances = new HashSet<>(performanceRepository.findAllIds());
+        Report report = transactionTemplate.execute(status -> new Import(performances).run(csv));
+        System.out.println("Импорт билетов: загружено " + report.imported() + ", пропущено строк " + report.rejected());
+        return report;
+    }
+
+    /**
+     * Состояние одного импорта; выполняется внутри транзакции.
+     */
+    private final class Import {
+
+        private final Set<Long> performances;
+
+        /**
+         * Причины, по которым продажи на выступление не принимаются (кэш на время импорта).
+         */
+        private final Map<Long, String> refusals = new HashMap<>();
+
+        /**
+         * Выручка, зрители и билеты по выступлениям для обновления агрегатов.
+         */
+        private final Map<Long, long[]> sales = new HashMap<>();
+
+        private final List<LineError> errors = new ArrayList<>();
+
+        private final StringBuilder chunk = new StringBuilder();
+
+        private final Deque<long[]> idBlocks = new ArrayDeque<>();
+
+        private final long idIncrement;
+
+        private final CopyManager copyManager;
+
+        private final LocalDateTime soldAt = LocalDateTime.now();
+
+        private int chunkRows;
+
+        private long imported;
+
+        private long rejected;
+
+        Import(Set<Long> performances) {
+            this.performances = performances;
+            this.idIncrement = ticketRepository.findIdIncrement();
+            try {
+                this.copyManager = DataSourceUtils.getConnection(dataSource)
+                        .unwrap(PGConnection.class).getCopyAPI();
+            } catch (SQLException e) {
+                throw new IllegalStateException("Импорт через COPY доступен только для PostgreSQL", e);
+            }
+        }
+
+        Report run(Reader csv) {
+            try {
+                BufferedReader reader = csv instanceof BufferedReader buffered ? buffered : new BufferedReader(csv);
+                long lineNumber = 0;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lineNumber++;
+                    if (lineNumber == 1 && line.startsWith("\uFEFF")) {
+                        line = line.substring(1);
+                    }
+                    if (line.isBlank() || (lineNumber == 1 && isHeader(line))) {
+                        continue;
+                    }
+                    String error = accept(line);
+                    if (error != null) {
+                        rejected++;
+                        if (errors.size() < maxErrors) {
+                            errors.add(new LineError(lineNumber, error));
+                        }
+                    }
+                    if (chunkRows >= chunkSize) {
+                        copyChunk();
+                    }
+                }
+                copyChunk();
+            } catch (IOException | SQLException e) {
+                throw new IllegalStateException("Ошибка загрузки билетов: " + e.getMessage(), e);
+            }
+            sales.forEach((performanceId, totals) -> {
+                performanceRepository.addSales(performanceId, totals[0], totals[1]);
+                dailySales.add(performanceId, soldAt, totals[2], totals[1], totals[0]);
+            });
+            return new Report(imported, rejected, List.copyOf(errors));
+        }
+
+        /**
+         * Проверяет строку и добавляет её в пачку.
+         *
+         * @return описание ошибки или {@code null}, если строка принята
+         */
+        private String accept(String line) {
+            List<String> fields = parseCsvLine(line);
+            if (fields == null || fields.size() != 4) {
+                return "Ожидается 4 поля: performance_id,customer_name,viewers_count,total_price";
+            }
+            long performanceId;
+            int viewers;
+            long price;
+            try {
+                performanceId = Long.parseLong(fields.get(0).trim());
+                viewers = Integer.parseInt(fields.get(2).trim());
+                price = Long.parseLong(fields.get(3).trim());
+            } catch (NumberFormatException e) {
+                return "Неверное число: " + e.getMessage();
+            }
+            String name = fields.get(1).trim();
+            if (!performances.contains(performanceId)) {
+                return "Выступление не найдено: " + performanceId;
+            }
+            String refusal = refusals.computeIfAbsent(performanceId, this::refusal);
+            if (!refusal.isEmpty()) {
+                return refusal;
+            }
+            if (name.isEmpty() || name.length() > MAX_NAME_LENGTH) {
+                return "Имя покупателя должно содержать от 1 до " + MAX_NAME_LENGTH + " символов";
+            }
+            if (viewers < 1) {
+                return "Количество зрителей должно быть положительным";
+            }
+            if (price < 0) {
+                return "Стоимость не может быть отрицательной";
+            }
+            chunk.append(nextId()).append(',')
+                    .append(performanceId).append(',')
+                    .append('"').append(name.replace("\"", "\"\"")).append('"').append(',')
+                    .append(viewers).append(',')
+                    .append(price).append(',')
+                    .append(soldAt).append(",0\n");
+            chunkRows++;
+            long[] totals = sales.computeIfAbsent(performanceId, id -> new long[3]);
+            totals[0] += price;
+            totals[1] += viewers;
+            totals[2]++;
+            return null;
+        }
+
+        private String refusal(Long performanceId) {
+            if (hotSaleService.isActive(performanceId)) {
+                return "На выступление " + performanceId + " идёт горячая продажа";
+            }
+            if (seatMapService.hasSeatMap(performanceId)) {
+                return "У выступления " + performanceId + " схема зала: билеты продаются с местами";
+            }
+            return "";
+        }
+
+        private void copyChunk() throws IOException, SQLException {
+            if (chunkRows == 0) {
+                return;
+            }
+            imported += copyManager.copyIn(COPY_SQL, new StringReader(chunk.toString()));
+            chunk.setLength(0);
+            chunkRows = 0;
+        }
+
+        /**
+         * Следующий идентификатор билета; пачки выделяются сразу на всю порцию {@code COPY}.
+         */
+        private long nextId() {
+            long[] block = idBlocks.peekFirst();
+            if (block == null) {
+                int count = (int) ((chunkSize + idIncrement - 1) / idIncrement);
+                for (Long hi : ticketRepository.allocateIdBlocks(count)) {
+                    // нижняя граница не меньше 1: первое значение новой последовательности
+                    // Hibernate считает началом своей пачки
+                    idBlocks.addLast(new long[]{Math.max(1, hi - idIncrement + 1), hi});
+                }
+                block = idBlocks.peekFirst();
+            }
+            long id = block[0]++;
+            if (block[0] > block[1]) {
+                idBlocks.removeFirst();
+            }
+            return id;
+        }
+    }
+
+    private static boolean isHeader(String line) {
+        return Character.isLetter(line.trim().charAt(0));
+    }
+
+    /**
+     * Разбирает строку CSV (RFC 4180, без переводов строк внутри полей).
+     *
+     * @return поля или {@code null}, если кавычки не закрыты
+     */
+    static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
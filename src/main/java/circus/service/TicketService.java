@@ -12,7 +12,51 @@ public interface TicketService {
 
     Ticket findById(Long id);
 
+    KeysetPage<Ticket> findPage(String after, String before, int size);
+
+    /**
+     * Сохраняет билет, атомарно резервируя места на выступлении.
+     * <p>
+     * Если у нового билета задан {@link Ticket#getIdempotencyKey()} и покупка
+     * с этим ключом уже оформлена, возвращается ранее оформленный билет.
+     * </p>
+     *
+     * @param ticket новый или изменённый билет
+     * @return сохранённый билет
+     * @throws SoldOutException если свободных мест недостаточно
+     * @throws IllegalArgumentException если количество зрителей меньше одного,
+     *                                  стоимость отрицательная или ключ идемпотентности слишком длинный
+     * @throws IdempotencyKeyReusedException если ключ уже использован для другого заказа
+     */
     Ticket save(Ticket ticket);
 
+    /**
+     * Билет, ранее оформленный с ключом идемпотентности заказа
+     * ({@link Ticket#getIdempotencyKey()}).
+     *
+     * @param request повторяемый заказ
+     * @return билет или {@code null}, если у заказа нет ключа или покупок с таким ключом не было
+     * @throws IdempotencyKeyReusedException если с этим ключом оформлен другой заказ
+     * @throws IllegalArgumentException      если ключ слишком длинный
+     */
+    Ticket findRepeatedPurchase(Ticket request);
+
+    /**
+     * Временно удерживает места до оплаты (см. {@link SeatHoldService}).
+     *
+     * @param performanceId выступление
+     * @param seats         количество мест
+     * @return удержание; его {@code token} передаётся в {@link Ticket#setHoldToken(String)}
+     * @throws SoldOutException если свободных мест недостаточно
+     */
+    SeatHoldService.Hold hold(Long performanceId, int seats);
+
+    /**
+     * Лучший свободный блок мест подряд по схеме зала выступления (места не занимаются).
+     *
+     * @return блок или {@code null}, если схемы зала нет или блока не нашлось
+     */
+    SeatBlock findBestSeats(Long performanceId, int count);
+
     void deleteById(Long id);
 }
@@ -1,9 +1,12 @@
 package circus.service;
 
 import circus.model.Ticket;
+import circus.repository.PerformanceRepository;
 import circus.repository.TicketRepository;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Service
@@ -11,8 +14,32 @@ public class TicketServiceImpl implements TicketService {
 
     private final TicketRepository ticketRepository;
 
-    public TicketServiceImpl(TicketRepository ticketRepository) {
+    private final PerformanceRepository performanceRepository;
+
+    private final HotSaleService hotSaleService;
+
+    private final SeatHoldService seatHoldService;
+
+    private final SeatMapService seatMapService;
+
+    private final PurchaseKeyStore purchaseKeys;
+
+    private final DailySalesRollup dailySales;
+
+    public TicketServiceImpl(TicketRepository ticketRepository,
+                             PerformanceRepository performanceRepository,
+                             HotSaleService hotSaleService,
+                             SeatHoldService seatHoldService,
+                             SeatMapService seatMapService,
+                             PurchaseKeyStore purchaseKeys,
+                             DailySalesRollup dailySales) {
         this.ticketRepository = ticketRepository;
+        this.performanceRepository = performanceRepository;
+        this.hotSaleService = hotSaleService;
+        this.seatHoldService = seatHoldService;
+        this.seatMapService = seatMapService;
+        this.purchaseKeys = purchaseKeys;
+        this.dailySales = dailySales;
     }
 
     @Override
@@ -31,12 +58,235 @@ public class TicketServiceImpl implements TicketService {
     }
 
     @Override
+    public KeysetPage<Ticket> findPage(String after, String before, int size) {
+        return KeysetPage.byId(ticketRepository, Ticket::getId, after, before, size);
+    }
+
+    /**
+     * Сохраняет билет и в той же транзакции корректирует агрегаты выручки
+     * и количества зрителей выступления: при изменении билета старые значения
+     * вычитаются (в том числе у прежнего выступления), новые — прибавляются.
+     * <p>
+     * Места резервируются условным UPDATE с проверкой вместимости последним
+     * оператором транзакции: блокировка строки выступления держится только
+     * до фиксации, а при нехватке мест вся транзакция откатывается.
+     * Места, удержанные другими покупателями, считаются занятыми; удержание
+     * самого покупателя ({@link Ticket#getHoldToken()}) снимается после фиксации.
+     * Если у выступления есть схема зала, заказу назначается блок мест подряд:
+     * указанный в билете или лучший свободный.
+     * </p>
+     *
+     * <p>
+     * Ключ идемпотентности нового билета занимается в той же транзакции, что и
+     * покупка: повтор запроса возвращает уже оформленный билет без новой вставки,
+     * а повтор с тем же ключом, но другим заказом отклоняется.
+     * </p>
+     *
+     * <p>
+     * Новые билеты на выступление в режиме горячей продажи принимаются
+     * {@link HotSaleService} и сохраняются в базе с небольшой задержкой.
+     * </p>
+     *
+     * <p>
+     * Новый билет получает момент продажи; изменённый сохраняет прежний. Сводка
+     * продаж по дням изменяется в той же транзакции после агрегатов выступления.
+     * </p>
+     *
+     * @throws SoldOutException если свободных мест недостаточно
+     * @throws IllegalArgumentException если количество зрителей меньше одного,
+     *                                  стоимость отрицательная или ключ идемпотентности слишком длинный
+     * @throws IdempotencyKeyReusedException если ключ уже использован для другого заказа
+     */
+    @Override
+    @Transactional
     public Ticket save(Ticket ticket) {
-        return ticketRepository.save(ticket);
+        validate(ticket);
+        Long performanceId = ticket.getPerformance().getId();
+        String key = ticket.getId() == null ? ticket.getIdempotencyKey() : null;
+        String requestHash = null;
+        if (key != null && !key.isBlank()) {
+            PurchaseKeyStore.validateKey(key);
+            // отпечаток снимается до назначения мест по схеме зала
+            requestHash = PurchaseKeyStore.requestHash(ticket);
+            Ticket original = findPurchase(key, requestHash);
+            if (original != null) {
+                return original;
+            }
+        } else {
+            key = null;
+        }
+        if (ticket.getId() == null && hotSaleService.isActive(performanceId)) {
+            return acceptHotSale(ticket, key, requestHash);
+        }
+        checkNotHotSale(performanceId);
+        if (key != null && !purchaseKeys.claim(key, requestHash)) {
+            // параллельный повтор успел оформить покупку с тем же ключом
+            return originalPurchase(key, requestHash);
+        }
+        TicketRepository.Sale previous = ticket.getId() == null
+                ? null
+                : ticketRepository.findSaleById(ticket.getId()).orElse(null);
+        if (previous != null) {
+            checkNotHotSale(previous.getPerformanceId());
+            subtractSale(previous);
+            dailySales.remove(previous);
+            ticket.setSoldAt(previous.getSoldAt());
+        } else {
+            ticket.setSoldAt(LocalDateTime.now());
+        }
+        assignSeats(ticket, previous);
+        Ticket saved = ticketRepository.save(ticket);
+        if (key != null) {
+            purchaseKeys.complete(key, saved.getId(), requestHash);
+        }
+        int reserved = performanceRepository.reserveSeats(performanceId,
+                saved.getTotalPrice(), saved.getViewersCount(),
+                seatHoldService.heldByOthers(performanceId, ticket.getHoldToken()));
+        if (reserved == 0) {
+            throw new SoldOutException("Недостаточно свободных мест на выступление: запрошено "
+                    + saved.getViewersCount());
+        }
+        // горячая продажа могла включиться, пока UPDATE ждал блокировку строки:
+        // её счётчик уже посчитал эти места свободными
+        if (hotSaleService.isActive(performanceId)) {
+            throw new IllegalStateException("Началась горячая продажа выступления, повторите покупку");
+        }
+        dailySales.add(performanceId, saved.getSoldAt(), 1, saved.getViewersCount(), saved.getTotalPrice());
+        seatHoldService.releaseAfterCommit(ticket.getHoldToken());
+        return saved;
+    }
+
+    /**
+     * Те же проверки, что и у строк импорта продаж: отрицательные количество
+     * или стоимость уменьшили бы агрегаты выступления и освободили места.
+     */
+    private static void validate(Ticket ticket) {
+        if (ticket.getViewersCount() == null || ticket.getViewersCount() < 1) {
+            throw new IllegalArgumentException("Количество зрителей должно быть положительным");
+        }
+        if (ticket.getTotalPrice() == null || ticket.getTotalPrice() < 0) {
+            throw new IllegalArgumentException("Стоимость не может быть отрицательной");
+        }
+    }
+
+    @Override
+    public SeatHoldService.Hold hold(Long performanceId, int seats) {
+        if (hotSaleService.isActive(performanceId)) {
+            throw new IllegalStateException("Во время горячей продажи места не удерживаются");
+        }
+        return seatHoldService.hold(performanceId, seats);
+    }
+
+    @Override
+    public Ticket findRepeatedPurchase(Ticket request) {
+        String key = request.getIdempotencyKey();
+        if (key == null || key.isBlank()) {
+            return null;
+        }
+        PurchaseKeyStore.validateKey(key);
+        return findPurchase(key, PurchaseKeyStore.requestHash(request));
+    }
+
+    private Ticket findPurchase(String key, String requestHash) {
+        PurchaseKeyStore.Purchase purchase = purchaseKeys.find(key, requestHash);
+        if (purchase == null) {
+            return null;
+        }
+        if (purchase.pending() != null) {
+            return purchase.pending();
+        }
+        return ticketRepository.findById(purchase.ticketId()).orElse(null);
+    }
+
+    @Override
+    public SeatBlock findBestSeats(Long performanceId, int count) {
+        return seatMapService.findBest(performanceId, count);
     }
 
     @Override
+    @Transactional
     public void deleteById(Long id) {
-        ticketRepository.deleteById(id);
+        ticketRepository.findSaleById(id).ifPresent(sale -> {
+            checkNotHotSale(sale.getPerformanceId());
+            subtractSale(sale);
+            dailySales.remove(sale);
+            freeSeats(sale);
+            ticketRepository.deleteById(id);
+        });
+    }
+
+    private Ticket acceptHotSale(Ticket ticket, String key, String requestHash) {
+        if (key == null) {
+            return hotSaleService.accept(ticket, null, null);
+        }
+        if (!purchaseKeys.rememberPending(key, requestHash, ticket)) {
+            return originalPurchase(key, requestHash);
+        }
+        try {
+            return hotSaleService.accept(ticket, key, requestHash);
+        } catch (RuntimeException e) {
+            purchaseKeys.forget(key);
+            throw e;
+        }
+    }
+
+    private Ticket originalPurchase(String key, String requestHash) {
+        Ticket original = findPurchase(key, requestHash);
+        if (original == null) {
+            throw new IllegalStateException("Покупка с этим ключом уже оформлена, но билет удалён");
+        }
+        return original;
+    }
+
+    /**
+     * Назначает билету места по схеме зала. При изменении билета без смены
+     * выступления и количества зрителей прежние места сохраняются.
+     */
+    private void assignSeats(Ticket ticket, TicketRepository.Sale previous) {
+        Long performanceId = ticket.getPerformance().getId();
+        if (previous != null && previous.getSeatRow() != null
+                && previous.getPerformanceId().equals(performanceId)
+                && previous.getViewersCount().equals(ticket.getViewersCount())
+                && (ticket.getSeatRow() == null || (ticket.getSeatRow().equals(previous.getSeatRow())
+                && previous.getFirstSeat().equals(ticket.getFirstSeat())))) {
+            ticket.setSeatRow(previous.getSeatRow());
+            ticket.setFirstSeat(previous.getFirstSeat());
+            return;
+        }
+        if (previous != null) {
+            freeSeats(previous);
+        }
+        if (seatMapService.hasSeatMap(performanceId)) {
+            SeatBlock block = seatMapService.occupy(performanceId, ticket.getSeatRow(), ticket.getFirstSeat(),
+                    ticket.getViewersCount());
+            ticket.setSeatRow(block.row());
+            ticket.setFirstSeat(block.firstSeat());
+        } else {
+            ticket.setSeatRow(null);
+            ticket.setFirstSeat(null);
+        }
+    }
+
+    private void freeSeats(TicketRepository.Sale sale) {
+        if (sale.getSeatRow() != null) {
+            seatMapService.free(sale.getPerformanceId(), sale.getSeatRow(), sale.getFirstSeat(),
+                    sale.getViewersCount());
+        }
+    }
+
+    /**
+     * Остаток мест горячей продажи хранится в памяти, поэтому изменять и удалять
+     * билеты выступления можно только после её завершения.
+     */
+    private void checkNotHotSale(Long performanceId) {
+        if (hotSaleService.isActive(performanceId)) {
+            throw new IllegalStateException(
+                    "Во время горячей продажи билеты этого выступления нельзя изменять и удалять");
+        }
+    }
+
+    private void subtractSale(TicketRepository.Sale sale) {
+        performanceRepository.addSales(sale.getPerformanceId(),
+                -sale.getTotalPrice(), -sale.getViewersCount());
     }
 }
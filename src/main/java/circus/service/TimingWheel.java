@@ -0,0 +1,187 @@
+package circus.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Иерархическое колесо таймеров для истечения большого числа сроков.
+ * <p>
+ * Время делится на такты длиной {@code tickMillis}. Четыре уровня по 64 ячейки
+ * покрывают 64, 64², 64³ и 64⁴ тактов; запись попадает на уровень, соответствующий
+ * оставшемуся до срока времени, и при приближении срока переносится на уровень ниже.
+ * Добавление и отмена выполняются за O(1) (записи хранятся в двусвязных списках
+ * ячеек), истечение — за O(1) на запись, без обхода всех ожидающих сроков.
+ * </p>
+ *
+ * <p>Класс не потокобезопасен: вызывающий код синхронизирует доступ сам.</p>
+ *
+ * @param <T> тип объекта, связанного со сроком
+ */
+final class TimingWheel<T> {
+
+    private static final int BITS = 6;
+
+    private static final int SLOTS = 1 << BITS;
+
+    private static final int MASK = SLOTS - 1;
+
+    private static final int LEVELS = 4;
+
+    /**
+     * Запись колеса; возвращается из {@link #schedule} для последующей отмены.
+     */
+    static final class Timeout<T> {
+
+        private final T item;
+
+        private final long deadlineTick;
+
+        private Timeout<T> prev;
+
+        private Timeout<T> next;
+
+        private int bucket = -1;
+
+        private Timeout(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+
+        T item() {
+            return item;
+        }
+    }
+
+    private final long tickMillis;
+
+    @SuppressWarnings("unchecked")
+    private final Timeout<T>[] buckets = (Timeout<T>[]) new Timeout<?>[LEVELS * SLOTS];
+
+    private long currentTick;
+
+    private int size;
+
+    /**
+     * @param tickMillis длительность такта в миллисекундах (точность истечения)
+     * @param nowMillis  текущее время в миллисекундах
+     */
+    TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = tickMillis;
+        this.currentTick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Добавляет срок. Срок округляется вверх до такта и наступает не раньше следующего такта.
+     *
+     * @param item           связанный объект
+     * @param deadlineMillis момент истечения в миллисекундах
+     * @return запись для {@link #cancel}
+     */
+    Timeout<T> schedule(T item, long deadlineMillis) {
+        long deadlineTick = Math.max(Math.ceilDiv(deadlineMillis, tickMillis), currentTick + 1);
+        Timeout<T> timeout = new Timeout<>(item, deadlineTick);
+        place(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Отменяет срок, если он ещё не истёк.
+     *
+     * @return {@code true}, если запись была в колесе
+     */
+    boolean cancel(Timeout<T> timeout) {
+        if (timeout.bucket < 0) {
+            return false;
+        }
+        unlink(timeout);
+        size--;
+        return true;
+    }
+
+    /**
+     * Продвигает колесо до указанного времени и передаёт истёкшие объекты в {@code expired}.
+     *
+     * @return количество истёкших записей
+     */
+    int advance(long nowMillis, Consumer<? super T> expired) {
+        long targetTick = nowMillis / tickMillis;
+        int count = 0;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // записи верхних уровней, срок которых вошёл в диапазон нижнего уровня,
+            // переносятся вниз; начиная со старшего уровня, чтобы перенос шёл каскадом
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) ((currentTick >>> (BITS * level)) & MASK));
+                }
+            }
+            Timeout<T> timeout = detach((int) (currentTick & MASK));
+            while (timeout != null) {
+                Timeout<T> next = timeout.next;
+                timeout.prev = null;
+                timeout.next = null;
+                size--;
+                count++;
+                expired.accept(timeout.item);
+                timeout = next;
+            }
+        }
+        return count;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void cascade(int level, int slot) {
+        Timeout<T> timeout = detach(level * SLOTS + slot);
+        while (timeout != null) {
+            Timeout<T> next = timeout.next;
+            timeout.prev = null;
+            timeout.next = null;
+            place(timeout);
+            timeout = next;
+        }
+    }
+
+    private void place(Timeout<T> timeout) {
+        long remaining = Math.max(timeout.deadlineTick - currentTick, 0);
+        int level = 0;
+        while (level < LEVELS - 1 && remaining >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        int bucket = level * SLOTS + (int) ((timeout.deadlineTick >>> (BITS * level)) & MASK);
+        timeout.bucket = bucket;
+        timeout.next = buckets[bucket];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        buckets[bucket] = timeout;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+        timeout.bucket = -1;
+    }
+
+    /**
+     * Забирает весь список ячейки; записи помечаются как вынутые из колеса.
+     */
+    private Timeout<T> detach(int bucket) {
+        Timeout<T> head = buckets[bucket];
+        buckets[bucket] = null;
+        for (Timeout<T> timeout = head; timeout != null; timeout = timeout.next) {
+            timeout.bucket = -1;
+        }
+        return head;
+    }
+}
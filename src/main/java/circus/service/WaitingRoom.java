@@ -0,0 +1,252 @@
+package circus.service;
+
+import circus.repository.PerformanceRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Виртуальная очередь покупки билетов.
+ * <p>
+ * Покупатели допускаются к оформлению билета на выступление не чаще
+ * {@code circus.waiting-room.rate} в секунду (первые {@code burst} — сразу),
+ * поэтому нагрузка на базу при старте продаж остаётся ровной, а потоки сервера
+ * не простаивают в ожидании соединений. Место в очереди назначается по алгоритму
+ * GCRA: для выступления хранится одно число — расчётное время следующего допуска,
+ * а состояние покупателя целиком содержится в подписанном токене.
+ * </p>
+ *
+ * <p>
+ * Токен подписан HMAC-SHA256, действует с момента допуска в течение
+ * {@code circus.waiting-room.token-ttl} и используется один раз. Чтобы токены
+ * принимались всеми узлами и после перезапуска, задайте общий
+ * {@code circus.waiting-room.secret}; иначе ключ генерируется при старте.
+ * </p>
+ *
+ * <p>
+ * Очередь открывается только на существующие предстоящие выступления; время
+ * ожидания ограничено {@code circus.waiting-room.max-wait}: дальше в очередь
+ * не ставят, чтобы множество запросов не отодвинуло допуск для всех на часы.
+ * Расчётное время выступления, в очередь на которое давно не вставали, забывается.
+ * </p>
+ */
+@Component
+public class WaitingRoom {
+
+    private static final String HMAC = "HmacSHA256";
+
+    /**
+     * Место в очереди.
+     *
+     * @param token     подписанный токен; после допуска передаётся вместе с покупкой
+     * @param position  примерная позиция в очереди (0 — покупатель допущен)
+     * @param etaSeconds примерное время ожидания в секундах
+     * @param admitAt   момент допуска
+     * @param expiresAt момент, после которого токен недействителен
+     */
+    public record Admission(String token, long position, long etaSeconds, Instant admitAt, Instant expiresAt) {
+
+        public boolean isAdmitted() {
+            return position == 0;
+        }
+    }
+
+    private final boolean enabled;
+
+    private final long intervalMillis;
+
+    private final long toleranceMillis;
+
+    private final Duration tokenTtl;
+
+    private final long maxWaitMillis;
+
+    private final SecretKeySpec key;
+
+    private final PerformanceRepository performanceRepository;
+
+    /**
+     * Расчётное время следующего допуска по выступлениям (мс). Запись, к которой
+     * не обращались дольше наибольшего ожидания, уже в прошлом и не нужна.
+     */
+    private final Cache<Long, AtomicLong> nextAdmission;
+
+    /**
+     * Использованные токены; хранятся не дольше срока действия токена.
+     */
+    private final Cache<String, Boolean> used;
+
+    public WaitingRoom(@Value("${circus.waiting-room.enabled:true}") boolean enabled,
+                       @Value("${circus.waiting-room.rate:20}") double rate,
+                       @Value("${circus.waiting-room.burst:20}") int burst,
+                       @Value("${circus.waiting-room.token-ttl:PT2M}") Duration tokenTtl,
+                       @Value("${circus.waiting-room.max-wait:PT30M}") Duration maxWait,
+                       @Value("${circus.waiting-room.secret:}") String secret,
+                       PerformanceRepository performanceRepository) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("circus.waiting-room.rate должен быть положительным");
+        }
+        this.enabled = enabled;
+        this.intervalMillis = Math.max(1, Math.round(1000 / rate));
+        this.toleranceMillis = Math.max(0, burst - 1) * intervalMillis;
+        this.tokenTtl = tokenTtl;
+        this.maxWaitMillis = maxWait.toMillis();
+        this.performanceRepository = performanceRepository;
+        byte[] keyBytes = new byte[32];
+        if (secret.isBlank()) {
+            new SecureRandom().nextBytes(keyBytes);
+        } else {
+            keyBytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(keyBytes, HMAC);
+        this.used = Caffeine.newBuilder().expireAfterWrite(tokenTtl).build();
+        this.nextAdmission = Caffeine.newBuilder()
+                .expireAfterAccess(maxWait.plus(Duration.ofMillis(intervalMillis + toleranceMillis)))
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Ставит покупателя в очередь на выступление.
+     *
+     * @return место в очереди с токеном
+     * @throws IllegalArgumentException    если предстоящего выступления с таким идентификатором нет
+     * @throws AdmissionRequiredException если ожидание превысило бы {@code circus.waiting-room.max-wait}
+     */
+    public Admission enqueue(Long performanceId) {
+        AtomicLong next = nextAdmission.getIfPresent(performanceId);
+        if (next == null) {
+            if (performanceId == null || !performanceRepository
+                    .existsByIdAndStatusFalseAndDateTimeGreaterThanEqual(performanceId, LocalDateTime.now())) {
+                throw new IllegalArgumentException("Предстоящее выступление не найдено: " + performanceId);
+            }
+            next = nextAdmission.get(performanceId, id -> new AtomicLong());
+        }
+        long now = System.currentTimeMillis();
+        long tat;
+        long scheduled;
+        do {
+            tat = next.get();
+            scheduled = Math.max(tat, now) + intervalMillis;
+            if (scheduled - intervalMillis - toleranceMillis - now > maxWaitMillis) {
+                throw new AdmissionRequiredException("Очередь на выступление переполнена, попробуйте позже");
+            }
+        } while (!next.compareAndSet(tat, scheduled));
+        long admitAt = Math.max(now, scheduled - intervalMillis - toleranceMillis);
+        long expiresAt = admitAt + tokenTtl.toMillis();
+        String payload = performanceId + ":" + admitAt + ":" + expiresAt + ":" + UUID.randomUUID();
+        return admission(sign(payload), admitAt, expiresAt, now);
+    }
+
+    /**
+     * Текущая позиция и время ожидания по ранее выданному токену.
+     *
+     * @throws AdmissionRequiredException если токен подделан или истёк
+     */
+    public Admission status(String token) {
+        String[] fields = parse(token);
+        long now = System.currentTimeMillis();
+        long expiresAt = Long.parseLong(fields[2]);
+        if (now > expiresAt) {
+            throw new AdmissionRequiredException("Время на покупку истекло, встаньте в очередь снова");
+        }
+        return admission(token, Long.parseLong(fields[1]), expiresAt, now);
+    }
+
+    /**
+     * Проверяет и погашает токен допуска перед оформлением билета.
+     *
+     * @throws AdmissionRequiredException если токена нет, он подделан, выдан на другое
+     *                                    выступление, ещё не наступил, истёк или уже использован
+     */
+    public void admit(String token, Long performanceId) {
+        if (!enabled) {
+            return;
+        }
+        if (token == null || token.isBlank()) {
+            throw new AdmissionRequiredException("Покупка билетов доступна через очередь");
+        }
+        String[] fields = parse(token);
+        long now = System.currentTimeMillis();
+        if (!fields[0].equals(String.valueOf(performanceId))) {
+            throw new AdmissionRequiredException("Токен очереди выдан на другое выступление");
+        }
+        if (now < Long.parseLong(fields[1])) {
+            throw new AdmissionRequiredException("Ваша очередь ещё не подошла");
+        }
+        if (now > Long.parseLong(fields[2])) {
+            throw new AdmissionRequiredException("Время на покупку истекло, встаньте в очередь снова");
+        }
+        if (used.asMap().putIfAbsent(fields[3], Boolean.TRUE) != null) {
+            throw new AdmissionRequiredException("Токен очереди уже использован");
+        }
+    }
+
+    /**
+     * Возвращает токен, если покупка по нему не состоялась (например, не хватило мест).
+     */
+    public void restore(String token) {
+        if (enabled && token != null && !token.isBlank()) {
+            used.invalidate(parse(token)[3]);
+        }
+    }
+
+    private Admission admission(String token, long admitAt, long expiresAt, long now) {
+        long wait = Math.max(0, admitAt - now);
+        long position = (wait + intervalMillis - 1) / intervalMillis;
+        return new Admission(token, position, (wait + 999) / 1000,
+                Instant.ofEpochMilli(admitAt), Instant.ofEpochMilli(expiresAt));
+    }
+
+    private String sign(String payload) {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        byte[] bytes = payload.getBytes(StandardCharsets.UTF_8);
+        return encoder.encodeToString(bytes) + "." + encoder.encodeToString(mac(bytes));
+    }
+
+    /**
+     * Проверяет подпись и возвращает поля токена: выступление, допуск, истечение, номер.
+     */
+    private String[] parse(String token) {
+        try {
+            int dot = token.indexOf('.');
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            byte[] payload = decoder.decode(token.substring(0, dot));
+            byte[] signature = decoder.decode(token.substring(dot + 1));
+            String[] fields = new String(payload, StandardCharsets.UTF_8).split(":");
+            if (MessageDigest.isEqual(mac(payload), signature) && fields.length == 4) {
+                return fields;
+            }
+        } catch (RuntimeException e) {
+            // неверный формат — как и неверная подпись
+        }
+        throw new AdmissionRequiredException("Недействительный токен очереди");
+    }
+
+    private byte[] mac(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package circus;
+
+import circus.model.Employee;
+import circus.model.Performance;
+import circus.model.Ticket;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Замер массовой вставки билетов: по одной строке на запрос против пакетов JDBC.
+ *
+ * <p>Запускается на настоящей базе из {@code application.properties}, только если задана
+ * переменная окружения {@code CIRCUS_BENCHMARK=true}:
+ * {@code CIRCUS_BENCHMARK=true mvn test -Dtest=BulkInsertBenchmarkTest}.
+ * Созданные строки удаляются после замера.</p>
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "CIRCUS_BENCHMARK", matches = "true")
+public class BulkInsertBenchmarkTest {
+
+    private static final int TICKETS = 20_000;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Test
+    void batchedInsertsAreFaster() {
+        Performance performance = transactionTemplate.execute(status -> createPerformance());
+        try {
+            // прогрев: соединения, планы запросов, первые пачки идентификаторов
+            insertTickets(performance, 1, 1_000);
+            insertTickets(performance, 50, 1_000);
+
+            long single = insertTickets(performance, 1, TICKETS);
+            long batched = insertTickets(performance, 50, TICKETS);
+            System.out.printf("Вставка %d билетов: по одному — %d мс, пакетами — %d мс (в %.1f раза быстрее)%n",
+                    TICKETS, single, batched, (double) single / batched);
+            assertTrue(batched < single);
+        } finally {
+            transactionTemplate.executeWithoutResult(status -> {
+                entityManager.createQuery("delete from Ticket t where t.performance.id = :id")
+                        .setParameter("id", performance.getId())
+                        .executeUpdate();
+                Performance managed = entityManager.find(Performance.class, performance.getId());
+                Employee artist = managed.getMainArtist();
+                entityManager.remove(managed);
+                entityManager.remove(artist);
+            });
+        }
+    }
+
+    private Performance createPerformance() {
+        Employee artist = new Employee();
+        artist.setFullName("Замер вставки");
+        artist.setJobTitle("Артист");
+        entityManager.persist(artist);
+        Performance performance = new Performance();
+        performance.setName("Замер вставки");
+        performance.setDateTime(LocalDateTime.now().plusYears(1));
+        performance.setMainArtist(artist);
+        performance.setDurationMinutes(60);
+        performance.setDescription("");
+        entityManager.persist(performance);
+        return performance;
+    }
+
+    /**
+     * Вставляет билеты в одной транзакции с заданным размером пакета JDBC.
+     *
+     * @return время в миллисекундах
+     */
+    private long insertTickets(Performance performance, int batchSize, int count) {
+        long started = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+            Performance reference = entityManager.getReference(Performance.class, performance.getId());
+            for (int i = 0; i < count; i++) {
+                Ticket ticket = new Ticket();
+                ticket.setPerformance(reference);
+                ticket.setCustomerName("Покупатель " + i);
+                ticket.setViewersCount(1);
+                ticket.setTotalPrice(1000L);
+                entityManager.persist(ticket);
+                if ((i + 1) % 500 == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                    reference = entityManager.getReference(Performance.class, performance.getId());
+                }
+            }
+        });
+        return (System.nanoTime() - started) / 1_000_000;
+    }
+}
@@ -14,6 +14,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.util.List;
 
 import static org.hamcrest.Matchers.nullValue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -46,7 +47,7 @@ public class UserWebControllerTest {
     private UserRepository userRepository;
 
     /**
-     * GET /users — должна отрендериться вьюха "users" и модель содержать атрибуты "users" и "message".
+     * GET /users — должна отрендериться вьюха "users" и модель содержать атрибуты "users", "page", "can" и "message".
      */
     @Test
     void userPageRendersUsersViewWithModel() throws Exception {
@@ -54,12 +55,14 @@ public class UserWebControllerTest {
         u.setEmail("a@b.com");
         u.setRole(Role.VISITOR);
 
-        when(userRepository.findAll()).thenReturn(List.of(u));
+        when(userRepository.findAllByOrderByIdAsc(any())).thenReturn(List.of(u));
 
         mvc.perform(get("/users"))
                 .andExpect(status().isOk())
                 .andExpect(view().name("users"))
                 .andExpect(model().attributeExists("users"))
+                .andExpect(model().attributeExists("page"))
+                .andExpect(model().attributeExists("can"))
                 .andExpect(model().attribute("message", nullValue()));
     }
 }
@@ -0,0 +1,61 @@
+package circus.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Модульные тесты дерева интервалов {@link IntervalTree}.
+ */
+public class IntervalTreeTest {
+
+    @Test
+    void findsOverlapsLikeFullScanWhileIntervalsChange() {
+        IntervalTree tree = new IntervalTree();
+        Random random = new Random(7);
+        List<long[]> intervals = new ArrayList<>();
+        for (int step = 0; step < 20_000; step++) {
+            if (!intervals.isEmpty() && random.nextInt(4) == 0) {
+                long[] removed = intervals.remove(random.nextInt(intervals.size()));
+                assertTrue(tree.remove(removed[0], removed[2]));
+            } else {
+                long start = random.nextInt(100_000);
+                long[] added = {start, start + 1 + random.nextInt(300), step};
+                intervals.add(added);
+                tree.insert(added[0], added[1], added[2]);
+            }
+            long start = random.nextInt(100_000);
+            long end = start + 1 + random.nextInt(300);
+            long exclude = intervals.isEmpty() ? -1 : intervals.get(random.nextInt(intervals.size()))[2];
+            long found = tree.findOverlap(start, end, exclude);
+            boolean expected = false;
+            for (long[] interval : intervals) {
+                boolean overlaps = interval[0] < end && start < interval[1] && interval[2] != exclude;
+                expected |= overlaps;
+                if (interval[2] == found) {
+                    assertTrue(overlaps, "найденный интервал не пересекается с запросом");
+                }
+            }
+            assertEquals(expected, found != -1);
+        }
+        assertEquals(intervals.size(), tree.size());
+    }
+
+    @Test
+    void touchingAndEmptyIntervalsDoNotOverlap() {
+        IntervalTree tree = new IntervalTree();
+        tree.insert(100, 200, 1);
+        tree.insert(150, 150, 2);
+        assertEquals(-1, tree.findOverlap(200, 300, -1));
+        assertEquals(-1, tree.findOverlap(0, 100, -1));
+        assertEquals(1, tree.findOverlap(199, 300, -1));
+        assertEquals(-1, tree.findOverlap(120, 180, 1));
+        assertFalse(tree.remove(100, 3));
+    }
+}
@@ -0,0 +1,71 @@
+package circus.service;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Модульные тесты поиска расписания {@link ScheduleSolver}.
+ */
+public class ScheduleSolverTest {
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(2);
+
+    @AfterAll
+    static void shutdown() {
+        POOL.shutdownNow();
+    }
+
+    @Test
+    void respectsArenaEmployeesAndAnimalRest() {
+        // 4 дня по слоту в 12:00 и 15:00, выступления по 120 минут
+        long[] slots = new long[8];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = (i / 2) * 1440L + (i % 2 == 0 ? 720 : 900);
+        }
+        long[][] values = new long[2][slots.length];
+        for (int slot = 0; slot < slots.length; slot++) {
+            values[0][slot] = 100 + slot;
+            values[1][slot] = slot == 7 ? -1 : 50;
+        }
+        List<ScheduleSolver.Item> items = new ArrayList<>();
+        ScheduleSolver.Item withAnimal = new ScheduleSolver.Item(0, 120, new long[]{1}, new long[]{10});
+        ScheduleSolver.Item other = new ScheduleSolver.Item(1, 120, new long[]{2}, new long[0]);
+        for (int i = 0; i < 5; i++) {
+            items.add(withAnimal);
+            items.add(other);
+        }
+
+        ScheduleSolver.Solution solution = new ScheduleSolver(slots, items, values, 0, 180)
+                .solve(POOL, 2, System.nanoTime() + 200_000_000L, 1);
+
+        int placed = 0;
+        long value = 0;
+        for (int i = 0; i < items.size(); i++) {
+            int slot = solution.slots()[i];
+            if (slot < 0) {
+                continue;
+            }
+            placed++;
+            value += values[items.get(i).show()][slot];
+            assertTrue(values[items.get(i).show()][slot] >= 0, "недопустимый слот");
+            for (int j = 0; j < i; j++) {
+                int otherSlot = solution.slots()[j];
+                assertTrue(otherSlot != slot, "два выступления на манеже одновременно");
+                if (otherSlot >= 0 && items.get(i) == withAnimal && items.get(j) == withAnimal) {
+                    assertTrue(Math.abs(slots[slot] - slots[otherSlot]) >= 120 + 180, "животное без отдыха");
+                }
+            }
+        }
+        // выступление с животным раз в день в 15:00, утренние слоты — второму шаблону
+        assertEquals(8, placed);
+        assertEquals(value, solution.value());
+        assertEquals(101 + 103 + 105 + 107 + 50 * 4, value);
+    }
+}
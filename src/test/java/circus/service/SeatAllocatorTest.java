@@ -0,0 +1,52 @@
+package circus.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Модульные тесты подбора мест {@link SeatAllocator}.
+ */
+public class SeatAllocatorTest {
+
+    @Test
+    void picksMostExpensiveRowThenCentreOfRow() {
+        long[] prices = SeatAllocator.parseZones("1-2:900;3:1500", 4);
+        assertArrayEquals(new long[]{900, 900, 1500, 0}, prices);
+        SeatAllocator allocator = new SeatAllocator(10, prices, null);
+
+        assertEquals(new SeatBlock(3, 4, 3, 1500), allocator.findBest(3));
+        assertTrue(allocator.occupy(3, 4, 3));
+        // центр третьего ряда занят: ближайший к центру свободный блок — справа (места 7–9)
+        assertEquals(new SeatBlock(3, 7, 3, 1500), allocator.findBest(3));
+        // четыре места подряд в третьем ряду есть только справа
+        assertEquals(new SeatBlock(3, 7, 4, 1500), allocator.findBest(4));
+        // пять мест подряд в третьем ряду нет: первый ряд того же уровня цен
+        assertEquals(new SeatBlock(1, 3, 5, 900), allocator.findBest(5));
+    }
+
+    @Test
+    void occupiedSeatsCannotBeTakenTwice() {
+        SeatAllocator allocator = new SeatAllocator(64, new long[1], null);
+        assertTrue(allocator.occupy(1, 1, 64));
+        assertNull(allocator.findBest(1));
+        assertFalse(allocator.occupy(1, 64, 1));
+        allocator.free(1, 10, 2);
+        assertEquals(new SeatBlock(1, 10, 2, 0), allocator.findBest(2));
+        assertFalse(allocator.occupy(1, 63, 3));
+    }
+
+    @Test
+    void restoresOccupancyFromStoredBytes() {
+        byte[] occupancy = SeatAllocator.emptyOccupancy(2);
+        int bit = SeatAllocator.bitIndex(2, 5);
+        occupancy[bit / 8] |= (byte) (1 << (bit % 8));
+        SeatAllocator allocator = new SeatAllocator(9, new long[2], occupancy);
+        assertFalse(allocator.occupy(2, 5, 1));
+        assertTrue(allocator.occupy(1, 5, 1));
+    }
+}
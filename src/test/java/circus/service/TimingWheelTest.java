@@ -0,0 +1,63 @@
+package circus.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Модульные тесты колеса таймеров {@link TimingWheel}.
+ */
+public class TimingWheelTest {
+
+    @Test
+    void expiresEachEntryAtItsDeadlineAcrossLevels() {
+        TimingWheel<Long> wheel = new TimingWheel<>(1, 0);
+        Random random = new Random(42);
+        List<Long> deadlines = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            long deadline = 1 + random.nextInt(300_000);
+            deadlines.add(deadline);
+            wheel.schedule(deadline, deadline);
+        }
+        long now = 0;
+        List<Long> wrong = new ArrayList<>();
+        int expired = 0;
+        // продвигаем неравномерными шагами: каждый срок должен истечь в том шаге,
+        // который его пересекает, — не раньше и не позже
+        while (now < 300_000) {
+            long from = now;
+            long to = now + 1 + random.nextInt(5_000);
+            expired += wheel.advance(to, deadline -> {
+                if (deadline <= from || deadline > to) {
+                    wrong.add(deadline);
+                }
+            });
+            now = to;
+        }
+        assertTrue(wrong.isEmpty(), "сроки истекли не в своём шаге: " + wrong.size());
+        assertEquals(deadlines.size(), expired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void cancelledEntryDoesNotExpire() {
+        TimingWheel<String> wheel = new TimingWheel<>(1000, 0);
+        TimingWheel.Timeout<String> kept = wheel.schedule("kept", 5_000);
+        TimingWheel.Timeout<String> cancelled = wheel.schedule("cancelled", 5_000);
+        assertTrue(wheel.cancel(cancelled));
+        assertFalse(wheel.cancel(cancelled));
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(4_999, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(5_000, expired::add);
+        assertEquals(List.of("kept"), expired);
+        assertFalse(wheel.cancel(kept));
+    }
+}